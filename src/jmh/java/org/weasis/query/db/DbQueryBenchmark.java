@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2026 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.query.db;
+
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.weasis.query.StudyCache;
+
+/**
+ * End-to-end latency of the DB queries (SQL execution, mapping of the rows and building of the
+ * patient list) on an in-memory H2 database of synthetic data. Each invocation queries random
+ * studies, series or accession numbers (consecutive values from a random one), the study cache is
+ * disabled.
+ *
+ * <p>The scale is set by the number of patients (2 studies per patient, 4 series per study and 100
+ * instances per series), 2500 patients are 1 million instances. The "rows" counter is the number
+ * of instances read per second and "gc.alloc.rate.norm" the allocation of each query.
+ *
+ * <p>Run with: mvn -Pjmh test-compile exec:exec -Djmh.benchmarks=DbQueryBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class DbQueryBenchmark {
+  private static final int STUDIES_PER_PATIENT = 2;
+  private static final int SERIES_PER_STUDY = 4;
+  private static final int INSTANCES_PER_SERIES = 100;
+
+  @Param({"25", "2500"})
+  public int patients;
+
+  /** Number of UIDs of each request */
+  @Param({"1", "10"})
+  public int uids;
+
+  @Param({"1"})
+  public int parallelism;
+
+  private DbTestDatabase db;
+  private Properties properties;
+
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  @State(Scope.Thread)
+  public static class Rows {
+    public long rows;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      rows = 0;
+    }
+  }
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    db = DbTestDatabase.create("db-query-benchmark");
+    db.populate(patients, STUDIES_PER_PATIENT, SERIES_PER_STUDY, INSTANCES_PER_SERIES);
+    properties = db.getProperties("db-benchmark");
+    properties.setProperty("arc.query.parallelism", String.valueOf(parallelism));
+    StudyCache.configure(new Properties());
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws Exception {
+    DbConnectionPool.closeAll();
+    db.close();
+  }
+
+  private String[] getValues(int size, IntFunction<String> value) {
+    int first = ThreadLocalRandom.current().nextInt(size);
+    String[] values = new String[uids];
+    for (int i = 0; i < uids; i++) {
+      values[i] = value.apply((first + i) % size);
+    }
+    return values;
+  }
+
+  @Benchmark
+  public DbQueryConfiguration studyInstanceUID(Rows rows) {
+    DbQueryConfiguration config = new DbQueryConfiguration(properties);
+    config.buildFromStudyInstanceUID(
+        null, getValues(db.getStudies(), DbTestDatabase::getStudyUID));
+    rows.rows += (long) uids * SERIES_PER_STUDY * INSTANCES_PER_SERIES;
+    return config;
+  }
+
+  @Benchmark
+  public DbQueryConfiguration seriesInstanceUID(Rows rows) {
+    DbQueryConfiguration config = new DbQueryConfiguration(properties);
+    config.buildFromSeriesInstanceUID(
+        null, getValues(db.getSeries(), DbTestDatabase::getSeriesUID));
+    rows.rows += (long) uids * INSTANCES_PER_SERIES;
+    return config;
+  }
+
+  @Benchmark
+  public DbQueryConfiguration accessionNumber(Rows rows) {
+    DbQueryConfiguration config = new DbQueryConfiguration(properties);
+    config.buildFromStudyAccessionNumber(
+        null, getValues(db.getStudies(), DbTestDatabase::getAccessionNumber));
+    rows.rows += (long) uids * SERIES_PER_STUDY * INSTANCES_PER_SERIES;
+    return config;
+  }
+}
@@ -0,0 +1,270 @@
+/*
+ * Copyright (c) 2026 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.query.db;
+
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.data.VR;
+import org.dcm4che3.img.util.DateTimeUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.weasis.core.util.EscapeChars;
+import org.weasis.query.StudyTree;
+import org.weasis.query.StudyTree.SeriesTree;
+
+/**
+ * Mapping of a synthetic result set (100 instances per series, 10 series per study) to the study
+ * trees, compared with the previous implementation (columns read by label, properties read for
+ * each query, a date formatter and a series lookup for each row).
+ *
+ * <p>Run with: mvn -Pjmh test-compile exec:exec
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class DbRowMapperBenchmark {
+  private static final String[] COLUMNS = {
+    "pat_id",
+    "pat_name",
+    "pat_birthdate",
+    "pat_sex",
+    "study_iuid",
+    "study_datetime",
+    "accession_no",
+    "study_id",
+    "ref_physician",
+    "study_desc",
+    "series_iuid",
+    "series_no",
+    "modality",
+    "series_desc",
+    "sop_iuid",
+    "inst_no"
+  };
+  private static final int INSTANCES_PER_SERIES = 100;
+  private static final int SERIES_PER_STUDY = 10;
+
+  @Param({"1000000"})
+  public int rows;
+
+  private Properties properties;
+  private DbRowMapper mapper;
+
+  @Setup
+  public void setup() {
+    properties = new Properties();
+    for (String[] field :
+        new String[][] {
+          {"patientid", "pat_id"},
+          {"setpatientname", "pat_name"},
+          {"patientbirthdate", "pat_birthdate"},
+          {"patientsex", "pat_sex"},
+          {"studyinstanceuid", "study_iuid"},
+          {"studydate", "study_datetime"},
+          {"accessionnumber", "accession_no"},
+          {"studyid", "study_id"},
+          {"referringphysicianname", "ref_physician"},
+          {"studydescription", "study_desc"},
+          {"seriesinstanceuid", "series_iuid"},
+          {"seriesnumber", "series_no"},
+          {"modality", "modality"},
+          {"seriesdescription", "series_desc"},
+          {"sopinstanceuid", "sop_iuid"},
+          {"instancenumber", "inst_no"}
+        }) {
+      properties.setProperty("arc.db.query." + field[0], field[1]);
+    }
+    properties.setProperty("arc.db.query.patientbirthdate.type", "VARCHAR2");
+    properties.setProperty("arc.db.query.patientbirthdate.format", "yyyyMMdd");
+    mapper = new DbRowMapper(properties);
+  }
+
+  /**
+   * @return a result set generating the rows, the columns are found by label with a case-insensitive
+   *     lookup as most drivers do
+   */
+  private ResultSet newResultSet() {
+    Map<String, Integer> indexes = new HashMap<>();
+    for (int i = 0; i < COLUMNS.length; i++) {
+      indexes.put(COLUMNS[i], i + 1);
+    }
+    LocalDateTime first = LocalDateTime.of(2000, 1, 1, 8, 30);
+    int[] row = {-1};
+    return (ResultSet)
+        Proxy.newProxyInstance(
+            ResultSet.class.getClassLoader(),
+            new Class<?>[] {ResultSet.class},
+            (proxy, method, args) -> {
+              switch (method.getName()) {
+                case "next":
+                  return ++row[0] < rows;
+                case "findColumn":
+                  return indexes.get(((String) args[0]).toLowerCase(Locale.ROOT));
+                case "getString":
+                case "getTimestamp":
+                  int column =
+                      args[0] instanceof String label
+                          ? indexes.get(label.toLowerCase(Locale.ROOT))
+                          : (Integer) args[0];
+                  return getValue(row[0], column, first);
+                case "close":
+                  return null;
+                default:
+                  throw new UnsupportedOperationException(method.getName());
+              }
+            });
+  }
+
+  private static Object getValue(int row, int column, LocalDateTime first) {
+    int series = row / INSTANCES_PER_SERIES;
+    int study = series / SERIES_PER_STUDY;
+    int patient = study / 10;
+    return switch (column) {
+      case 1 -> "PAT" + patient;
+      case 2 -> "Doe^John" + patient;
+      case 3 -> "19" + (50 + patient % 50) + "0612";
+      case 4 -> "M";
+      case 5 -> "1.2.826.0.1.3680043.2." + study;
+      case 6 -> Timestamp.valueOf(first.plusHours(study));
+      case 7 -> "A" + study;
+      case 8 -> String.valueOf(study);
+      case 9 -> "Smith^Jane";
+      case 10 -> "Thorax";
+      case 11 -> "1.2.826.0.1.3680043.2." + study + "." + series;
+      case 12 -> String.valueOf(series % SERIES_PER_STUDY + 1);
+      case 13 -> "CT";
+      case 14 -> "Axial";
+      case 15 -> "1.2.826.0.1.3680043.2." + study + "." + series + "." + row;
+      case 16 -> String.valueOf(row % INSTANCES_PER_SERIES + 1);
+      default -> null;
+    };
+  }
+
+  @Benchmark
+  public Map<String, StudyTree> rowMapper() throws SQLException {
+    Map<String, StudyTree> trees = new LinkedHashMap<>();
+    mapper.map(newResultSet(), trees, 0);
+    return trees;
+  }
+
+  @Benchmark
+  public Map<String, StudyTree> previousMapping() throws SQLException {
+    Map<String, StudyTree> trees = new LinkedHashMap<>();
+    buildListFromDB(newResultSet(), trees);
+    return trees;
+  }
+
+  private void buildListFromDB(ResultSet resultSet, Map<String, StudyTree> trees)
+      throws SQLException {
+    String patientNameField = properties.getProperty("arc.db.query.setpatientname");
+    String patientBirthdateFormatField =
+        properties.getProperty("arc.db.query.patientbirthdate.format");
+    String patientBirthDateField = properties.getProperty("arc.db.query.patientbirthdate");
+    String patientSexField = properties.getProperty("arc.db.query.patientsex");
+    String studyDateField = properties.getProperty("arc.db.query.studydate");
+    String accessionNumberField = properties.getProperty("arc.db.query.accessionnumber");
+    String studyIdField = properties.getProperty("arc.db.query.studyid");
+    String referringPhysicianNameField =
+        properties.getProperty("arc.db.query.referringphysicianname");
+    String studyDescriptionField = properties.getProperty("arc.db.query.studydescription");
+    String seriesDescriptionField = properties.getProperty("arc.db.query.seriesdescription");
+    String modalityField = properties.getProperty("arc.db.query.modality");
+    String seriesNumberField = properties.getProperty("arc.db.query.seriesnumber");
+    String instanceNumberField = properties.getProperty("arc.db.query.instancenumber");
+    String patIDField = properties.getProperty("arc.db.query.patientid");
+    String studyIUIDField = properties.getProperty("arc.db.query.studyinstanceuid");
+    String seriesIUIDField = properties.getProperty("arc.db.query.seriesinstanceuid");
+    String sopIUIDField = properties.getProperty("arc.db.query.sopinstanceuid");
+
+    Map<String, SeriesTree> seriesMap = new HashMap<>();
+    while (resultSet.next()) {
+      String studyUID = getString(resultSet, studyIUIDField);
+      StudyTree study = trees.get(studyUID);
+      if (study == null) {
+        Attributes dataset = new Attributes();
+        dataset.setString(Tag.PatientID, VR.LO, getString(resultSet, patIDField));
+        dataset.setString(Tag.PatientName, VR.PN, getString(resultSet, patientNameField));
+        String birthDate = resultSet.getString(patientBirthDateField);
+        dataset.setString(
+            Tag.PatientBirthDate,
+            VR.DA,
+            DateTimeUtils.formatDA(
+                LocalDate.parse(
+                    birthDate, DateTimeFormatter.ofPattern(patientBirthdateFormatField))));
+        dataset.setString(Tag.PatientSex, VR.CS, getString(resultSet, patientSexField));
+        dataset.setString(Tag.StudyInstanceUID, VR.UI, studyUID);
+        Timestamp timestamp = resultSet.getTimestamp(studyDateField);
+        if (timestamp != null) {
+          LocalDateTime dateTime = timestamp.toLocalDateTime();
+          dataset.setString(Tag.StudyDate, VR.DA, DateTimeUtils.formatDA(dateTime.toLocalDate()));
+          dataset.setString(Tag.StudyTime, VR.TM, DateTimeUtils.formatTM(dateTime.toLocalTime()));
+        }
+        dataset.setString(Tag.AccessionNumber, VR.SH, getString(resultSet, accessionNumberField));
+        dataset.setString(Tag.StudyID, VR.SH, getString(resultSet, studyIdField));
+        dataset.setString(
+            Tag.ReferringPhysicianName, VR.PN, getString(resultSet, referringPhysicianNameField));
+        dataset.setString(Tag.StudyDescription, VR.LO, getString(resultSet, studyDescriptionField));
+
+        study = new StudyTree(dataset, new ArrayList<>());
+        trees.put(studyUID, study);
+      }
+
+      String seriesUID = getString(resultSet, seriesIUIDField);
+      SeriesTree series = seriesMap.get(studyUID + '\\' + seriesUID);
+      if (series == null) {
+        Attributes dataset = new Attributes();
+        dataset.setString(Tag.SeriesInstanceUID, VR.UI, seriesUID);
+        dataset.setString(
+            Tag.SeriesDescription, VR.LO, getString(resultSet, seriesDescriptionField));
+        dataset.setString(Tag.Modality, VR.CS, getString(resultSet, modalityField));
+        dataset.setString(Tag.SeriesNumber, VR.IS, getString(resultSet, seriesNumberField));
+
+        series = new SeriesTree(dataset, new ArrayList<>());
+        seriesMap.put(studyUID + '\\' + seriesUID, series);
+        study.series().add(series);
+      }
+
+      Attributes instance = new Attributes();
+      instance.setString(Tag.SOPInstanceUID, VR.UI, getString(resultSet, sopIUIDField));
+      instance.setString(Tag.InstanceNumber, VR.IS, getString(resultSet, instanceNumberField));
+      series.instances().add(instance);
+    }
+  }
+
+  private static String getString(ResultSet resultSet, String field) throws SQLException {
+    return field == null ? null : EscapeChars.forXML(resultSet.getString(field));
+  }
+}
@@ -9,21 +9,62 @@
  */
 package org.weasis.query;
 
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
 import java.util.Base64;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.List;
 import java.util.Objects;
 import java.util.Properties;
+import javax.xml.datatype.DatatypeConfigurationException;
+import javax.xml.datatype.DatatypeFactory;
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Tag;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.weasis.core.util.LangUtil;
 import org.weasis.core.util.StringUtil;
 import org.weasis.dicom.mf.AbstractQueryResult;
+import org.weasis.dicom.mf.Patient;
+import org.weasis.dicom.mf.Series;
+import org.weasis.dicom.mf.SopInstance;
+import org.weasis.dicom.mf.Study;
 import org.weasis.dicom.mf.WadoParameters;
+import org.weasis.query.StudyTree.SeriesTree;
 import org.weasis.servlet.ConnectorProperties;
+import org.weasis.servlet.ServletUtil;
 
 public abstract class AbstractQueryConfiguration extends AbstractQueryResult {
+  private static final Logger LOGGER = LoggerFactory.getLogger(AbstractQueryConfiguration.class);
 
   protected final Properties properties;
+  protected final CircuitBreaker circuitBreaker;
+  // "arc.query.parallelism", shared by all the levels of the queries of the request
+  protected final QueryExecutor.Limiter queryLimiter;
+  protected volatile Deadline deadline = Deadline.NONE;
+
+  // Query running in the background, see ServletUtil.queryArchives()
+  private final Object resultLock = new Object();
+  private boolean queryRunning;
+  private boolean queryDiscarded;
+
+  private static final DatatypeFactory datatypeFactory;
+
+  static {
+    try {
+      datatypeFactory = DatatypeFactory.newInstance();
+    } catch (DatatypeConfigurationException e) {
+      throw new Error(e);
+    }
+  }
 
   public AbstractQueryConfiguration(Properties properties) {
     this.properties = Objects.requireNonNull(properties, "properties cannot be null!");
+    this.circuitBreaker = CircuitBreaker.getInstance(getArchiveID(), properties);
+    this.queryLimiter =
+        new QueryExecutor.Limiter(
+            ServletUtil.getIntProperty(properties, "arc.query.parallelism", 1));
   }
 
   public abstract void buildFromPatientID(CommonQueryParams params, String... patientIDs);
@@ -67,10 +108,231 @@ public abstract class AbstractQueryConfiguration extends AbstractQueryResult {
     return wado;
   }
 
+  /**
+   * Add a study, its series and its instances to the patient list.
+   *
+   * @param tree the study tree
+   */
+  protected void addStudyTree(StudyTree tree) {
+    addResults(
+        () -> {
+          // Get patient from each study in case IssuerOfPatientID is different
+          Patient patient = getPatient(tree.study());
+          Study study = getStudy(patient, tree.study());
+          addSeriesTrees(study, tree.series());
+        });
+  }
+
+  /**
+   * Add results to the patient list, unless the query running in the background has been discarded.
+   * All the changes of the patient list made by a query must go through this method.
+   *
+   * @param addition the changes of the patient list
+   */
+  protected void addResults(Runnable addition) {
+    synchronized (resultLock) {
+      if (!queryDiscarded) {
+        addition.run();
+      }
+    }
+  }
+
+  /**
+   * Start a query running in the background.
+   *
+   * @return false when the query must not run: it has been canceled before starting or the
+   *     discarded query of a previous call is still running
+   */
+  public boolean beginQuery() {
+    synchronized (resultLock) {
+      if (queryDiscarded || Thread.currentThread().isInterrupted()) {
+        return false;
+      }
+      queryRunning = true;
+      return true;
+    }
+  }
+
+  /** End a query started with {@link #beginQuery()}. */
+  public void endQuery() {
+    synchronized (resultLock) {
+      queryRunning = false;
+      queryDiscarded = false;
+    }
+  }
+
+  /**
+   * Ignore the results that the query running in the background adds from now on. The results
+   * already added to the patient list are kept.
+   */
+  public void discardQuery() {
+    synchronized (resultLock) {
+      if (queryRunning) {
+        queryDiscarded = true;
+      }
+    }
+  }
+
+  protected void addSeriesTrees(Study study, List<SeriesTree> seriesTrees) {
+    for (SeriesTree seriesTree : seriesTrees) {
+      if (!seriesTree.instances().isEmpty()) {
+        addInstances(getSeries(study, seriesTree.series(), properties), seriesTree.instances());
+      }
+    }
+  }
+
+  protected Patient getPatient(Attributes patientDataset) {
+    if (patientDataset == null) {
+      throw new IllegalArgumentException("patientDataset cannot be null");
+    }
+
+    String id = patientDataset.getString(Tag.PatientID, "Unknown");
+    String ispid = patientDataset.getString(Tag.IssuerOfPatientID);
+    Patient p = getPatient(id, ispid);
+    if (p == null) {
+      p = new Patient(id, ispid);
+      p.setPatientName(patientDataset.getString(Tag.PatientName));
+      // Only set birth date, birth time is often not consistent (00:00)
+      p.setPatientBirthDate(patientDataset.getString(Tag.PatientBirthDate));
+      String birthTime = patientDataset.getString(Tag.PatientBirthTime);
+      if (birthTime != null) {
+        // Only from DB archives
+        p.setPatientBirthTime(birthTime);
+      }
+      p.setPatientSex(patientDataset.getString(Tag.PatientSex));
+      addPatient(p);
+    }
+    return p;
+  }
+
+  protected static Study getStudy(Patient patient, final Attributes studyDataset) {
+    if (studyDataset == null) {
+      throw new IllegalArgumentException("studyDataset cannot be null");
+    }
+    String uid = studyDataset.getString(Tag.StudyInstanceUID);
+    Study s = patient.getStudy(uid);
+    if (s == null) {
+      s = new Study(uid);
+      s.setStudyDescription(studyDataset.getString(Tag.StudyDescription));
+      s.setStudyDate(studyDataset.getString(Tag.StudyDate));
+      s.setStudyTime(studyDataset.getString(Tag.StudyTime));
+      s.setAccessionNumber(studyDataset.getString(Tag.AccessionNumber));
+      s.setStudyID(studyDataset.getString(Tag.StudyID));
+      s.setReferringPhysicianName(studyDataset.getString(Tag.ReferringPhysicianName));
+      patient.addStudy(s);
+    }
+    return s;
+  }
+
+  protected static Series getSeries(
+      Study study, final Attributes seriesDataset, Properties properties) {
+    if (seriesDataset == null) {
+      throw new IllegalArgumentException("seriesDataset cannot be null");
+    }
+    String uid = seriesDataset.getString(Tag.SeriesInstanceUID);
+    Series s = study.getSeries(uid);
+    if (s == null) {
+      s = new Series(uid);
+      s.setModality(seriesDataset.getString(Tag.Modality));
+      s.setSeriesNumber(seriesDataset.getString(Tag.SeriesNumber));
+      s.setSeriesDescription(seriesDataset.getString(Tag.SeriesDescription));
+      String wadotTsuid = properties.getProperty("wado.request.tsuid");
+      if (StringUtil.hasText(wadotTsuid)) {
+        String[] val = wadotTsuid.split(":");
+        if (val.length > 0) {
+          s.setWadoTransferSyntaxUID(val[0]);
+        }
+        if (val.length > 1) {
+          s.setWadoCompression(val[1]);
+        }
+      }
+      study.addSeries(s);
+    }
+    return s;
+  }
+
+  protected static void addInstances(Series s, List<Attributes> instances) {
+    for (Attributes instanceDataSet : instances) {
+      Integer frame =
+          ServletUtil.getIntegerFromDicomElement(instanceDataSet, Tag.InstanceNumber, null);
+      String sopUID = instanceDataSet.getString(Tag.SOPInstanceUID);
+      SopInstance sop = s.getSopInstance(sopUID, frame);
+      if (sop == null) {
+        s.addSopInstance(new SopInstance(sopUID, frame));
+      }
+    }
+  }
+
+  /**
+   * Build the StudyDate range matching key from upperDateTime (the oldest date) and lowerDateTime
+   * (the most recent date). The range has one more day on each side as the time zone of the
+   * parameters can be different from the one of the archive.
+   *
+   * @return the date range or null when there is no date filter
+   */
+  protected static String getStudyDateRange(CommonQueryParams params) {
+    LocalDate oldest = parseFilterLocalDate(params.getUpperDateTime());
+    LocalDate latest = parseFilterLocalDate(params.getLowerDateTime());
+    if (oldest == null && latest == null) {
+      return null;
+    }
+    StringBuilder range = new StringBuilder();
+    if (oldest != null) {
+      range.append(oldest.minusDays(1).format(DateTimeFormatter.BASIC_ISO_DATE));
+    }
+    range.append('-');
+    if (latest != null) {
+      range.append(latest.plusDays(1).format(DateTimeFormatter.BASIC_ISO_DATE));
+    }
+    return range.toString();
+  }
+
+  protected static LocalDate parseFilterLocalDate(String dateTime) {
+    if (StringUtil.hasText(dateTime)) {
+      try {
+        return parseDateTime(dateTime).toZonedDateTime().toLocalDate();
+      } catch (Exception e) {
+        LOGGER.error("Cannot parse date: {}", dateTime, e);
+      }
+    }
+    return null;
+  }
+
+  protected static Date parseFilterDate(String dateTime) {
+    if (StringUtil.hasText(dateTime)) {
+      try {
+        return parseDateTime(dateTime).getTime();
+      } catch (Exception e) {
+        LOGGER.error("Cannot parse date: {}", dateTime, e);
+      }
+    }
+    return null;
+  }
+
+  public static GregorianCalendar parseDateTime(CharSequence s) {
+    String val = s.toString().trim();
+    return datatypeFactory.newXMLGregorianCalendar(val).toGregorianCalendar();
+  }
+
   public Properties getProperties() {
     return properties;
   }
 
+  public CircuitBreaker getCircuitBreaker() {
+    return circuitBreaker;
+  }
+
+  public Deadline getDeadline() {
+    return deadline;
+  }
+
+  /**
+   * @param deadline the time limit of the queries to the archive
+   */
+  public void setDeadline(Deadline deadline) {
+    this.deadline = Objects.requireNonNull(deadline);
+  }
+
   public String getArchiveID() {
     return properties.getProperty("arc.id");
   }
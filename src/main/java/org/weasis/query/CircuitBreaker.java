@@ -0,0 +1,269 @@
+/*
+ * Copyright (c) 2026 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.query;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.weasis.servlet.ServletUtil;
+
+/**
+ * Circuit breaker of an archive, shared by all the requests. The outcome of the last queries is
+ * kept in a sliding window and when the percentage of failed or slow queries reaches
+ * "arc.circuit.failure.rate", the circuit opens: the archive is skipped during
+ * "arc.circuit.open.duration". Then a single request is allowed to test the archive (half-open
+ * state) and its first query closes the circuit or opens it again.
+ */
+public final class CircuitBreaker {
+  private static final Logger LOGGER = LoggerFactory.getLogger(CircuitBreaker.class);
+
+  public enum State {
+    CLOSED,
+    OPEN,
+    HALF_OPEN
+  }
+
+  /** Circuit breaker always closed, used when "arc.circuit.failure.rate" is not set. */
+  public static final CircuitBreaker DISABLED = new CircuitBreaker("disabled", new Properties());
+
+  private static final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+  private final String name;
+  private final int failureRate;
+  private final int minCalls;
+  private final long slowCallTime;
+  private final long openDuration;
+
+  private final boolean[] window;
+  private int windowIndex;
+  private int windowCount;
+  private int windowFailures;
+  private State state = State.CLOSED;
+  private long openedTime;
+  private long probeTime;
+
+  private final LongAdder calls = new LongAdder();
+  private final LongAdder failures = new LongAdder();
+  private final LongAdder slowCalls = new LongAdder();
+  private final LongAdder rejected = new LongAdder();
+  private final LongAdder opened = new LongAdder();
+
+  CircuitBreaker(String name, Properties properties) {
+    this.name = name;
+    this.failureRate = ServletUtil.getIntProperty(properties, "arc.circuit.failure.rate", 0);
+    this.minCalls = Math.max(1, ServletUtil.getIntProperty(properties, "arc.circuit.min.calls", 5));
+    this.slowCallTime = ServletUtil.getLongProperty(properties, "arc.circuit.slow.call", 0L);
+    this.openDuration =
+        ServletUtil.getLongProperty(properties, "arc.circuit.open.duration", 30000L);
+    int size = Math.max(minCalls, ServletUtil.getIntProperty(properties, "arc.circuit.window", 20));
+    this.window = new boolean[size];
+  }
+
+  /**
+   * @param archiveID the archive ID
+   * @param properties the archive properties
+   * @return the circuit breaker shared by all the configurations of the archive
+   */
+  public static CircuitBreaker getInstance(String archiveID, Properties properties) {
+    if (archiveID == null
+        || ServletUtil.getIntProperty(properties, "arc.circuit.failure.rate", 0) <= 0) {
+      return DISABLED;
+    }
+    return breakers.computeIfAbsent(archiveID, k -> new CircuitBreaker(k, properties));
+  }
+
+  public boolean isEnabled() {
+    return failureRate > 0;
+  }
+
+  public synchronized State getState() {
+    return state;
+  }
+
+  /**
+   * @return true when the archive can be queried, false when the circuit is open
+   */
+  public synchronized boolean tryAcquire() {
+    if (state == State.CLOSED) {
+      return true;
+    }
+    long now = System.currentTimeMillis();
+    if (state == State.OPEN && now - openedTime >= openDuration) {
+      state = State.HALF_OPEN;
+      probeTime = 0;
+      LOGGER.info("Circuit of the archive {} is half-open, the next request tests it", name);
+    }
+    // Allow a single test request, or a new one when the previous one has not given any outcome
+    if (state == State.HALF_OPEN && (probeTime == 0 || now - probeTime >= openDuration)) {
+      probeTime = now;
+      return true;
+    }
+    rejected.increment();
+    return false;
+  }
+
+  /**
+   * Execute a query and record its outcome: an exception or a duration above
+   * "arc.circuit.slow.call" is counted as a failure. The end of the time limit of the request
+   * ({@link QueryTimeoutException}) is not an error of the archive, it is only counted when the
+   * query was slow. A query canceled or interrupted by the caller has no outcome: the caller
+   * records it when needed (see {@link ServletUtil}).
+   *
+   * @param query the query
+   * @return the result of the query
+   */
+  public <T> T call(Supplier<T> query) {
+    return call(query, e -> false);
+  }
+
+  /**
+   * Execute a query and record its outcome like {@link #call(Supplier)}, except for the exceptions
+   * which are an answer of the archive (e.g. a request rejected by the archive): they are recorded
+   * as a successful call.
+   *
+   * @param query the query
+   * @param answered the condition of the exceptions which are an answer of the archive
+   * @return the result of the query
+   */
+  public <T> T call(Supplier<T> query, Predicate<RuntimeException> answered) {
+    if (!isEnabled()) {
+      return query.get();
+    }
+    long start = System.currentTimeMillis();
+    T result;
+    try {
+      result = query.get();
+    } catch (QueryTimeoutException e) {
+      long duration = System.currentTimeMillis() - start;
+      // No outcome unless the query was slow, a half-open circuit allows another test request
+      // later
+      if (slowCallTime > 0 && duration >= slowCallTime) {
+        record(duration, false);
+      }
+      throw e;
+    } catch (CancellationException e) {
+      throw e;
+    } catch (RuntimeException e) {
+      if (!Thread.currentThread().isInterrupted()) {
+        record(System.currentTimeMillis() - start, !answered.test(e));
+      }
+      throw e;
+    } catch (Error e) {
+      if (!Thread.currentThread().isInterrupted()) {
+        record(System.currentTimeMillis() - start, true);
+      }
+      throw e;
+    }
+    record(System.currentTimeMillis() - start, false);
+    return result;
+  }
+
+  /**
+   * @param duration the duration of the query in milliseconds
+   * @param failed true when the query has failed
+   */
+  public synchronized void record(long duration, boolean failed) {
+    if (!isEnabled()) {
+      return;
+    }
+    calls.increment();
+    boolean slow = slowCallTime > 0 && duration >= slowCallTime;
+    if (slow) {
+      slowCalls.increment();
+    }
+    if (failed) {
+      failures.increment();
+    }
+    boolean failure = failed || slow;
+
+    if (state == State.HALF_OPEN) {
+      if (failure) {
+        open();
+      } else {
+        close();
+      }
+    } else if (state == State.CLOSED) {
+      if (windowCount == window.length) {
+        if (window[windowIndex]) {
+          windowFailures--;
+        }
+      } else {
+        windowCount++;
+      }
+      window[windowIndex] = failure;
+      if (failure) {
+        windowFailures++;
+      }
+      windowIndex = (windowIndex + 1) % window.length;
+      if (windowCount >= minCalls && windowFailures * 100 >= failureRate * windowCount) {
+        open();
+      }
+    }
+    // Outcomes received while the circuit is open come from queries started before
+  }
+
+  private void open() {
+    LOGGER.warn(
+        "Circuit of the archive {} is open for {} ms ({}/{} failed or slow queries)",
+        name,
+        openDuration,
+        windowFailures,
+        windowCount);
+    state = State.OPEN;
+    openedTime = System.currentTimeMillis();
+    opened.increment();
+    resetWindow();
+  }
+
+  private void close() {
+    LOGGER.info("Circuit of the archive {} is closed", name);
+    state = State.CLOSED;
+    resetWindow();
+  }
+
+  private void resetWindow() {
+    windowIndex = 0;
+    windowCount = 0;
+    windowFailures = 0;
+  }
+
+  /**
+   * @return the state and the counters of the circuit breaker, each name is prefixed by
+   *     "circuit.[archive ID]"
+   */
+  public Map<String, Object> getCounters() {
+    String prefix = "circuit." + name;
+    Map<String, Object> stats = new LinkedHashMap<>();
+    stats.put(prefix + ".state", getState());
+    stats.put(prefix + ".calls", calls.sum());
+    stats.put(prefix + ".failures", failures.sum());
+    stats.put(prefix + ".slow.calls", slowCalls.sum());
+    stats.put(prefix + ".rejected", rejected.sum());
+    stats.put(prefix + ".opened", opened.sum());
+    return stats;
+  }
+
+  /**
+   * @return the counters of the circuit breakers of all the archives
+   */
+  public static Map<String, Object> getStatistics() {
+    Map<String, Object> stats = new LinkedHashMap<>();
+    new TreeMap<>(breakers).values().forEach(b -> stats.putAll(b.getCounters()));
+    return stats;
+  }
+}
@@ -28,6 +28,7 @@ import org.weasis.dicom.mf.ViewerMessage;
 import org.weasis.dicom.param.DicomNode;
 import org.weasis.query.db.DbQueryConfiguration;
 import org.weasis.query.dicom.DicomQueryConfiguration;
+import org.weasis.query.qido.QidoQueryConfiguration;
 import org.weasis.servlet.ConnectorProperties;
 import org.weasis.servlet.ServletUtil;
 
@@ -96,6 +97,7 @@ public class CommonQueryParams {
   protected final ConnectorProperties properties;
   protected final List<AbstractQueryConfiguration> archiveList;
   protected final Map<String, String[]> requestMap;
+  protected final Deadline deadline;
 
   public CommonQueryParams(HttpServletRequest request, ConnectorProperties properties) {
     if (properties == null) {
@@ -104,6 +106,7 @@ public class CommonQueryParams {
     this.properties = properties;
     this.archiveList = new ArrayList<>();
     this.requestMap = new HashMap<>(request.getParameterMap());
+    this.deadline = Deadline.after(ServletUtil.getLongProperty(properties, "request.timeout", 0L));
 
     initArchiveList(request);
   }
@@ -112,6 +115,13 @@ public class CommonQueryParams {
     return Collections.unmodifiableMap(requestMap);
   }
 
+  /**
+   * @return the time limit of the queries of the request ("request.timeout")
+   */
+  public Deadline getDeadline() {
+    return deadline;
+  }
+
   private void initArchiveList(HttpServletRequest request) {
     DicomNode callingNode = new DicomNode(properties.getProperty("aet", "PACS-CONNECTOR"));
     String[] archives = requestMap.get(ARCHIVE);
@@ -165,11 +175,35 @@ public class CommonQueryParams {
       p.setProperty("wado.httpTags", val);
     }
 
-    if (p.getProperty("arc.aet") != null) {
-      this.archiveList.add(new DicomQueryConfiguration(p, callingNode));
+    AbstractQueryConfiguration archive = newArchive(p, callingNode);
+    if (archive != null) {
+      archive.setDeadline(deadline);
+      this.archiveList.add(archive);
+    }
+  }
+
+  private static AbstractQueryConfiguration newArchive(Properties p, DicomNode callingNode) {
+    if (p.getProperty("arc.qido.url") != null) {
+      return new QidoQueryConfiguration(p);
+    } else if (p.getProperty("arc.aet") != null) {
+      return new DicomQueryConfiguration(p, callingNode);
     } else if (p.getProperty("arc.db.driver") != null) {
-      this.archiveList.add(new DbQueryConfiguration(p));
+      return new DbQueryConfiguration(p);
     }
+    return null;
+  }
+
+  /**
+   * Used when an archive query cannot be completed: the results already received from the archive
+   * are kept with a warning message, the results of the query still running in the background are
+   * ignored.
+   *
+   * @param archive the archive
+   * @param message the message displayed in the viewer with the archive results
+   */
+  public void discardArchive(AbstractQueryConfiguration archive, ViewerMessage message) {
+    archive.discardQuery();
+    archive.setViewerMessage(message);
   }
 
   private static String getFirstParam(String[] val) {
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2026 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.query;
+
+import java.util.concurrent.TimeUnit;
+
+/** The time limit of the queries of a manifest request. */
+public final class Deadline {
+
+  public static final Deadline NONE = new Deadline(Long.MAX_VALUE);
+
+  private final long time;
+
+  private Deadline(long time) {
+    this.time = time;
+  }
+
+  /**
+   * @param timeout the maximum duration in milliseconds, no limit when lower than 1
+   * @return a deadline starting now
+   */
+  public static Deadline after(long timeout) {
+    return timeout > 0 ? new Deadline(System.currentTimeMillis() + timeout) : NONE;
+  }
+
+  public boolean isLimited() {
+    return time != Long.MAX_VALUE;
+  }
+
+  public boolean isExpired() {
+    return isLimited() && System.currentTimeMillis() >= time;
+  }
+
+  /**
+   * @return the remaining time in milliseconds (0 when expired, Long.MAX_VALUE without limit)
+   */
+  public long getRemainingTime() {
+    return isLimited() ? Math.max(0, time - System.currentTimeMillis()) : Long.MAX_VALUE;
+  }
+
+  /**
+   * @param timeout a timeout in milliseconds, no timeout when lower than 1
+   * @return the smallest value between the timeout and the remaining time (Long.MAX_VALUE when none
+   *     is limited)
+   */
+  public long getTimeout(long timeout) {
+    return Math.min(timeout > 0 ? timeout : Long.MAX_VALUE, getRemainingTime());
+  }
+
+  /**
+   * @return the remaining time in seconds rounded up, 0 without limit (as with JDBC timeouts)
+   */
+  public int getRemainingSeconds() {
+    if (!isLimited()) {
+      return 0;
+    }
+    return (int) Math.max(1, TimeUnit.MILLISECONDS.toSeconds(getRemainingTime() + 999));
+  }
+
+  /**
+   * @throws QueryTimeoutException when the deadline is expired
+   */
+  public void check() {
+    if (isExpired()) {
+      throw new QueryTimeoutException("The time limit of the request has been reached");
+    }
+  }
+}
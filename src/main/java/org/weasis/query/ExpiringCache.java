@@ -0,0 +1,239 @@
+/*
+ * Copyright (c) 2026 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.query;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A bounded LRU cache whose entries expire after a time to live. An expired entry can still be
+ * returned during the stale period while it is reloaded in the background.
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+public class ExpiringCache<K, V> {
+  private static final Logger LOGGER = LoggerFactory.getLogger(ExpiringCache.class);
+
+  private record Entry<V>(V value, long loadTime, int weight) {}
+
+  private final String name;
+  private final long timeToLive;
+  private final long staleTime;
+  private final long maxWeight;
+  private final ToIntFunction<V> weigher;
+
+  private final LinkedHashMap<K, Entry<V>> map = new LinkedHashMap<>(64, 0.75f, true);
+  private final Set<K> refreshing = ConcurrentHashMap.newKeySet();
+  private long weight;
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder staleHits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  /**
+   * @param name the name of the cache in the statistics
+   * @param timeToLive the time in milliseconds during which an entry is valid (0 disables the
+   *     cache)
+   * @param staleTime the additional time in milliseconds during which an expired entry is returned
+   *     while it is reloaded
+   * @param maxWeight the maximum total weight of the entries
+   * @param weigher the weight of a value
+   */
+  public ExpiringCache(
+      String name, long timeToLive, long staleTime, long maxWeight, ToIntFunction<V> weigher) {
+    this.name = name;
+    this.timeToLive = timeToLive;
+    this.staleTime = Math.max(0, staleTime);
+    this.maxWeight = maxWeight;
+    this.weigher = weigher;
+  }
+
+  public boolean isEnabled() {
+    return timeToLive > 0 && maxWeight > 0;
+  }
+
+  /**
+   * Get a value from the cache or load it when it is missing.
+   *
+   * @param key the key
+   * @param loader the function loading a value, a null value is not cached
+   * @return the value
+   */
+  public V get(K key, Function<K, V> loader) {
+    if (!isEnabled()) {
+      return loader.apply(key);
+    }
+    V value = getIfPresent(key, loader);
+    if (value == null) {
+      value = loader.apply(key);
+      put(key, value);
+    }
+    return value;
+  }
+
+  /**
+   * Get a value from the cache. When the value is in its stale period, it is reloaded in the
+   * background with the refresher.
+   *
+   * @param key the key
+   * @param refresher the function reloading a stale value, or null. It returns null when the value
+   *     does not exist anymore, the entry is then removed. It throws an exception when the value
+   *     cannot be loaded, the stale value is then kept until the end of its stale period.
+   * @return the value or null when it is not in the cache
+   */
+  public V getIfPresent(K key, Function<K, V> refresher) {
+    if (!isEnabled()) {
+      return null;
+    }
+    long now = System.currentTimeMillis();
+    Entry<V> entry;
+    synchronized (map) {
+      entry = map.get(key);
+      if (entry != null && now - entry.loadTime() >= timeToLive + staleTime) {
+        remove(key);
+        entry = null;
+      }
+    }
+    if (entry == null) {
+      misses.increment();
+      return null;
+    }
+    if (now - entry.loadTime() >= timeToLive) {
+      staleHits.increment();
+      refresh(key, refresher);
+    } else {
+      hits.increment();
+    }
+    return entry.value();
+  }
+
+  private void refresh(K key, Function<K, V> refresher) {
+    if (refresher == null || !refreshing.add(key)) {
+      return;
+    }
+    try {
+      QueryExecutor.getExecutor()
+          .execute(
+              () -> {
+                try {
+                  V value = refresher.apply(key);
+                  if (value == null) {
+                    invalidate(key);
+                  } else {
+                    put(key, value);
+                  }
+                } catch (Exception e) {
+                  // The stale value is kept
+                  LOGGER.debug("Cannot refresh {} in {} cache", key, name, e);
+                } finally {
+                  refreshing.remove(key);
+                }
+              });
+    } catch (RejectedExecutionException e) {
+      refreshing.remove(key);
+    }
+  }
+
+  public void put(K key, V value) {
+    if (!isEnabled() || value == null) {
+      return;
+    }
+    int w = Math.max(1, weigher.applyAsInt(value));
+    if (w > maxWeight) {
+      return;
+    }
+    synchronized (map) {
+      Entry<V> old = map.put(key, new Entry<>(value, System.currentTimeMillis(), w));
+      if (old != null) {
+        weight -= old.weight();
+      }
+      weight += w;
+      Iterator<Map.Entry<K, Entry<V>>> it = map.entrySet().iterator();
+      while (weight > maxWeight && it.hasNext()) {
+        Map.Entry<K, Entry<V>> eldest = it.next();
+        if (!eldest.getKey().equals(key)) {
+          it.remove();
+          weight -= eldest.getValue().weight();
+          evictions.increment();
+        }
+      }
+    }
+  }
+
+  private void remove(K key) {
+    Entry<V> old = map.remove(key);
+    if (old != null) {
+      weight -= old.weight();
+    }
+  }
+
+  public void invalidate(K key) {
+    synchronized (map) {
+      remove(key);
+    }
+  }
+
+  /**
+   * Remove the entries matching the predicate.
+   *
+   * @param predicate the predicate on the keys
+   * @return the number of removed entries
+   */
+  public int invalidateIf(Predicate<K> predicate) {
+    int count = 0;
+    synchronized (map) {
+      Iterator<Map.Entry<K, Entry<V>>> it = map.entrySet().iterator();
+      while (it.hasNext()) {
+        Map.Entry<K, Entry<V>> entry = it.next();
+        if (predicate.test(entry.getKey())) {
+          it.remove();
+          weight -= entry.getValue().weight();
+          count++;
+        }
+      }
+    }
+    return count;
+  }
+
+  public int size() {
+    synchronized (map) {
+      return map.size();
+    }
+  }
+
+  /**
+   * @return the counters of the cache, each name is prefixed by the cache name
+   */
+  public Map<String, Long> getStatistics() {
+    Map<String, Long> stats = new LinkedHashMap<>();
+    synchronized (map) {
+      stats.put(name + ".size", (long) map.size());
+      stats.put(name + ".weight", weight);
+    }
+    stats.put(name + ".max.weight", maxWeight);
+    stats.put(name + ".hits", hits.sum());
+    stats.put(name + ".stale.hits", staleHits.sum());
+    stats.put(name + ".misses", misses.sum());
+    stats.put(name + ".evictions", evictions.sum());
+    return stats;
+  }
+}
@@ -0,0 +1,244 @@
+/*
+ * Copyright (c) 2026 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.query;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.weasis.servlet.ServletUtil;
+
+/**
+ * Hedged queries of an archive having several equivalent nodes, shared by all the requests. The
+ * query is sent to the first node and, when it has not answered after the "arc.hedge.percentile" of
+ * the recent query durations, the same query is sent to the next node. The first answer is kept and
+ * the other queries are canceled. A failed query is immediately sent to the next node, even when
+ * hedging is disabled.
+ */
+public final class HedgePolicy {
+  private static final Logger LOGGER = LoggerFactory.getLogger(HedgePolicy.class);
+
+  /** Policy without hedging, used when "arc.hedge.percentile" is not set. */
+  public static final HedgePolicy DISABLED = new HedgePolicy("disabled", new Properties());
+
+  /** Minimum number of query durations for computing the hedging delay. */
+  static final int MIN_SAMPLES = 10;
+
+  private static final Map<String, HedgePolicy> policies = new ConcurrentHashMap<>();
+
+  private final String name;
+  private final int percentile;
+  private final long minDelay;
+
+  private final long[] window;
+  private int windowIndex;
+  private int windowCount;
+
+  private final LongAdder calls = new LongAdder();
+  private final LongAdder hedged = new LongAdder();
+  private final LongAdder hedgeWins = new LongAdder();
+
+  HedgePolicy(String name, Properties properties) {
+    this.name = name;
+    this.percentile =
+        Math.min(100, ServletUtil.getIntProperty(properties, "arc.hedge.percentile", 0));
+    this.minDelay = ServletUtil.getLongProperty(properties, "arc.hedge.min.delay", 20L);
+    int size =
+        Math.max(MIN_SAMPLES, ServletUtil.getIntProperty(properties, "arc.hedge.window", 100));
+    this.window = new long[size];
+  }
+
+  /**
+   * @param archiveID the archive ID
+   * @param properties the archive properties
+   * @return the hedge policy shared by all the configurations of the archive
+   */
+  public static HedgePolicy getInstance(String archiveID, Properties properties) {
+    if (archiveID == null
+        || ServletUtil.getIntProperty(properties, "arc.hedge.percentile", 0) <= 0) {
+      return DISABLED;
+    }
+    return policies.computeIfAbsent(archiveID, k -> new HedgePolicy(k, properties));
+  }
+
+  public boolean isEnabled() {
+    return percentile > 0;
+  }
+
+  /**
+   * @param duration the duration of a successful query in milliseconds
+   */
+  public synchronized void record(long duration) {
+    if (!isEnabled()) {
+      return;
+    }
+    window[windowIndex] = duration;
+    windowIndex = (windowIndex + 1) % window.length;
+    if (windowCount < window.length) {
+      windowCount++;
+    }
+  }
+
+  /**
+   * @return the time in milliseconds after which the query is sent to the next node, or -1 when
+   *     hedging is disabled or there are not enough recent durations
+   */
+  public long getDelay() {
+    if (!isEnabled()) {
+      return -1;
+    }
+    long[] durations;
+    synchronized (this) {
+      if (windowCount < MIN_SAMPLES) {
+        return -1;
+      }
+      durations = Arrays.copyOf(window, windowCount);
+    }
+    Arrays.sort(durations);
+    int index = (int) Math.ceil(percentile * durations.length / 100.0) - 1;
+    return Math.max(minDelay, durations[Math.max(0, index)]);
+  }
+
+  /**
+   * Execute the same query on the equivalent nodes of the archive. Each attempt receives a
+   * condition which becomes true when another attempt has given the result, the attempt should then
+   * stop as soon as possible.
+   *
+   * @param attempts the query on each node, by order of preference
+   * @param deadline the time limit of the request
+   * @return the result of the first successful attempt
+   */
+  public <T> T call(List<? extends Function<BooleanSupplier, T>> attempts, Deadline deadline) {
+    calls.increment();
+    long delay = attempts.size() > 1 ? getDelay() : -1;
+    if (delay < 0) {
+      // Not enough recent durations, only fail over to the next node
+      for (int i = 0; ; i++) {
+        long start = System.currentTimeMillis();
+        try {
+          T result = attempts.get(i).apply(() -> false);
+          record(System.currentTimeMillis() - start);
+          return result;
+        } catch (QueryTimeoutException e) {
+          throw e;
+        } catch (RuntimeException e) {
+          if (i + 1 >= attempts.size()) {
+            throw e;
+          }
+          LOGGER.debug("Query {} of {} failed", i + 1, name, e);
+        }
+      }
+    }
+
+    Hedge<T> hedge = new Hedge<>(attempts);
+    hedge.startNext();
+    try {
+      try {
+        return hedge.result.get(deadline.getTimeout(delay), TimeUnit.MILLISECONDS);
+      } catch (TimeoutException e) {
+        if (!deadline.isExpired() && hedge.startNext()) {
+          LOGGER.debug("No answer of {} after {} ms, send the query to the next node", name, delay);
+        }
+      }
+      return hedge.result.get(deadline.getRemainingTime(), TimeUnit.MILLISECONDS);
+    } catch (TimeoutException e) {
+      hedge.result.cancel(false);
+      throw new QueryTimeoutException("No answer of " + name + " before the time limit");
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException re) {
+        throw re;
+      }
+      throw new IllegalStateException("Query of " + name + " failed", e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      hedge.result.cancel(false);
+      throw new IllegalStateException("Query of " + name + " interrupted", e);
+    }
+  }
+
+  private final class Hedge<T> {
+    private final List<? extends Function<BooleanSupplier, T>> attempts;
+    private final CompletableFuture<T> result = new CompletableFuture<>();
+    private final AtomicInteger next = new AtomicInteger();
+    private final AtomicInteger failures = new AtomicInteger();
+
+    Hedge(List<? extends Function<BooleanSupplier, T>> attempts) {
+      this.attempts = attempts;
+    }
+
+    /**
+     * @return true when the query has been sent to another node
+     */
+    boolean startNext() {
+      int index = next.getAndIncrement();
+      if (index >= attempts.size() || result.isDone()) {
+        return false;
+      }
+      if (index > 0) {
+        hedged.increment();
+      }
+      QueryExecutor.getExecutor().execute(() -> run(index));
+      return true;
+    }
+
+    private void run(int index) {
+      long start = System.currentTimeMillis();
+      try {
+        T value = attempts.get(index).apply(result::isDone);
+        record(System.currentTimeMillis() - start);
+        if (result.complete(value) && index > 0) {
+          hedgeWins.increment();
+        }
+      } catch (RuntimeException e) {
+        LOGGER.debug("Query {} of {} failed", index + 1, name, e);
+        // Send the query at once to the next node, fail when all the nodes have failed
+        startNext();
+        if (failures.incrementAndGet() == attempts.size()) {
+          result.completeExceptionally(e);
+        }
+      }
+    }
+  }
+
+  /**
+   * @return the hedging delay and the counters, each name is prefixed by "hedge.[archive ID]"
+   */
+  public Map<String, Object> getCounters() {
+    String prefix = "hedge." + name;
+    Map<String, Object> stats = new LinkedHashMap<>();
+    stats.put(prefix + ".delay", getDelay());
+    stats.put(prefix + ".calls", calls.sum());
+    stats.put(prefix + ".hedged", hedged.sum());
+    stats.put(prefix + ".hedge.wins", hedgeWins.sum());
+    return stats;
+  }
+
+  /**
+   * @return the counters of the hedge policies of all the archives
+   */
+  public static Map<String, Object> getStatistics() {
+    Map<String, Object> stats = new LinkedHashMap<>();
+    new TreeMap<>(policies).values().forEach(p -> stats.putAll(p.getCounters()));
+    return stats;
+  }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2026 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.query;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.function.Supplier;
+import org.dcm4che3.data.Attributes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.weasis.servlet.ServletUtil;
+
+/**
+ * Short-lived cache of the studies matching a patient or an accession number, shared by all the
+ * manifests. The identifiers without matching study are cached separately (negative caching). It is
+ * disabled when "cache.identifier.ttl" and "cache.identifier.notfound.ttl" are 0.
+ */
+public final class IdentifierCache {
+  private static final Logger LOGGER = LoggerFactory.getLogger(IdentifierCache.class);
+
+  public static final String PATIENT_ID = "patientID";
+  public static final String ACCESSION_NUMBER = "accessionNumber";
+
+  /**
+   * @param archiveID the archive ID
+   * @param type the type of identifier
+   * @param values the identifier and the other matching keys of the query
+   */
+  public record Key(String archiveID, String type, List<String> values) {}
+
+  private static volatile ExpiringCache<Key, List<Attributes>> found = newCache("", 0, 0);
+  private static volatile ExpiringCache<Key, List<Attributes>> notFound =
+      newCache(".notfound", 0, 0);
+
+  private IdentifierCache() {}
+
+  private static ExpiringCache<Key, List<Attributes>> newCache(
+      String suffix, long ttl, long maxSize) {
+    return new ExpiringCache<>("cache.identifier" + suffix, ttl, 0, maxSize, List::size);
+  }
+
+  /**
+   * Configure the cache from the global properties, the previous entries are removed.
+   *
+   * @param properties the weasis-pacs-connector properties
+   */
+  public static void configure(Properties properties) {
+    long ttl = ServletUtil.getLongProperty(properties, "cache.identifier.ttl", 0L);
+    long notFoundTtl = ServletUtil.getLongProperty(properties, "cache.identifier.notfound.ttl", 0L);
+    long maxSize = ServletUtil.getLongProperty(properties, "cache.identifier.max.size", 100_000L);
+    found = newCache("", ttl, maxSize);
+    notFound = newCache(".notfound", notFoundTtl, maxSize);
+    if (found.isEnabled() || notFound.isEnabled()) {
+      LOGGER.info(
+          "Identifier cache configuration (ttl={}ms, notFoundTtl={}ms, maxSize={})",
+          ttl,
+          notFoundTtl,
+          maxSize);
+    }
+  }
+
+  /**
+   * Get the studies matching an identifier from the cache or from the loader.
+   *
+   * @param archiveID the archive ID
+   * @param type the type of identifier
+   * @param loader the query of the archive, an exception is not cached
+   * @param values the identifier and the other matching keys of the query
+   * @return a modifiable list of the matching studies, the attributes are copies of the cached ones
+   */
+  public static List<Attributes> get(
+      String archiveID, String type, Supplier<List<Attributes>> loader, String... values) {
+    if (!found.isEnabled() && !notFound.isEnabled()) {
+      return loader.get();
+    }
+    Key key = new Key(archiveID, type, Arrays.asList(values));
+    List<Attributes> studies = found.getIfPresent(key, null);
+    if (studies != null) {
+      return copyOf(studies);
+    }
+    if (notFound.getIfPresent(key, null) != null) {
+      return new ArrayList<>();
+    }
+
+    studies = loader.get();
+    if (studies == null || studies.isEmpty()) {
+      notFound.put(key, List.of());
+      return new ArrayList<>();
+    }
+    // The callers may modify the returned attributes
+    found.put(key, List.copyOf(copyOf(studies)));
+    return studies;
+  }
+
+  private static List<Attributes> copyOf(List<Attributes> studies) {
+    List<Attributes> list = new ArrayList<>(studies.size());
+    for (Attributes study : studies) {
+      list.add(new Attributes(study));
+    }
+    return list;
+  }
+
+  /**
+   * Remove identifiers from the cache.
+   *
+   * @param archiveID the archive ID or null for all the archives
+   * @return the number of removed identifiers
+   */
+  public static int purge(String archiveID) {
+    return found.invalidateIf(k -> archiveID == null || Objects.equals(archiveID, k.archiveID()))
+        + notFound.invalidateIf(k -> archiveID == null || Objects.equals(archiveID, k.archiveID()));
+  }
+
+  public static Map<String, Long> getStatistics() {
+    Map<String, Long> stats = new LinkedHashMap<>(found.getStatistics());
+    stats.putAll(notFound.getStatistics());
+    return stats;
+  }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2026 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.query;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/** Shared threads for running the queries of a manifest concurrently. */
+public final class QueryExecutor {
+
+  private static final ExecutorService EXECUTOR =
+      Executors.newCachedThreadPool(daemonThreadFactory("query-worker"));
+
+  private QueryExecutor() {}
+
+  public static ExecutorService getExecutor() {
+    return EXECUTOR;
+  }
+
+  /**
+   * Maximum number of tasks running at the same time, shared by nested calls of {@link
+   * #invokeAll(List, Limiter, Function)} (e.g. the studies of a request, then the series of each
+   * study). The calling thread runs the tasks when the other threads are busy, so the nested calls
+   * never wait for each other and never exceed the limit.
+   */
+  public static final class Limiter {
+    // Threads added to the calling thread
+    private final Semaphore permits;
+
+    /**
+     * @param parallelism the maximum number of concurrent tasks, including the calling thread
+     */
+    public Limiter(int parallelism) {
+      this.permits = new Semaphore(Math.max(0, parallelism - 1));
+    }
+
+    int availablePermits() {
+      return permits.availablePermits();
+    }
+  }
+
+  /**
+   * Apply a task to all the items with at most "parallelism" tasks running at the same time. When
+   * parallelism is lower than 2, the tasks are executed sequentially in the calling thread.
+   *
+   * @param items the items to process
+   * @param parallelism the maximum number of concurrent tasks
+   * @param task the task applied to each item
+   * @return the results in the same order as the items
+   */
+  public static <T, R> List<R> invokeAll(List<T> items, int parallelism, Function<T, R> task) {
+    return invokeAll(items, new Limiter(parallelism), task);
+  }
+
+  /**
+   * Apply a task to all the items, each task is sent to another thread when the limiter allows it
+   * or is executed by the calling thread.
+   *
+   * @param items the items to process
+   * @param limiter the limit of the concurrent tasks, shared by the nested calls
+   * @param task the task applied to each item
+   * @return the results in the same order as the items
+   */
+  public static <T, R> List<R> invokeAll(List<T> items, Limiter limiter, Function<T, R> task) {
+    List<R> results = new ArrayList<>(items.size());
+    if (items.size() < 2) {
+      for (T item : items) {
+        results.add(task.apply(item));
+      }
+      return results;
+    }
+
+    List<CompletableFuture<R>> futures = new ArrayList<>(items.size());
+    try {
+      for (T item : items) {
+        if (limiter.permits.tryAcquire()) {
+          // The permit is released once: at the end of the task, or at the cancellation when the
+          // task has not started (it will never start)
+          AtomicBoolean started = new AtomicBoolean();
+          CompletableFuture<R> future =
+              CompletableFuture.supplyAsync(
+                  () -> {
+                    if (!started.compareAndSet(false, true)) {
+                      return null;
+                    }
+                    try {
+                      return task.apply(item);
+                    } finally {
+                      limiter.permits.release();
+                    }
+                  },
+                  EXECUTOR);
+          future.whenComplete(
+              (r, e) -> {
+                if (started.compareAndSet(false, true)) {
+                  limiter.permits.release();
+                }
+              });
+          futures.add(future);
+        } else {
+          futures.add(CompletableFuture.completedFuture(task.apply(item)));
+        }
+      }
+      for (CompletableFuture<R> future : futures) {
+        results.add(future.get());
+      }
+    } catch (InterruptedException e) {
+      futures.forEach(f -> f.cancel(true));
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for the queries", e);
+    } catch (ExecutionException e) {
+      futures.forEach(f -> f.cancel(true));
+      if (e.getCause() instanceof RuntimeException runtimeException) {
+        throw runtimeException;
+      }
+      throw new IllegalStateException(e.getCause());
+    } catch (RuntimeException e) {
+      // Failure of a task executed by the calling thread
+      futures.forEach(f -> f.cancel(true));
+      throw e;
+    }
+    return results;
+  }
+
+  /**
+   * Split a list in a number of consecutive sub-lists of similar sizes.
+   *
+   * @param list the list to split
+   * @param parts the maximum number of sub-lists
+   * @return the sub-lists
+   */
+  public static <T> List<List<T>> partition(List<T> list, int parts) {
+    List<List<T>> chunks = new ArrayList<>();
+    if (list.isEmpty()) {
+      return chunks;
+    }
+    int size = (list.size() + Math.max(1, parts) - 1) / Math.max(1, parts);
+    for (int i = 0; i < list.size(); i += size) {
+      chunks.add(list.subList(i, Math.min(list.size(), i + size)));
+    }
+    return chunks;
+  }
+
+  public static ThreadFactory daemonThreadFactory(String name) {
+    AtomicInteger count = new AtomicInteger();
+    return r -> {
+      Thread t = new Thread(r, name + "-" + count.incrementAndGet());
+      t.setDaemon(true);
+      return t;
+    };
+  }
+
+  public static void shutdown() {
+    EXECUTOR.shutdownNow();
+  }
+}
@@ -0,0 +1,25 @@
+/*
+ * Copyright (c) 2026 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.query;
+
+import java.io.Serial;
+
+/** Thrown when a query cannot be completed before the deadline of the request. */
+public class QueryTimeoutException extends IllegalStateException {
+  @Serial private static final long serialVersionUID = 2208516311429631462L;
+
+  public QueryTimeoutException(String message) {
+    super(message);
+  }
+
+  public QueryTimeoutException(String message, Throwable cause) {
+    super(message, cause);
+  }
+}
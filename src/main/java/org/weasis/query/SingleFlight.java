@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2026 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.query;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Coalesce the identical queries executed at the same time by several requests: the first request
+ * executes the query and the others wait for its result. As the results can be modified by the
+ * requests, each request receives its own copy when the result is shared.
+ *
+ * @param <K> the key identifying a query
+ * @param <V> the result type
+ */
+public final class SingleFlight<K, V> {
+
+  private static final Map<String, SingleFlight<?, ?>> instances = new ConcurrentHashMap<>();
+
+  private static final class Flight<V> {
+    private final CompletableFuture<V> result = new CompletableFuture<>();
+    private final AtomicInteger waiters = new AtomicInteger();
+  }
+
+  private final String name;
+  private final UnaryOperator<V> copier;
+  private final Map<K, Flight<V>> flights = new ConcurrentHashMap<>();
+
+  private final LongAdder executions = new LongAdder();
+  private final LongAdder shared = new LongAdder();
+
+  /**
+   * @param name the name in the statistics
+   * @param copier the function copying a result
+   */
+  public SingleFlight(String name, UnaryOperator<V> copier) {
+    this.name = name;
+    this.copier = copier;
+    instances.put(name, this);
+  }
+
+  /**
+   * Execute the query or wait for the result of the identical query in progress.
+   *
+   * @param key the key of the query
+   * @param deadline the time limit of the request
+   * @param query the query
+   * @return the result of the query
+   */
+  public V execute(K key, Deadline deadline, Supplier<V> query) {
+    while (true) {
+      Flight<V> created = new Flight<>();
+      Flight<V> flight =
+          flights.compute(
+              key,
+              (k, f) -> {
+                if (f == null) {
+                  return created;
+                }
+                f.waiters.incrementAndGet();
+                return f;
+              });
+      if (flight == created) {
+        return lead(key, flight, query);
+      }
+
+      shared.increment();
+      try {
+        return copy(flight.result.get(deadline.getRemainingTime(), TimeUnit.MILLISECONDS));
+      } catch (TimeoutException e) {
+        throw new QueryTimeoutException(
+            "No result of the " + name + " query before the time limit");
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof QueryTimeoutException && !deadline.isExpired()) {
+          // The first request had a shorter time limit, execute the query again
+          continue;
+        }
+        if (cause instanceof RuntimeException re) {
+          throw re;
+        }
+        throw new IllegalStateException("The " + name + " query failed", cause);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while waiting for the " + name + " query", e);
+      }
+    }
+  }
+
+  private V lead(K key, Flight<V> flight, Supplier<V> query) {
+    executions.increment();
+    V value;
+    try {
+      value = query.get();
+    } catch (RuntimeException | Error e) {
+      flights.remove(key, flight);
+      flight.result.completeExceptionally(e);
+      throw e;
+    }
+    // No other request can join after the removal
+    flights.remove(key, flight);
+    flight.result.complete(value);
+    return flight.waiters.get() > 0 ? copy(value) : value;
+  }
+
+  private V copy(V value) {
+    return value == null ? null : copier.apply(value);
+  }
+
+  /**
+   * @return the counters, each name is prefixed by "singleflight.[name]"
+   */
+  public Map<String, Object> getCounters() {
+    String prefix = "singleflight." + name;
+    Map<String, Object> stats = new LinkedHashMap<>();
+    stats.put(prefix + ".executions", executions.sum());
+    stats.put(prefix + ".shared", shared.sum());
+    stats.put(prefix + ".in.flight", flights.size());
+    return stats;
+  }
+
+  /**
+   * @return the counters of all the single-flight groups
+   */
+  public static Map<String, Object> getStatistics() {
+    Map<String, Object> stats = new LinkedHashMap<>();
+    new TreeMap<>(instances).values().forEach(s -> stats.putAll(s.getCounters()));
+    return stats;
+  }
+}
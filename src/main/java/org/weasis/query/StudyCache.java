@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2026 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.query;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.weasis.servlet.ServletUtil;
+
+/**
+ * Cache of the series and instances of the studies shared by all the manifests, the key is the
+ * archive ID and the Study Instance UID. It is disabled when "cache.study.ttl" is 0.
+ */
+public final class StudyCache {
+  private static final Logger LOGGER = LoggerFactory.getLogger(StudyCache.class);
+
+  public record Key(String archiveID, String studyInstanceUID) {}
+
+  private static volatile ExpiringCache<Key, StudyTree> cache = newCache(0, 0, 0);
+
+  private StudyCache() {}
+
+  private static ExpiringCache<Key, StudyTree> newCache(long ttl, long stale, long maxSize) {
+    return new ExpiringCache<>("cache.study", ttl, stale, maxSize, StudyTree::size);
+  }
+
+  /**
+   * Configure the cache from the global properties, the previous entries are removed.
+   *
+   * @param properties the weasis-pacs-connector properties
+   */
+  public static void configure(Properties properties) {
+    long ttl = ServletUtil.getLongProperty(properties, "cache.study.ttl", 0L);
+    long stale = ServletUtil.getLongProperty(properties, "cache.study.stale", 0L);
+    long maxSize = ServletUtil.getLongProperty(properties, "cache.study.max.size", 500_000L);
+    cache = newCache(ttl, stale, maxSize);
+    if (cache.isEnabled()) {
+      LOGGER.info(
+          "Study cache configuration (ttl={}ms, stale={}ms, maxSize={})", ttl, stale, maxSize);
+    }
+  }
+
+  public static boolean isEnabled() {
+    return cache.isEnabled();
+  }
+
+  public static StudyTree get(
+      String archiveID, String studyInstanceUID, Function<String, StudyTree> loader) {
+    return cache.get(new Key(archiveID, studyInstanceUID), k -> loader.apply(k.studyInstanceUID()));
+  }
+
+  public static StudyTree getIfPresent(
+      String archiveID, String studyInstanceUID, Function<String, StudyTree> refresher) {
+    return cache.getIfPresent(
+        new Key(archiveID, studyInstanceUID), k -> refresher.apply(k.studyInstanceUID()));
+  }
+
+  public static void put(String archiveID, String studyInstanceUID, StudyTree tree) {
+    cache.put(new Key(archiveID, studyInstanceUID), tree);
+  }
+
+  /**
+   * Remove studies from the cache.
+   *
+   * @param archiveID the archive ID or null for all the archives
+   * @param studyInstanceUID the Study Instance UID or null for all the studies
+   * @return the number of removed studies
+   */
+  public static int purge(String archiveID, String studyInstanceUID) {
+    return cache.invalidateIf(
+        k ->
+            (archiveID == null || Objects.equals(archiveID, k.archiveID()))
+                && (studyInstanceUID == null
+                    || Objects.equals(studyInstanceUID, k.studyInstanceUID())));
+  }
+
+  public static Map<String, Long> getStatistics() {
+    return cache.getStatistics();
+  }
+}
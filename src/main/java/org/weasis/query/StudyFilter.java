@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2026 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.query;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Tag;
+import org.weasis.core.util.StringUtil;
+
+/**
+ * Filters of the studies of a patient request, compiled once per request: the date bounds are
+ * parsed and the modalities and the keywords are normalized. The dates of each study are parsed
+ * only once to sort the studies, then the filters are applied in a single pass.
+ */
+public final class StudyFilter {
+
+  private final Date lowerDateTime;
+  private final Date upperDateTime;
+  private final int limit;
+  private final String[] modalities;
+  private final String[] keywords;
+
+  /**
+   * @param lowerDateTime the studies more recent are excluded, or null
+   * @param upperDateTime the studies older are excluded, or null
+   * @param mostRecentResults the maximum number of studies, or null
+   * @param modalitiesInStudy the comma-separated modalities, or null
+   * @param keywords the comma-separated keywords of the study description, or null
+   */
+  public StudyFilter(
+      String lowerDateTime,
+      String upperDateTime,
+      String mostRecentResults,
+      String modalitiesInStudy,
+      String keywords) {
+    this.lowerDateTime = AbstractQueryConfiguration.parseFilterDate(lowerDateTime);
+    this.upperDateTime = AbstractQueryConfiguration.parseFilterDate(upperDateTime);
+    this.limit =
+        StringUtil.hasText(mostRecentResults) ? StringUtil.getInteger(mostRecentResults) : 0;
+    this.modalities = StringUtil.hasText(modalitiesInStudy) ? split(modalitiesInStudy) : null;
+    if (StringUtil.hasText(keywords)) {
+      this.keywords = split(keywords);
+      for (int i = 0; i < this.keywords.length; i++) {
+        this.keywords[i] = StringUtil.deAccent(this.keywords[i].toUpperCase());
+      }
+    } else {
+      this.keywords = null;
+    }
+  }
+
+  /**
+   * @param params the request parameters
+   * @return the filters of the request
+   */
+  public static StudyFilter of(CommonQueryParams params) {
+    return new StudyFilter(
+        params.getLowerDateTime(),
+        params.getUpperDateTime(),
+        params.getMostRecentResults(),
+        params.getModalitiesInStudy(),
+        params.getKeywords());
+  }
+
+  private static String[] split(String values) {
+    String[] array = values.split(",");
+    for (int i = 0; i < array.length; i++) {
+      array[i] = array[i].trim();
+    }
+    return array;
+  }
+
+  /**
+   * @return the maximum number of studies, no limit when lower than 1
+   */
+  public int getLimit() {
+    return limit;
+  }
+
+  /**
+   * @return the date range and the limit applied by {@link StudySelector}, as a key of the queries
+   */
+  public Object getSelectionKey() {
+    return Arrays.asList(lowerDateTime, upperDateTime, limit);
+  }
+
+  /**
+   * Sort the studies (the most recent first) and keep those matching the date range, the most
+   * recent results, the modalities and the keywords.
+   *
+   * @param studies the studies, this collection is not modified
+   * @return the selected studies in order
+   */
+  public List<Attributes> apply(Collection<Attributes> studies) {
+    List<Entry> entries = new ArrayList<>(studies.size());
+    for (Attributes study : studies) {
+      entries.add(newEntry(study));
+    }
+    entries.sort(null);
+
+    List<Attributes> result = new ArrayList<>(limit > 0 ? limit : entries.size());
+    int count = 0;
+    for (Entry entry : entries) {
+      if (!isInDateRange(entry)) {
+        continue;
+      }
+      // The most recent results are counted before the modality and keyword filters
+      if (limit > 0 && ++count > limit) {
+        break;
+      }
+      if (matchModalities(entry.study) && matchKeywords(entry.study)) {
+        result.add(entry.study);
+      }
+    }
+    return result;
+  }
+
+  Entry newEntry(Attributes study) {
+    return new Entry(study, lowerDateTime != null || upperDateTime != null);
+  }
+
+  /**
+   * @return true when the study is in the date range or has no date
+   */
+  boolean isInDateRange(Entry entry) {
+    Date date = entry.dateTime;
+    return date == null
+        || ((lowerDateTime == null || date.compareTo(lowerDateTime) <= 0)
+            && (upperDateTime == null || date.compareTo(upperDateTime) >= 0));
+  }
+
+  private boolean matchModalities(Attributes study) {
+    if (modalities == null) {
+      return true;
+    }
+    String[] values = study.getStrings(Tag.ModalitiesInStudy);
+    boolean hasValue = false;
+    if (values != null) {
+      for (String value : values) {
+        if (StringUtil.hasText(value)) {
+          hasValue = true;
+          for (String modality : modalities) {
+            if (value.contains(modality)) {
+              return true;
+            }
+          }
+        }
+      }
+    }
+    // The studies without modalities are kept
+    return !hasValue;
+  }
+
+  private boolean matchKeywords(Attributes study) {
+    if (keywords == null) {
+      return true;
+    }
+    String desc = StringUtil.deAccent(study.getString(Tag.StudyDescription, "").toUpperCase());
+    for (String key : keywords) {
+      if (desc.contains(key)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** A study with its sort keys, the most recent study comes first. */
+  static final class Entry implements Comparable<Entry> {
+    final Attributes study;
+    private final Date date;
+    private final Date time;
+    private final Date dateTime;
+
+    Entry(Attributes study, boolean withDateTime) {
+      this.study = study;
+      this.date = study.getDate(Tag.StudyDate);
+      this.time = date == null ? null : study.getDate(Tag.StudyTime);
+      this.dateTime = withDateTime ? study.getDate(Tag.StudyDateAndTime) : null;
+    }
+
+    @Override
+    public int compareTo(Entry o) {
+      if (date != null && o.date != null) {
+        // inverse time
+        int rep = o.date.compareTo(date);
+        if (rep == 0 && time != null && o.time != null) {
+          return o.time.compareTo(time);
+        }
+        return rep;
+      }
+      if (date == null && o.date == null) {
+        return study
+            .getString(Tag.StudyInstanceUID, "")
+            .compareTo(o.study.getString(Tag.StudyInstanceUID, ""));
+      }
+      return date == null ? 1 : -1;
+    }
+  }
+}
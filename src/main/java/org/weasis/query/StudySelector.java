@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2026 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.query;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+import org.dcm4che3.data.Attributes;
+import org.weasis.query.StudyFilter.Entry;
+
+/**
+ * Keep the studies of a query response stream which are in the date range, and only the most recent
+ * ones when a limit is set. The studies are processed one at a time, so only the selected studies
+ * are kept in memory.
+ */
+public class StudySelector implements Predicate<Attributes> {
+
+  private final StudyFilter filter;
+  private final List<Entry> entries = new ArrayList<>();
+
+  /**
+   * @param filter the filters of the request, only the date range and the limit are applied
+   */
+  public StudySelector(StudyFilter filter) {
+    this.filter = filter;
+  }
+
+  @Override
+  public boolean test(Attributes study) {
+    Entry entry = filter.newEntry(study);
+    if (!filter.isInDateRange(entry)) {
+      return true;
+    }
+
+    int limit = filter.getLimit();
+    if (limit < 1) {
+      entries.add(entry);
+    } else {
+      // Insert after the equal studies to keep the same order as a stable sort
+      int index = entries.size();
+      while (index > 0 && entries.get(index - 1).compareTo(entry) > 0) {
+        index--;
+      }
+      if (index < limit) {
+        entries.add(index, entry);
+        if (entries.size() > limit) {
+          entries.remove(limit);
+        }
+      }
+    }
+    // The order of the responses is unknown, all the studies must be received
+    return true;
+  }
+
+  public List<Attributes> getStudies() {
+    List<Attributes> studies = new ArrayList<>(entries.size());
+    for (Entry entry : entries) {
+      studies.add(entry.study);
+    }
+    return studies;
+  }
+}
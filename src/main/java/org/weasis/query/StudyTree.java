@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) 2026 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.query;
+
+import java.util.List;
+import org.dcm4che3.data.Attributes;
+
+/**
+ * The series and the instances of a study as returned by an archive. The study dataset contains
+ * also the patient attributes.
+ */
+public record StudyTree(Attributes study, List<SeriesTree> series) {
+
+  public record SeriesTree(Attributes series, List<Attributes> instances) {}
+
+  /**
+   * @return the number of series and instances of the study
+   */
+  public int size() {
+    int size = 1;
+    for (SeriesTree s : series) {
+      size += 1 + s.instances().size();
+    }
+    return size;
+  }
+}
@@ -0,0 +1,449 @@
+/*
+ * Copyright (c) 2026 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.query.db;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+import javax.sql.DataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.weasis.core.util.StringUtil;
+import org.weasis.query.Deadline;
+import org.weasis.query.QueryExecutor;
+import org.weasis.query.QueryTimeoutException;
+import org.weasis.servlet.ServletUtil;
+
+/**
+ * Pool of JDBC connections to the database of an archive. The same pool is shared by all the {@link
+ * DbQueryConfiguration} having the same "arc.db.uri" and "arc.db.user", so that the SQL queries of
+ * the manifests reuse a few open connections instead of opening a new one for each query. Each
+ * connection keeps its prepared statements ("arc.db.pool.statement.cache") to avoid preparing again
+ * the same queries.
+ *
+ * <p>When "arc.db.jndi" is set, the connections are taken from the DataSource of the application
+ * server, which is already a pool, and this pool is not used.
+ */
+public class DbConnectionPool {
+  private static final Logger LOGGER = LoggerFactory.getLogger(DbConnectionPool.class);
+
+  // Maximum time in seconds of the validation of a connection
+  private static final int VALIDATION_TIMEOUT = 5;
+
+  private static final Map<PoolKey, DbConnectionPool> POOLS = new ConcurrentHashMap<>();
+  private static final Map<String, DataSource> DATA_SOURCES = new ConcurrentHashMap<>();
+
+  private static final ScheduledExecutorService SCHEDULER =
+      Executors.newSingleThreadScheduledExecutor(
+          QueryExecutor.daemonThreadFactory("db-pool-evictor"));
+
+  static {
+    SCHEDULER.scheduleWithFixedDelay(DbConnectionPool::evictAll, 10, 10, TimeUnit.SECONDS);
+  }
+
+  private final String name;
+  private final Properties properties;
+  private final int minIdle;
+  private final int maxIdle;
+  private final int maxTotal;
+  private final long idleTimeout;
+  private final long maxLifetime;
+  private final long validationInterval;
+  private final long borrowTimeout;
+  private final int statementCacheSize;
+
+  private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+  private final Map<Connection, PooledConnection> active =
+      Collections.synchronizedMap(new IdentityHashMap<>());
+  private final Semaphore permits;
+  private final AtomicInteger openCount = new AtomicInteger();
+  private volatile boolean closed = false;
+
+  private final LongAdder created = new LongAdder();
+  private final LongAdder destroyed = new LongAdder();
+  private final LongAdder borrowed = new LongAdder();
+  private final LongAdder borrowTimeouts = new LongAdder();
+  private final LongAdder statementHits = new LongAdder();
+  private final LongAdder statementMisses = new LongAdder();
+
+  record PoolKey(String uri, String user) {}
+
+  private static final class PooledConnection {
+    private final Connection connection;
+    private final long createdTime;
+    private volatile long lastUsedTime;
+    // Prepared statements by SQL query (least recently used first), used only by the borrower
+    private final Map<String, PreparedStatement> statements;
+
+    private PooledConnection(Connection connection, int statementCacheSize) {
+      this.connection = connection;
+      this.createdTime = System.currentTimeMillis();
+      this.lastUsedTime = createdTime;
+      this.statements =
+          new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+              if (size() > statementCacheSize) {
+                DbQuery.safeClose(eldest.getValue());
+                return true;
+              }
+              return false;
+            }
+          };
+    }
+  }
+
+  private DbConnectionPool(String name, Properties properties) {
+    this.name = name;
+    this.properties = properties;
+    this.maxTotal = Math.max(1, ServletUtil.getIntProperty(properties, "arc.db.pool.max.total", 8));
+    this.maxIdle =
+        Math.min(maxTotal, ServletUtil.getIntProperty(properties, "arc.db.pool.max.idle", 4));
+    this.minIdle =
+        Math.min(maxIdle, ServletUtil.getIntProperty(properties, "arc.db.pool.min.idle", 0));
+    this.idleTimeout = ServletUtil.getLongProperty(properties, "arc.db.pool.idle.timeout", 60000L);
+    this.maxLifetime =
+        ServletUtil.getLongProperty(properties, "arc.db.pool.max.lifetime", 1800000L);
+    this.validationInterval =
+        ServletUtil.getLongProperty(properties, "arc.db.pool.validation.interval", 30000L);
+    this.borrowTimeout =
+        ServletUtil.getLongProperty(properties, "arc.db.pool.borrow.timeout", 30000L);
+    this.statementCacheSize =
+        Math.max(0, ServletUtil.getIntProperty(properties, "arc.db.pool.statement.cache", 32));
+    this.permits = new Semaphore(maxTotal, true);
+  }
+
+  /**
+   * Get the connection pool of the archive database, or null when the connections are not pooled by
+   * the connector ("arc.db.jndi" is set or "arc.db.pool.max.total=0").
+   *
+   * @param properties the archive properties
+   */
+  public static DbConnectionPool getPool(Properties properties) {
+    return getPool(properties, properties.getProperty("arc.id", "db"));
+  }
+
+  /**
+   * @param properties the properties of the database connection
+   * @param name the name of the pool in the statistics
+   */
+  static DbConnectionPool getPool(Properties properties, String name) {
+    if (StringUtil.hasText(properties.getProperty("arc.db.jndi"))
+        || ServletUtil.getIntProperty(properties, "arc.db.pool.max.total", 8) <= 0) {
+      return null;
+    }
+    PoolKey poolKey =
+        new PoolKey(properties.getProperty("arc.db.uri"), properties.getProperty("arc.db.user"));
+    return POOLS.computeIfAbsent(poolKey, k -> new DbConnectionPool(name, properties));
+  }
+
+  /**
+   * Open a new connection from the JNDI DataSource ("arc.db.jndi") or from the JDBC driver
+   * ("arc.db.driver", "arc.db.uri", "arc.db.user" and "arc.db.password").
+   *
+   * @param properties the archive properties
+   * @return the new connection, to be closed by the caller
+   * @throws SQLException if the connection cannot be opened
+   */
+  public static Connection openConnection(Properties properties) throws SQLException {
+    String jndiName = properties.getProperty("arc.db.jndi");
+    if (StringUtil.hasText(jndiName)) {
+      return getDataSource(jndiName.trim()).getConnection();
+    }
+    try {
+      Class.forName(properties.getProperty("arc.db.driver"));
+    } catch (ClassNotFoundException e) {
+      throw new SQLException("Cannot load Database Driver", e);
+    }
+    return DriverManager.getConnection(
+        properties.getProperty("arc.db.uri"),
+        properties.getProperty("arc.db.user"),
+        properties.getProperty("arc.db.password"));
+  }
+
+  private static DataSource getDataSource(String jndiName) throws SQLException {
+    DataSource dataSource = DATA_SOURCES.get(jndiName);
+    if (dataSource == null) {
+      try {
+        dataSource = (DataSource) new InitialContext().lookup(jndiName);
+      } catch (NamingException | ClassCastException e) {
+        throw new SQLException("Cannot find the DataSource " + jndiName, e);
+      }
+      DATA_SOURCES.put(jndiName, dataSource);
+    }
+    return dataSource;
+  }
+
+  /**
+   * Close all the pooled connections and stop the eviction thread, must be called when the web
+   * application is stopped.
+   */
+  public static void closeAll() {
+    for (DbConnectionPool pool : POOLS.values()) {
+      pool.close();
+    }
+    POOLS.clear();
+    DATA_SOURCES.clear();
+    SCHEDULER.shutdownNow();
+  }
+
+  /**
+   * Get a connection from the pool or open a new one when no idle connection is available.
+   *
+   * @param deadline the time limit of the request, the waiting time cannot exceed it
+   * @return a valid connection which must be given back with {@link #release}
+   * @throws SQLException if a new connection cannot be opened
+   */
+  public Connection borrow(Deadline deadline) throws SQLException {
+    if (closed) {
+      throw new IllegalStateException("The connection pool of " + name + " is closed");
+    }
+    try {
+      if (!permits.tryAcquire(deadline.getTimeout(borrowTimeout), TimeUnit.MILLISECONDS)) {
+        borrowTimeouts.increment();
+        if (deadline.isExpired()) {
+          throw new QueryTimeoutException(
+              "No free DB connection of " + name + " before the time limit");
+        }
+        throw new IllegalStateException(
+            "No free DB connection of " + name + " after " + borrowTimeout + " ms");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for a DB connection", e);
+    }
+
+    try {
+      PooledConnection pc;
+      while ((pc = idle.pollFirst()) != null) {
+        if (validate(pc, System.currentTimeMillis())) {
+          break;
+        }
+        destroy(pc);
+      }
+      if (pc == null) {
+        pc = open();
+      }
+      active.put(pc.connection, pc);
+      borrowed.increment();
+      return pc.connection;
+    } catch (SQLException | RuntimeException e) {
+      permits.release();
+      throw e;
+    }
+  }
+
+  /**
+   * Give back a connection to the pool.
+   *
+   * @param connection the borrowed connection
+   * @param reusable false when the connection is in an unknown state (e.g. after an error)
+   */
+  public void release(Connection connection, boolean reusable) {
+    PooledConnection pc = active.remove(connection);
+    if (pc == null) {
+      // Not borrowed from this pool
+      DbQuery.safeClose(connection);
+      return;
+    }
+    try {
+      long now = System.currentTimeMillis();
+      if (reusable && !closed && !isExpired(pc, now) && idle.size() < maxIdle) {
+        pc.lastUsedTime = now;
+        idle.offerFirst(pc);
+      } else {
+        destroy(pc);
+      }
+    } finally {
+      permits.release();
+    }
+  }
+
+  /**
+   * Get the prepared statement of a query from the statement cache of a borrowed connection, or
+   * prepare it and put it in the cache. A cached statement must not be closed by the caller.
+   *
+   * @param connection the borrowed connection
+   * @param sql the SQL query
+   * @return the prepared statement
+   * @throws SQLException if the statement cannot be prepared
+   */
+  public PreparedStatement prepareStatement(Connection connection, String sql) throws SQLException {
+    PooledConnection pc = active.get(connection);
+    if (pc == null || statementCacheSize == 0) {
+      return DbQuery.prepareStatement(connection, sql);
+    }
+    PreparedStatement statement = pc.statements.get(sql);
+    if (statement == null || statement.isClosed()) {
+      statementMisses.increment();
+      statement = DbQuery.prepareStatement(connection, sql);
+      pc.statements.put(sql, statement);
+    } else {
+      statementHits.increment();
+    }
+    return statement;
+  }
+
+  /**
+   * @return true when the statement is in the statement cache of the borrowed connection
+   */
+  public boolean isCached(Connection connection, Statement statement) {
+    PooledConnection pc = active.get(connection);
+    return pc != null && statement != null && pc.statements.containsValue(statement);
+  }
+
+  private boolean isExpired(PooledConnection pc, long now) {
+    return maxLifetime > 0 && now - pc.createdTime > maxLifetime;
+  }
+
+  private boolean validate(PooledConnection pc, long now) {
+    if (isExpired(pc, now)) {
+      return false;
+    }
+    if (now - pc.lastUsedTime > validationInterval) {
+      try {
+        return pc.connection.isValid(VALIDATION_TIMEOUT);
+      } catch (SQLException e) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private PooledConnection open() throws SQLException {
+    Connection connection = openConnection(properties);
+    openCount.incrementAndGet();
+    created.increment();
+    LOGGER.debug("Open a new DB connection of {} ({} open)", name, openCount.get());
+    return new PooledConnection(connection, statementCacheSize);
+  }
+
+  private void destroy(PooledConnection pc) {
+    openCount.decrementAndGet();
+    destroyed.increment();
+    DbQuery.safeClose(pc.connection);
+  }
+
+  private static void evictAll() {
+    for (DbConnectionPool pool : POOLS.values()) {
+      try {
+        pool.evict();
+      } catch (Exception e) {
+        LOGGER.warn("Cannot evict DB connections of {}", pool.name, e);
+      }
+    }
+  }
+
+  /**
+   * Close the connections idle for more than "arc.db.pool.idle.timeout" (keeping at least
+   * "arc.db.pool.min.idle") or open for more than "arc.db.pool.max.lifetime", validate the others
+   * and reopen connections up to the min idle.
+   */
+  void evict() {
+    long now = System.currentTimeMillis();
+    Iterator<PooledConnection> it = idle.descendingIterator();
+    while (it.hasNext()) {
+      PooledConnection pc = it.next();
+      long idleTime = now - pc.lastUsedTime;
+      if (isExpired(pc, now) || (idle.size() > minIdle && idleTime > idleTimeout)) {
+        if (idle.remove(pc)) {
+          destroy(pc);
+        }
+      } else if (idleTime > validationInterval && idle.remove(pc)) {
+        // Removed from the idle list to avoid being borrowed during the validation
+        if (validate(pc, now)) {
+          pc.lastUsedTime = now;
+          idle.offerLast(pc);
+        } else {
+          destroy(pc);
+        }
+      }
+    }
+
+    while (!closed && idle.size() < minIdle && permits.tryAcquire()) {
+      try {
+        idle.offerLast(open());
+      } catch (Exception e) {
+        LOGGER.warn("Cannot open an idle DB connection of {}", name, e);
+        break;
+      } finally {
+        permits.release();
+      }
+    }
+  }
+
+  void close() {
+    closed = true;
+    PooledConnection pc;
+    while ((pc = idle.pollFirst()) != null) {
+      destroy(pc);
+    }
+  }
+
+  /**
+   * @return the counters, each name is prefixed by "db.pool.[archive ID]"
+   */
+  public Map<String, Object> getCounters() {
+    String prefix = "db.pool." + name;
+    Map<String, Object> stats = new LinkedHashMap<>();
+    stats.put(prefix + ".open", openCount.get());
+    stats.put(prefix + ".idle", idle.size());
+    stats.put(prefix + ".active", active.size());
+    stats.put(prefix + ".created", created.sum());
+    stats.put(prefix + ".destroyed", destroyed.sum());
+    stats.put(prefix + ".borrowed", borrowed.sum());
+    stats.put(prefix + ".borrow.timeouts", borrowTimeouts.sum());
+    stats.put(prefix + ".statement.hits", statementHits.sum());
+    stats.put(prefix + ".statement.misses", statementMisses.sum());
+    return stats;
+  }
+
+  /**
+   * @return the counters of all the connection pools
+   */
+  public static Map<String, Object> getStatistics() {
+    Map<String, DbConnectionPool> pools = new TreeMap<>();
+    POOLS.values().forEach(p -> pools.put(p.name, p));
+    Map<String, Object> stats = new LinkedHashMap<>();
+    pools.values().forEach(p -> stats.putAll(p.getCounters()));
+    return stats;
+  }
+
+  @Override
+  public String toString() {
+    return name
+        + " [open="
+        + openCount.get()
+        + ", idle="
+        + idle.size()
+        + ", inUse="
+        + (maxTotal - permits.availablePermits())
+        + "]";
+  }
+}
@@ -10,21 +10,69 @@
 package org.weasis.query.db;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.List;
 import java.util.Properties;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.weasis.core.util.StringUtil;
+import org.weasis.query.Deadline;
+import org.weasis.servlet.ServletUtil;
 
-public record DbQuery(Connection connection, Statement statement, ResultSet resultSet) {
+/**
+ * A SQL query and its result.
+ *
+ * @param pool the pool of the connection, or null when the connection is not pooled
+ * @param target the database selected by the replica router, or null without read replicas
+ */
+public record DbQuery(
+    Connection connection,
+    Statement statement,
+    ResultSet resultSet,
+    DbConnectionPool pool,
+    DbReplicaRouter.Target target) {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(DbQuery.class);
 
+  public DbQuery(Connection connection, Statement statement, ResultSet resultSet) {
+    this(connection, statement, resultSet, null, null);
+  }
+
   public void close() {
-    safeClose(connection, resultSet, statement);
+    close(true);
+  }
+
+  /**
+   * Close the result and the statement, then give back the connection to its pool.
+   *
+   * @param reusable false when the connection is in an unknown state (e.g. after an error)
+   */
+  public void close(boolean reusable) {
+    safeClose(resultSet);
+    closeStatement(pool, connection, statement);
+    release(pool, connection, reusable);
+    if (target != null) {
+      target.release();
+    }
+  }
+
+  private static void closeStatement(
+      DbConnectionPool pool, Connection connection, Statement statement) {
+    // The cached statements are closed with their connection
+    if (pool == null || !pool.isCached(connection, statement)) {
+      safeClose(statement);
+    }
+  }
+
+  private static void release(DbConnectionPool pool, Connection connection, boolean reusable) {
+    if (pool == null) {
+      safeClose(connection);
+    } else if (connection != null) {
+      pool.release(connection, reusable);
+    }
   }
 
   public static void safeClose(Object... sqlObjects) {
@@ -46,27 +94,91 @@ public record DbQuery(Connection connection, Statement statement, ResultSet resu
     }
   }
 
+  /**
+   * @return a forward-only and read-only statement, the rows are read only once
+   */
+  static PreparedStatement prepareStatement(Connection connection, String query)
+      throws SQLException {
+    return connection.prepareStatement(
+        query, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+  }
+
   public static DbQuery executeDBQuery(String query, Properties dbProperties) throws SQLException {
+    return executeDBQuery(query, dbProperties, 0);
+  }
+
+  /**
+   * @param query the SQL query
+   * @param dbProperties the archive properties
+   * @param timeout the maximum execution time in seconds, 0 means no limit
+   * @return the query and its result, to be closed by the caller
+   * @throws SQLException if the query fails or exceeds the timeout
+   */
+  public static DbQuery executeDBQuery(String query, Properties dbProperties, int timeout)
+      throws SQLException {
+    return executeDBQuery(query, List.of(), dbProperties, timeout);
+  }
+
+  /**
+   * Execute a prepared statement. With a pooled connection, the statement is kept in the statement
+   * cache of the connection and reused by the next executions of the same query. When the archive
+   * has read replicas ("arc.db.replicas"), the query is executed by one of them.
+   *
+   * @param query the SQL query with a bind marker (?) for each parameter
+   * @param parameters the values of the bind markers, in order
+   * @param dbProperties the archive properties
+   * @param timeout the maximum execution time in seconds, 0 means no limit
+   * @return the query and its result, to be closed by the caller
+   * @throws SQLException if the query fails or exceeds the timeout
+   */
+  public static DbQuery executeDBQuery(
+      String query, List<?> parameters, Properties dbProperties, int timeout) throws SQLException {
     if (StringUtil.hasText(query) && dbProperties != null) {
-      try {
-        Class.forName(dbProperties.getProperty("arc.db.driver"));
-      } catch (ClassNotFoundException e) {
-        throw new SQLException("Cannot load Database Driver", e);
+      DbReplicaRouter router = DbReplicaRouter.getInstance(dbProperties);
+      DbReplicaRouter.Target target = null;
+      DbConnectionPool pool;
+      Connection connection;
+      if (router == null) {
+        pool = DbConnectionPool.getPool(dbProperties);
+        connection = getConnection(pool, dbProperties, timeout);
+      } else {
+        while (true) {
+          target = router.acquire();
+          pool = target.getPool();
+          try {
+            connection = getConnection(pool, target.getProperties(), timeout);
+            break;
+          } catch (SQLException e) {
+            target.release();
+            if (!target.isReplica()) {
+              throw e;
+            }
+            // Try the next healthy replica or the primary database
+            router.markDown(target, e);
+          } catch (RuntimeException e) {
+            target.release();
+            throw e;
+          }
+        }
       }
-
-      Connection connection = null;
-      Statement statement = null;
+      PreparedStatement statement = null;
       ResultSet resultSet = null;
       try {
-        connection =
-            DriverManager.getConnection(
-                dbProperties.getProperty("arc.db.uri"),
-                dbProperties.getProperty("arc.db.user"),
-                dbProperties.getProperty("arc.db.password"));
-        statement = connection.createStatement();
+        statement =
+            pool == null
+                ? prepareStatement(connection, query)
+                : pool.prepareStatement(connection, query);
+        // Always set, a cached statement keeps the timeout of its previous execution
+        statement.setQueryTimeout(Math.max(0, timeout));
+        // Rows fetched by each round trip (the default is only 10 rows with Oracle)
+        statement.setFetchSize(
+            Math.max(0, ServletUtil.getIntProperty(dbProperties, "arc.db.fetch.size", 500)));
+        for (int i = 0; i < parameters.size(); i++) {
+          statement.setObject(i + 1, parameters.get(i));
+        }
 
         long startQuery = System.currentTimeMillis();
-        resultSet = statement.executeQuery(query);
+        resultSet = statement.executeQuery();
 
         long dbQueryTime = System.currentTimeMillis() - startQuery;
         if (dbQueryTime
@@ -77,13 +189,25 @@ public record DbQuery(Connection connection, Statement statement, ResultSet resu
           LOGGER.debug(
               "executeDBQuery - SQL request executed in {} ms :\n\t[{}]", dbQueryTime, query);
         }
-      } catch (SQLException e) {
+      } catch (SQLException | RuntimeException e) {
         // Ensure to close DB connection with any exception
-        DbQuery.safeClose(connection, resultSet, statement);
+        DbQuery.safeClose(resultSet);
+        closeStatement(pool, connection, statement);
+        release(pool, connection, false);
+        if (target != null) {
+          target.release();
+        }
         throw e;
       }
-      return new DbQuery(connection, statement, resultSet);
+      return new DbQuery(connection, statement, resultSet, pool, target);
     }
     return null;
   }
+
+  private static Connection getConnection(
+      DbConnectionPool pool, Properties dbProperties, int timeout) throws SQLException {
+    return pool == null
+        ? DbConnectionPool.openConnection(dbProperties)
+        : pool.borrow(Deadline.after(timeout * 1000L));
+  }
 }
@@ -9,197 +9,393 @@
  */
 package org.weasis.query.db;
 
-import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
 import java.sql.Timestamp;
-import java.time.LocalDate;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Properties;
-import org.dcm4che3.img.util.DateTimeUtils;
+import java.util.Set;
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Tag;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.weasis.core.util.EscapeChars;
 import org.weasis.core.util.StringUtil;
-import org.weasis.dicom.mf.Patient;
-import org.weasis.dicom.mf.Series;
-import org.weasis.dicom.mf.SopInstance;
-import org.weasis.dicom.mf.Study;
+import org.weasis.dicom.mf.ViewerMessage;
 import org.weasis.query.AbstractQueryConfiguration;
 import org.weasis.query.CommonQueryParams;
+import org.weasis.query.QueryExecutor;
+import org.weasis.query.QueryTimeoutException;
+import org.weasis.query.SingleFlight;
+import org.weasis.query.StudyCache;
+import org.weasis.query.StudyFilter;
+import org.weasis.query.StudyTree;
+import org.weasis.query.StudyTree.SeriesTree;
+import org.weasis.servlet.ServletUtil;
 
 public class DbQueryConfiguration extends AbstractQueryConfiguration {
   private static final Logger LOGGER = LoggerFactory.getLogger(DbQueryConfiguration.class);
 
+  // Identical SQL queries of different manifests executed at the same time
+  private static final SingleFlight<String, Map<String, StudyTree>> QUERY_FLIGHTS =
+      new SingleFlight<>("db.query", LinkedHashMap::new);
+
+  private final DbRowMapper rowMapper;
+  private final int uidListSize;
+  private final int statementTimeout;
+
   public DbQueryConfiguration(Properties properties) {
     super(properties);
+    this.rowMapper = DbRowMapper.getInstance(getArchiveID(), properties);
+    // Oracle does not accept more than 1000 values in an IN list
+    this.uidListSize =
+        Math.max(1, ServletUtil.getIntProperty(properties, "arc.query.uid.list.size", 512));
+    this.statementTimeout = ServletUtil.getIntProperty(properties, "arc.db.query.timeout", 60);
   }
 
   @Override
   public void buildFromPatientID(CommonQueryParams params, String... patientIDs) {
-    throw new IllegalStateException("Request by patientID into a DB is not implemented!");
+    String patientWhere = properties.getProperty("arc.db.query.patient.where");
+    if (!StringUtil.hasText(patientWhere)) {
+      throw new IllegalStateException(
+          "Request by patientID into a DB requires arc.db.query.patient.where");
+    }
+    StudyFilter filter = StudyFilter.of(params);
+    for (String patientID : patientIDs) {
+      if (!StringUtil.hasText(patientID)) {
+        continue;
+      }
+      // Do not handle issuer of patientID as it should be unique within a DB
+      int beginIndex = patientID.indexOf("^^^");
+      if (beginIndex == -1) {
+        // if patientID has been encrypted
+        beginIndex = patientID.indexOf("%5E%5E%5E");
+      }
+      List<Object> parameters = new ArrayList<>();
+      parameters.add(beginIndex < 0 ? patientID : patientID.substring(0, beginIndex));
+      StringBuilder where = new StringBuilder(patientWhere.replaceFirst("%patientid%", "?"));
+      appendStudyFilters(params, filter, where, parameters);
+
+      try {
+        // The most recent studies first, the reading stops after the most recent results
+        String query = buildQuery(where.toString()) + getStudyOrder();
+        Map<String, StudyTree> trees = executeDbQuery(query, parameters, filter.getLimit());
+
+        // Same filters as the other archives (e.g. the keywords are not matched by the DB)
+        List<Attributes> studies = new ArrayList<>(trees.size());
+        trees.values().forEach(t -> studies.add(t.study()));
+        for (Attributes study : filter.apply(studies)) {
+          String studyUID = study.getString(Tag.StudyInstanceUID);
+          StudyTree tree = trees.get(studyUID);
+          StudyCache.put(getArchiveID(), studyUID, tree);
+          addStudyTree(tree);
+        }
+      } catch (Exception e) {
+        queryFailed(e);
+      }
+    }
+  }
+
+  /**
+   * Log the error of a query and add a warning to the results, they may be incomplete. The end of
+   * the time limit of the request has its own message added when the archive query returns.
+   */
+  private void queryFailed(Exception e) {
+    LOGGER.error("DB query Error of {}", getArchiveConfigName(), e);
+    if (!(e instanceof QueryTimeoutException)) {
+      addResults(
+          () ->
+              setViewerMessage(
+                  new ViewerMessage(
+                      "Incomplete results",
+                      "Cannot query the archive " + getArchiveID() + ": " + e.getMessage(),
+                      ViewerMessage.eLevel.WARN)));
+    }
+  }
+
+  /**
+   * Append the date range and the modalities of the request to the where clause of a patient query,
+   * the date range requires "arc.db.query.studydate.column" and the modalities
+   * "arc.db.query.modality.where". The modalities are not matched with mostRecentResults, which
+   * counts the most recent studies of any modality before filtering the modality.
+   */
+  private void appendStudyFilters(
+      CommonQueryParams params, StudyFilter filter, StringBuilder where, List<Object> parameters) {
+    String dateColumn = properties.getProperty("arc.db.query.studydate.column");
+    if (StringUtil.hasText(dateColumn)) {
+      // lowerDateTime is the most recent date and upperDateTime the oldest one
+      Date latest = parseFilterDate(params.getLowerDateTime());
+      if (latest != null) {
+        where.append(" and ").append(dateColumn).append(" <= ?");
+        parameters.add(new Timestamp(latest.getTime()));
+      }
+      Date oldest = parseFilterDate(params.getUpperDateTime());
+      if (oldest != null) {
+        where.append(" and ").append(dateColumn).append(" >= ?");
+        parameters.add(new Timestamp(oldest.getTime()));
+      }
+    }
+
+    String modalityWhere = properties.getProperty("arc.db.query.modality.where");
+    if (StringUtil.hasText(modalityWhere)
+        && filter.getLimit() <= 0
+        && StringUtil.hasText(params.getModalitiesInStudy())) {
+      List<String> modalities =
+          getParameters(
+              getValues(params.getModalitiesInStudy().trim().split("\\s*,\\s*")),
+              Integer.MAX_VALUE);
+      if (!modalities.isEmpty()) {
+        where
+            .append(" and ")
+            .append(modalityWhere.replaceFirst("%modalities%", getBindMarkers(modalities.size())));
+        parameters.addAll(modalities);
+      }
+    }
+  }
+
+  /**
+   * @return the order by clause of the most recent studies first and the studies without date last
+   *     (whatever the default null ordering of the database), using "arc.db.query.studydate.column"
+   *     or the column label of the study date and the label of the Study Instance UID
+   */
+  String getStudyOrder() {
+    String studyDateField =
+        properties.getProperty(
+            "arc.db.query.studydate.column", properties.getProperty("arc.db.query.studydate"));
+    String studyIUIDField = properties.getProperty("arc.db.query.studyinstanceuid");
+    if (!StringUtil.hasText(studyDateField)) {
+      return " order by " + studyIUIDField;
+    }
+    return " order by case when "
+        + studyDateField
+        + " is null then 1 else 0 end, "
+        + studyDateField
+        + " desc, "
+        + studyIUIDField;
   }
 
   @Override
   public void buildFromStudyInstanceUID(CommonQueryParams params, String... studyInstanceUIDs) {
-    String studiesUIDsQuery = getQueryString(studyInstanceUIDs);
-    String query =
-        buildQuery(
-            properties
-                .getProperty("arc.db.query.studies.where")
-                .replaceFirst("%studies%", studiesUIDsQuery));
-
-    executeDbQuery(query);
+    List<String> missingUIDs = new ArrayList<>();
+    for (String studyInstanceUID : studyInstanceUIDs) {
+      if (StringUtil.hasText(studyInstanceUID)) {
+        StudyTree tree =
+            StudyCache.getIfPresent(getArchiveID(), studyInstanceUID, this::refreshStudy);
+        if (tree == null) {
+          missingUIDs.add(studyInstanceUID);
+        } else {
+          addStudyTree(tree);
+        }
+      }
+    }
+
+    if (!missingUIDs.isEmpty()) {
+      try {
+        addStudyTrees(queryStudies(missingUIDs.toArray(new String[0])), true);
+      } catch (Exception e) {
+        queryFailed(e);
+      }
+    }
+  }
+
+  /**
+   * @return the study or null when it is not in the DB anymore
+   * @throws IllegalStateException when the DB cannot be queried, the stale study is kept in the
+   *     cache
+   */
+  private StudyTree refreshStudy(String studyInstanceUID) {
+    return queryStudies(studyInstanceUID).get(studyInstanceUID);
+  }
+
+  private Map<String, StudyTree> queryStudies(String... studyInstanceUIDs) {
+    return executeDbQuery("arc.db.query.studies.where", "%studies%", studyInstanceUIDs);
+  }
+
+  /**
+   * Add the studies to the patient list.
+   *
+   * @param trees the studies by Study Instance UID
+   * @param cache true when the trees contain all the series and instances of the studies
+   */
+  private void addStudyTrees(Map<String, StudyTree> trees, boolean cache) {
+    for (Map.Entry<String, StudyTree> entry : trees.entrySet()) {
+      if (cache) {
+        StudyCache.put(getArchiveID(), entry.getKey(), entry.getValue());
+      }
+      addStudyTree(entry.getValue());
+    }
   }
 
   @Override
   public void buildFromStudyAccessionNumber(CommonQueryParams params, String... accessionNumbers) {
-    String accessionNumbersQuery = getQueryString(accessionNumbers);
-    String query =
-        buildQuery(
-            properties
-                .getProperty("arc.db.query.accessionnum.where")
-                .replaceFirst("%accessionnum%", accessionNumbersQuery));
-
-    executeDbQuery(query);
+    try {
+      addStudyTrees(
+          executeDbQuery("arc.db.query.accessionnum.where", "%accessionnum%", accessionNumbers),
+          true);
+    } catch (Exception e) {
+      queryFailed(e);
+    }
   }
 
   @Override
   public void buildFromSeriesInstanceUID(CommonQueryParams params, String... seriesInstanceUIDs) {
-    String seriesUIDsQuery = getQueryString(seriesInstanceUIDs);
-    String query =
-        buildQuery(
-            properties
-                .getProperty("arc.db.query.series.where")
-                .replaceFirst("%series%", seriesUIDsQuery));
-
-    executeDbQuery(query);
+    // Only the requested series of the studies, not cached
+    try {
+      addStudyTrees(
+          executeDbQuery("arc.db.query.series.where", "%series%", seriesInstanceUIDs), false);
+    } catch (Exception e) {
+      queryFailed(e);
+    }
   }
 
   @Override
   public void buildFromSopInstanceUID(CommonQueryParams params, String... sopInstanceUIDs) {
-    // TODO implement this method
-  }
-
-  private void executeDbQuery(String query) {
-    DbQuery dbQuery = null;
+    // Only the requested instances of the studies, not cached
     try {
-      dbQuery = DbQuery.executeDBQuery(query, properties);
-      buildListFromDB(Objects.requireNonNull(dbQuery).resultSet());
+      addStudyTrees(executeDbQuery("arc.db.query.sop.where", "%sop%", sopInstanceUIDs), false);
     } catch (Exception e) {
-      LOGGER.error("DB query Error of {}", getArchiveConfigName(), e);
-    } finally {
-      if (dbQuery != null) {
-        dbQuery.close();
-      }
+      queryFailed(e);
     }
   }
 
-  private void buildListFromDB(ResultSet resultSet) throws SQLException {
-    String patientNameField = properties.getProperty("arc.db.query.setpatientname");
-    String patientBirthdateTypeField = properties.getProperty("arc.db.query.patientbirthdate.type");
-    String patientBirthdateFormatField =
-        properties.getProperty("arc.db.query.patientbirthdate.format");
-    String patientBirthDateField = properties.getProperty("arc.db.query.patientbirthdate");
-    String patientBirthTimeField = properties.getProperty("arc.db.query.patientbirthtime");
-    String patientSexField = properties.getProperty("arc.db.query.patientsex");
-
-    String studyDateTypeField = properties.getProperty("arc.db.query.studydate.type");
-    String studyDateField = properties.getProperty("arc.db.query.studydate");
-    String accessionNumberField = properties.getProperty("arc.db.query.accessionnumber");
-    String studyIdField = properties.getProperty("arc.db.query.studyid");
-    String referringPhysicianNameField =
-        properties.getProperty("arc.db.query.referringphysicianname");
-    String studyDescriptionField = properties.getProperty("arc.db.query.studydescription");
-
-    String seriesDescriptionField = properties.getProperty("arc.db.query.seriesdescription");
-    String modalityField = properties.getProperty("arc.db.query.modality");
-    String seriesNumberField = properties.getProperty("arc.db.query.seriesnumber");
-
-    String instanceNumberField = properties.getProperty("arc.db.query.instancenumber");
-
-    String patIDField = properties.getProperty("arc.db.query.patientid");
-    String studyIUIDField = properties.getProperty("arc.db.query.studyinstanceuid");
-    String seriesIUIDField = properties.getProperty("arc.db.query.seriesinstanceuid");
-    String sopIUIDField = properties.getProperty("arc.db.query.sopinstanceuid");
+  /**
+   * Execute the query of a where clause template, its placeholder is replaced by the bind markers
+   * of the values.
+   *
+   * @param whereKey the property of the where clause
+   * @param placeholder the placeholder of the values in the where clause
+   * @param values the values matched by the query
+   * @return the study trees by Study Instance UID
+   */
+  private Map<String, StudyTree> executeDbQuery(
+      String whereKey, String placeholder, String... values) {
+    String where = properties.getProperty(whereKey);
+    if (!StringUtil.hasText(where)) {
+      throw new IllegalStateException("Missing " + whereKey + " for the DB query");
+    }
+    List<String> uids = getValues(values);
+    if (uids.isEmpty()) {
+      return new LinkedHashMap<>();
+    }
 
-    while (resultSet.next()) {
-      // Do not handle issuer of patientID as it should be unique within a DB
-      Patient patient = getPatient(getString(resultSet, patIDField));
-      if (patient == null) {
-        patient = new Patient(getString(resultSet, patIDField), null);
-        patient.setPatientName(getString(resultSet, patientNameField));
-
-        if ("VARCHAR2".equals(patientBirthdateTypeField)) {
-          patient.setPatientBirthDate(
-              getDate(resultSet, patientBirthDateField, patientBirthdateFormatField));
-        } else if ("DATE".equals(patientBirthdateTypeField)) {
-          patient.setPatientBirthDate(getDate(resultSet, patientBirthDateField));
-        }
+    // Chunks of "arc.query.uid.list.size" values, queried in parallel with "arc.query.parallelism"
+    List<List<String>> chunks = new ArrayList<>();
+    for (int i = 0; i < uids.size(); i += uidListSize) {
+      chunks.add(uids.subList(i, Math.min(uids.size(), i + uidListSize)));
+    }
+    List<Map<String, StudyTree>> results =
+        QueryExecutor.invokeAll(
+            chunks,
+            queryLimiter,
+            chunk -> {
+              List<String> parameters = getParameters(chunk, uidListSize);
+              String query =
+                  buildQuery(where.replaceFirst(placeholder, getBindMarkers(parameters.size())));
+              return executeDbQuery(query, parameters, 0);
+            });
+    return results.size() == 1 ? results.get(0) : mergeStudyTrees(results);
+  }
 
-        if (patientBirthTimeField != null) {
-          patient.setPatientBirthTime(getTimeFromTimeStamp(resultSet, patientBirthTimeField));
-        }
+  /**
+   * Merge the study trees of several queries, the series and the instances of a study returned by
+   * several queries are merged without duplicates.
+   *
+   * @param results the study trees of each query
+   * @return the study trees by Study Instance UID
+   */
+  static Map<String, StudyTree> mergeStudyTrees(List<Map<String, StudyTree>> results) {
+    Map<String, StudyTree> trees = new LinkedHashMap<>();
+    for (Map<String, StudyTree> result : results) {
+      result.forEach((uid, tree) -> trees.merge(uid, tree, DbQueryConfiguration::mergeStudyTree));
+    }
+    return trees;
+  }
 
-        patient.setPatientSex(getString(resultSet, patientSexField));
-        addPatient(patient);
+  private static StudyTree mergeStudyTree(StudyTree t1, StudyTree t2) {
+    // New trees, the trees of the queries can be shared
+    Map<String, SeriesTree> series = new LinkedHashMap<>();
+    for (StudyTree tree : List.of(t1, t2)) {
+      for (SeriesTree s : tree.series()) {
+        series.merge(
+            s.series().getString(Tag.SeriesInstanceUID, ""),
+            s,
+            DbQueryConfiguration::mergeSeriesTree);
       }
+    }
+    return new StudyTree(t1.study(), new ArrayList<>(series.values()));
+  }
 
-      Study study = patient.getStudy(getString(resultSet, studyIUIDField));
-
-      if (study == null) {
-        study = new Study(getString(resultSet, studyIUIDField));
-
-        if (studyDateField != null) {
-          LocalDateTime dateTime = getLocalDateTimeFromTimeStamp(resultSet, studyDateField);
-          if (dateTime != null) {
-            study.setStudyDate(DateTimeUtils.formatDA(dateTime.toLocalDate()));
-            study.setStudyTime(DateTimeUtils.formatTM(dateTime.toLocalTime()));
-          }
-        }
-
-        study.setAccessionNumber(getString(resultSet, accessionNumberField));
-        study.setStudyID(getString(resultSet, studyIdField));
-        study.setReferringPhysicianName(getString(resultSet, referringPhysicianNameField));
-        study.setStudyDescription(getString(resultSet, studyDescriptionField));
-
-        patient.addStudy(study);
+  private static SeriesTree mergeSeriesTree(SeriesTree s1, SeriesTree s2) {
+    Map<String, Attributes> instances = new LinkedHashMap<>();
+    for (SeriesTree series : List.of(s1, s2)) {
+      for (Attributes instance : series.instances()) {
+        instances.putIfAbsent(instance.getString(Tag.SOPInstanceUID, ""), instance);
       }
+    }
+    return new SeriesTree(s1.series(), new ArrayList<>(instances.values()));
+  }
 
-      Series series = study.getSeries(getString(resultSet, seriesIUIDField));
-
-      if (series == null) {
-        series = new Series(getString(resultSet, seriesIUIDField));
-        series.setSeriesDescription(getString(resultSet, seriesDescriptionField));
-        series.setModality(getString(resultSet, modalityField));
-        series.setSeriesNumber(getString(resultSet, seriesNumberField));
-
-        String wadotTsuid = properties.getProperty("wado.request.tsuid");
-        if (StringUtil.hasText(wadotTsuid)) {
-          String[] val = wadotTsuid.split(":");
-          if (val.length > 0) {
-            series.setWadoTransferSyntaxUID(val[0]);
-          }
-          if (val.length > 1) {
-            series.setWadoCompression(val[1]);
-          }
-        }
-        study.addSeries(series);
-      }
+  /**
+   * @param query the SQL query
+   * @param parameters the values of the bind markers
+   * @param maxStudies the number of studies after which the reading stops, no limit when lower than
+   *     1 (the rows must be ordered by study date, the most recent first)
+   * @return the study trees by Study Instance UID
+   */
+  private Map<String, StudyTree> executeDbQuery(String query, List<?> parameters, int maxStudies) {
+    // The study trees are not modified, they are shared as in the study cache
+    return QUERY_FLIGHTS.execute(
+        properties.getProperty("arc.db.uri") + "\n" + query + "\n" + parameters + "\n" + maxStudies,
+        deadline,
+        () -> queryDb(query, parameters, maxStudies));
+  }
 
-      Integer frame = StringUtil.getInteger(getString(resultSet, instanceNumberField));
-      String sopUID = getString(resultSet, sopIUIDField);
-      SopInstance sop = series.getSopInstance(sopUID, frame);
-      if (sop == null) {
-        series.addSopInstance(new SopInstance(sopUID, frame));
-      }
+  /**
+   * @return the timeout in seconds of a SQL statement: "arc.db.query.timeout" capped by the
+   *     remaining time of the request, 0 when there is no limit
+   */
+  int getStatementTimeout() {
+    int remaining = deadline.getRemainingSeconds();
+    if (statementTimeout <= 0) {
+      return remaining;
     }
+    return remaining <= 0 ? statementTimeout : Math.min(statementTimeout, remaining);
   }
 
-  private Patient getPatient(String pid) {
-    return patientMap.get(pid);
+  /**
+   * @return the study trees by Study Instance UID
+   * @throws IllegalStateException when the query fails, it is not shared as an empty result with
+   *     the identical queries
+   * @throws QueryTimeoutException when the time limit of the request is reached
+   */
+  private Map<String, StudyTree> queryDb(String query, List<?> parameters, int maxStudies) {
+    deadline.check();
+    return circuitBreaker.call(
+        () -> {
+          Map<String, StudyTree> trees = new LinkedHashMap<>();
+          DbQuery dbQuery = null;
+          boolean failed = true;
+          try {
+            dbQuery = DbQuery.executeDBQuery(query, parameters, properties, getStatementTimeout());
+            rowMapper.map(Objects.requireNonNull(dbQuery).resultSet(), trees, maxStudies);
+            failed = false;
+          } catch (SQLException e) {
+            if (e instanceof SQLTimeoutException && deadline.isExpired()) {
+              throw new QueryTimeoutException("No DB response before the time limit", e);
+            }
+            throw new IllegalStateException("DB query failed: " + e.getMessage(), e);
+          } finally {
+            if (dbQuery != null) {
+              dbQuery.close(!failed);
+            }
+          }
+          return trees;
+        });
   }
 
   private String buildQuery(String clauseWhere) {
@@ -210,74 +406,63 @@ public class DbQueryConfiguration extends AbstractQueryConfiguration {
         + properties.getProperty("arc.db.query.and");
   }
 
-  private static String getQueryString(String... strings) {
-    StringBuilder queryString = new StringBuilder();
-    for (String str : strings) {
-      if (StringUtil.hasText(str)) {
-        if (!queryString.isEmpty()) {
-          queryString.append(",");
-        }
-        queryString.append("'");
-        queryString.append(str);
-        queryString.append("'");
+  /**
+   * @param values the values of a request
+   * @return the values without the empty ones and the duplicates
+   */
+  static List<String> getValues(String... values) {
+    Set<String> set = new LinkedHashSet<>();
+    for (String value : values) {
+      if (StringUtil.hasText(value)) {
+        set.add(value);
       }
     }
-    return queryString.toString();
+    return new ArrayList<>(set);
   }
 
-  private static String getString(ResultSet resultSet, String field) throws SQLException {
-    if (field != null) {
-      return EscapeChars.forXML(resultSet.getString(field));
-    }
-    return null;
-  }
-
-  private static LocalDateTime getLocalDateTimeFromTimeStamp(ResultSet resultSet, String field)
-      throws SQLException {
-    Timestamp timestamp = resultSet.getTimestamp(field);
-    if (timestamp != null) {
-      return timestamp.toLocalDateTime();
-    }
-    return null;
-  }
-
-  private static String getDateFromTimeStamp(ResultSet resultSet, String field)
-      throws SQLException {
-    Timestamp timestamp = resultSet.getTimestamp(field);
-    if (timestamp != null) {
-      return DateTimeUtils.formatDA(timestamp.toLocalDateTime().toLocalDate());
-    }
-    return null;
-  }
-
-  private static String getTimeFromTimeStamp(ResultSet resultSet, String field)
-      throws SQLException {
-    Timestamp timestamp = resultSet.getTimestamp(field);
-    if (timestamp != null) {
-      return DateTimeUtils.formatTM(timestamp.toLocalDateTime().toLocalTime());
+  /**
+   * Get the values of the bind markers of a list. The list is padded to its bind arity by repeating
+   * the last value, which does not change the result of an IN condition.
+   *
+   * @param values the values
+   * @param maxArity the maximum number of bind markers, it is not exceeded by the padding
+   * @return the values of the bind markers
+   */
+  static List<String> getParameters(List<String> values, int maxArity) {
+    List<String> parameters = new ArrayList<>(values);
+    if (!parameters.isEmpty()) {
+      String last = parameters.get(parameters.size() - 1);
+      int arity = Math.max(parameters.size(), Math.min(getBindArity(parameters.size()), maxArity));
+      for (int i = arity - parameters.size(); i > 0; i--) {
+        parameters.add(last);
+      }
     }
-    return null;
+    return parameters;
   }
 
-  private static String getDate(ResultSet resultSet, String field) throws SQLException {
-    java.sql.Date date = resultSet.getDate(field);
-    if (date != null) {
-      return DateTimeUtils.formatDA(date.toLocalDate());
+  /**
+   * Get the number of bind markers of a list of values. The lists are rounded up to a few arities
+   * (1, 8, 32, 128...) so that the database reuses the plans of a few distinct queries.
+   *
+   * @param size the number of values
+   * @return the number of bind markers
+   */
+  static int getBindArity(int size) {
+    int arity = 1;
+    while (arity < size) {
+      arity = arity == 1 ? 8 : arity * 4;
     }
-    return null;
+    return arity;
   }
 
-  private static String getDate(ResultSet resultSet, String field, String sourceFormat)
-      throws SQLException {
-    String dateStr = resultSet.getString(field);
-    try {
-      if (StringUtil.hasText(dateStr)) {
-        return DateTimeUtils.formatDA(
-            LocalDate.parse(dateStr, DateTimeFormatter.ofPattern(sourceFormat)));
+  private static String getBindMarkers(int size) {
+    StringBuilder markers = new StringBuilder(size * 2);
+    for (int i = 0; i < size; i++) {
+      if (i > 0) {
+        markers.append(',');
       }
-    } catch (DateTimeParseException e) {
-      LOGGER.error("Format Error: error parsing the field [{}] - {}", field, e.getMessage());
+      markers.append('?');
     }
-    return null;
+    return markers.toString();
   }
 }
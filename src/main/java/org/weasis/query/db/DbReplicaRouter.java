@@ -0,0 +1,343 @@
+/*
+ * Copyright (c) 2026 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.query.db;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.weasis.core.util.StringUtil;
+import org.weasis.query.Deadline;
+import org.weasis.query.QueryExecutor;
+import org.weasis.servlet.ServletUtil;
+
+/**
+ * Routing of the SQL queries of an archive to the read replicas of its database ("arc.db.replicas",
+ * comma-separated JDBC URIs), so that the queries of the manifests do not load the primary database
+ * ("arc.db.uri") used by the ingest. Each query is sent to the healthy replica having the least
+ * outstanding queries.
+ *
+ * <p>A replica is unhealthy when a connection cannot be opened, the next replica is then used
+ * immediately. The replicas are checked every "arc.db.replica.check.interval" (a valid connection
+ * and, with "arc.db.replica.lag.query", a replication lag not exceeding "arc.db.replica.max.lag").
+ * When no replica is healthy, the queries are sent to the primary database unless
+ * "arc.db.replica.fallback" is false.
+ */
+public class DbReplicaRouter {
+  private static final Logger LOGGER = LoggerFactory.getLogger(DbReplicaRouter.class);
+
+  private static final Map<String, DbReplicaRouter> ROUTERS = new ConcurrentHashMap<>();
+
+  private static final ScheduledExecutorService SCHEDULER =
+      Executors.newSingleThreadScheduledExecutor(
+          QueryExecutor.daemonThreadFactory("db-replica-check"));
+
+  private final String name;
+  private final Target primary;
+  private final List<Target> replicas;
+  private final boolean fallback;
+  private final String lagQuery;
+  private final long maxLag;
+  private final long checkTimeout;
+  private final AtomicInteger nextIndex = new AtomicInteger();
+  private final ScheduledFuture<?> checkTask;
+
+  private final LongAdder fallbacks = new LongAdder();
+
+  /** A database of the archive: the primary database or one of its read replicas. */
+  public static final class Target {
+    private final String name;
+    private final Properties properties;
+    private final boolean replica;
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private volatile boolean healthy = true;
+
+    private final LongAdder selected = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    private Target(String name, Properties properties, boolean replica) {
+      this.name = name;
+      this.properties = properties;
+      this.replica = replica;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    /**
+     * @return the archive properties with the connection of this database
+     */
+    public Properties getProperties() {
+      return properties;
+    }
+
+    /**
+     * @return false for the primary database
+     */
+    public boolean isReplica() {
+      return replica;
+    }
+
+    public boolean isHealthy() {
+      return healthy;
+    }
+
+    public int getOutstanding() {
+      return outstanding.get();
+    }
+
+    /**
+     * @return the connection pool of this database, or null when the connections are not pooled
+     */
+    public DbConnectionPool getPool() {
+      return DbConnectionPool.getPool(properties, name);
+    }
+
+    /** End of a query sent to this database. */
+    public void release() {
+      outstanding.decrementAndGet();
+    }
+  }
+
+  DbReplicaRouter(String name, Properties properties) {
+    this.name = name;
+    this.primary = new Target(name, properties, false);
+    this.fallback = !"false".equalsIgnoreCase(properties.getProperty("arc.db.replica.fallback"));
+    this.lagQuery = properties.getProperty("arc.db.replica.lag.query");
+    this.maxLag = ServletUtil.getLongProperty(properties, "arc.db.replica.max.lag", 30L);
+    this.checkTimeout =
+        ServletUtil.getLongProperty(properties, "arc.db.replica.check.timeout", 5000L);
+
+    List<Target> list = new ArrayList<>();
+    for (String uri : properties.getProperty("arc.db.replicas", "").split(",")) {
+      String value = uri.trim();
+      if (StringUtil.hasText(value)) {
+        Properties replica = new Properties();
+        replica.putAll(properties);
+        // The replicas are always connected with the JDBC driver
+        replica.remove("arc.db.jndi");
+        replica.setProperty("arc.db.uri", value);
+        copyProperty(replica, "arc.db.replica.user", "arc.db.user");
+        copyProperty(replica, "arc.db.replica.password", "arc.db.password");
+        list.add(new Target(name + ".replica" + (list.size() + 1), replica, true));
+      }
+    }
+    this.replicas = List.copyOf(list);
+
+    long interval =
+        ServletUtil.getLongProperty(properties, "arc.db.replica.check.interval", 10000L);
+    this.checkTask = scheduleCheck(interval);
+  }
+
+  private ScheduledFuture<?> scheduleCheck(long interval) {
+    if (interval <= 0 || SCHEDULER.isShutdown()) {
+      return null;
+    }
+    try {
+      return SCHEDULER.scheduleWithFixedDelay(
+          this::checkAll, interval, interval, TimeUnit.MILLISECONDS);
+    } catch (RejectedExecutionException e) {
+      // The web application is stopped (closeAll)
+      return null;
+    }
+  }
+
+  private static void copyProperty(Properties properties, String source, String target) {
+    String value = properties.getProperty(source);
+    if (value != null) {
+      properties.setProperty(target, value);
+    }
+  }
+
+  /**
+   * Get the router of the archive database, or null when the archive has no read replica
+   * ("arc.db.replicas" is not set).
+   *
+   * @param properties the archive properties
+   */
+  public static DbReplicaRouter getInstance(Properties properties) {
+    if (!StringUtil.hasText(properties.getProperty("arc.db.replicas"))) {
+      return null;
+    }
+    return ROUTERS.computeIfAbsent(
+        properties.getProperty("arc.id", "db"), k -> new DbReplicaRouter(k, properties));
+  }
+
+  /**
+   * Stop checking the replicas and stop the check thread, must be called when the web application
+   * is stopped.
+   */
+  public static void closeAll() {
+    for (DbReplicaRouter router : ROUTERS.values()) {
+      if (router.checkTask != null) {
+        router.checkTask.cancel(false);
+      }
+    }
+    ROUTERS.clear();
+    SCHEDULER.shutdownNow();
+  }
+
+  public List<Target> getReplicas() {
+    return replicas;
+  }
+
+  /**
+   * Select the healthy replica having the least outstanding queries (the next one in turn between
+   * equal replicas), or the primary database when no replica is healthy. The selected database must
+   * be released with {@link Target#release()} at the end of the query.
+   *
+   * @return the selected database
+   * @throws IllegalStateException when no replica is healthy and the fallback is disabled
+   */
+  public Target acquire() {
+    int size = replicas.size();
+    int start = size == 0 ? 0 : Math.floorMod(nextIndex.getAndIncrement(), size);
+    Target best = null;
+    for (int i = 0; i < size; i++) {
+      Target target = replicas.get((start + i) % size);
+      if (target.healthy && (best == null || target.outstanding.get() < best.outstanding.get())) {
+        best = target;
+      }
+    }
+    if (best == null) {
+      if (!fallback) {
+        throw new IllegalStateException("No healthy DB replica of " + name);
+      }
+      fallbacks.increment();
+      best = primary;
+    }
+    best.outstanding.incrementAndGet();
+    best.selected.increment();
+    return best;
+  }
+
+  /**
+   * Mark a replica as unhealthy, it is not selected until a successful check.
+   *
+   * @param target the replica
+   * @param cause the reason of the failure
+   */
+  public void markDown(Target target, Exception cause) {
+    if (!target.replica) {
+      return;
+    }
+    target.failures.increment();
+    if (target.healthy) {
+      target.healthy = false;
+      LOGGER.warn("DB replica {} is unhealthy: {}", target.name, cause.getMessage());
+    }
+  }
+
+  private void checkAll() {
+    for (Target target : replicas) {
+      try {
+        check(target);
+      } catch (Exception e) {
+        LOGGER.warn("Cannot check the DB replica {}", target.name, e);
+      }
+    }
+  }
+
+  /**
+   * Check that a connection to the replica is valid and that its replication lag (in seconds) does
+   * not exceed "arc.db.replica.max.lag".
+   *
+   * @param target the replica
+   */
+  void check(Target target) {
+    DbConnectionPool pool = target.getPool();
+    Connection connection = null;
+    boolean valid = false;
+    try {
+      connection =
+          pool == null
+              ? DbConnectionPool.openConnection(target.properties)
+              : pool.borrow(Deadline.after(checkTimeout));
+      int timeout = (int) Math.max(1, checkTimeout / 1000);
+      if (!connection.isValid(timeout)) {
+        throw new SQLException("Invalid connection");
+      }
+      if (StringUtil.hasText(lagQuery)) {
+        long lag = getLag(connection, timeout);
+        if (maxLag > 0 && lag > maxLag) {
+          throw new SQLException("Replication lag of " + lag + " s");
+        }
+      }
+      valid = true;
+      if (!target.healthy) {
+        target.healthy = true;
+        LOGGER.info("DB replica {} is healthy again", target.name);
+      }
+    } catch (SQLException e) {
+      markDown(target, e);
+    } finally {
+      if (connection != null) {
+        if (pool == null) {
+          DbQuery.safeClose(connection);
+        } else {
+          pool.release(connection, valid);
+        }
+      }
+    }
+  }
+
+  private long getLag(Connection connection, int timeout) throws SQLException {
+    try (Statement statement = connection.createStatement()) {
+      statement.setQueryTimeout(timeout);
+      try (ResultSet resultSet = statement.executeQuery(lagQuery)) {
+        // No row when the database is not a replica
+        return resultSet.next() ? Math.round(resultSet.getDouble(1)) : 0L;
+      }
+    }
+  }
+
+  /**
+   * @return the counters, each name is prefixed by "db.replica.[archive ID]"
+   */
+  public Map<String, Object> getCounters() {
+    Map<String, Object> stats = new LinkedHashMap<>();
+    for (Target target : replicas) {
+      String prefix = "db.replica." + target.name;
+      stats.put(prefix + ".healthy", target.healthy);
+      stats.put(prefix + ".outstanding", target.outstanding.get());
+      stats.put(prefix + ".selected", target.selected.sum());
+      stats.put(prefix + ".failures", target.failures.sum());
+    }
+    stats.put("db.replica." + name + ".primary.outstanding", primary.outstanding.get());
+    stats.put("db.replica." + name + ".fallbacks", fallbacks.sum());
+    return stats;
+  }
+
+  /**
+   * @return the counters of all the replica routers
+   */
+  public static Map<String, Object> getStatistics() {
+    Map<String, Object> stats = new LinkedHashMap<>();
+    new TreeMap<>(ROUTERS).values().forEach(r -> stats.putAll(r.getCounters()));
+    return stats;
+  }
+}
@@ -0,0 +1,323 @@
+/*
+ * Copyright (c) 2026 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.query.db;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.data.VR;
+import org.dcm4che3.img.util.DateTimeUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.weasis.core.util.EscapeChars;
+import org.weasis.core.util.StringUtil;
+import org.weasis.query.StudyTree;
+import org.weasis.query.StudyTree.SeriesTree;
+
+/**
+ * Mapping of the rows of the DB queries (one row per instance) to the study trees, compiled once
+ * per archive from the "arc.db.query.*" properties. The column indexes are resolved once per query
+ * and the rows of the same study and series, which are usually consecutive, are mapped without
+ * lookup.
+ */
+public final class DbRowMapper {
+  private static final Logger LOGGER = LoggerFactory.getLogger(DbRowMapper.class);
+
+  private static final Map<String, DbRowMapper> mappers = new ConcurrentHashMap<>();
+
+  private enum BirthDateType {
+    NONE,
+    DATE,
+    VARCHAR2
+  }
+
+  private final String patientIdField;
+  private final String patientNameField;
+  private final BirthDateType patientBirthDateType;
+  private final String patientBirthDateField;
+  private final DateTimeFormatter patientBirthDateFormat;
+  private final String patientBirthTimeField;
+  private final String patientSexField;
+  private final String studyIUIDField;
+  private final String studyDateField;
+  private final String accessionNumberField;
+  private final String studyIdField;
+  private final String referringPhysicianNameField;
+  private final String studyDescriptionField;
+  private final String seriesIUIDField;
+  private final String seriesDescriptionField;
+  private final String modalityField;
+  private final String seriesNumberField;
+  private final String sopIUIDField;
+  private final String instanceNumberField;
+
+  DbRowMapper(Properties properties) {
+    this.patientIdField = properties.getProperty("arc.db.query.patientid");
+    this.patientNameField = properties.getProperty("arc.db.query.setpatientname");
+    String birthDateType = properties.getProperty("arc.db.query.patientbirthdate.type");
+    this.patientBirthDateType =
+        "VARCHAR2".equals(birthDateType)
+            ? BirthDateType.VARCHAR2
+            : "DATE".equals(birthDateType) ? BirthDateType.DATE : BirthDateType.NONE;
+    this.patientBirthDateField = properties.getProperty("arc.db.query.patientbirthdate");
+    String birthDateFormat = properties.getProperty("arc.db.query.patientbirthdate.format");
+    this.patientBirthDateFormat =
+        patientBirthDateType == BirthDateType.VARCHAR2 && StringUtil.hasText(birthDateFormat)
+            ? DateTimeFormatter.ofPattern(birthDateFormat)
+            : null;
+    this.patientBirthTimeField = properties.getProperty("arc.db.query.patientbirthtime");
+    this.patientSexField = properties.getProperty("arc.db.query.patientsex");
+    this.studyIUIDField = properties.getProperty("arc.db.query.studyinstanceuid");
+    this.studyDateField = properties.getProperty("arc.db.query.studydate");
+    this.accessionNumberField = properties.getProperty("arc.db.query.accessionnumber");
+    this.studyIdField = properties.getProperty("arc.db.query.studyid");
+    this.referringPhysicianNameField =
+        properties.getProperty("arc.db.query.referringphysicianname");
+    this.studyDescriptionField = properties.getProperty("arc.db.query.studydescription");
+    this.seriesIUIDField = properties.getProperty("arc.db.query.seriesinstanceuid");
+    this.seriesDescriptionField = properties.getProperty("arc.db.query.seriesdescription");
+    this.modalityField = properties.getProperty("arc.db.query.modality");
+    this.seriesNumberField = properties.getProperty("arc.db.query.seriesnumber");
+    this.sopIUIDField = properties.getProperty("arc.db.query.sopinstanceuid");
+    this.instanceNumberField = properties.getProperty("arc.db.query.instancenumber");
+  }
+
+  /**
+   * @param archiveID the archive ID, the mapper is not shared when null
+   * @param properties the archive properties
+   * @return the row mapper of the archive
+   */
+  public static DbRowMapper getInstance(String archiveID, Properties properties) {
+    if (archiveID == null) {
+      return new DbRowMapper(properties);
+    }
+    return mappers.computeIfAbsent(archiveID, k -> new DbRowMapper(properties));
+  }
+
+  /** Indexes of the columns in a result set, 0 when the column is not mapped. */
+  private final class Columns {
+    private final int patientId;
+    private final int patientName;
+    private final int patientBirthDate;
+    private final int patientBirthTime;
+    private final int patientSex;
+    private final int studyIUID;
+    private final int studyDate;
+    private final int accessionNumber;
+    private final int studyId;
+    private final int referringPhysicianName;
+    private final int studyDescription;
+    private final int seriesIUID;
+    private final int seriesDescription;
+    private final int modality;
+    private final int seriesNumber;
+    private final int sopIUID;
+    private final int instanceNumber;
+
+    private Columns(ResultSet resultSet) throws SQLException {
+      this.patientId = findColumn(resultSet, patientIdField);
+      this.patientName = findColumn(resultSet, patientNameField);
+      this.patientBirthDate =
+          patientBirthDateType == BirthDateType.NONE
+              ? 0
+              : findColumn(resultSet, patientBirthDateField);
+      this.patientBirthTime = findColumn(resultSet, patientBirthTimeField);
+      this.patientSex = findColumn(resultSet, patientSexField);
+      this.studyIUID = findColumn(resultSet, studyIUIDField);
+      this.studyDate = findColumn(resultSet, studyDateField);
+      this.accessionNumber = findColumn(resultSet, accessionNumberField);
+      this.studyId = findColumn(resultSet, studyIdField);
+      this.referringPhysicianName = findColumn(resultSet, referringPhysicianNameField);
+      this.studyDescription = findColumn(resultSet, studyDescriptionField);
+      this.seriesIUID = findColumn(resultSet, seriesIUIDField);
+      this.seriesDescription = findColumn(resultSet, seriesDescriptionField);
+      this.modality = findColumn(resultSet, modalityField);
+      this.seriesNumber = findColumn(resultSet, seriesNumberField);
+      this.sopIUID = findColumn(resultSet, sopIUIDField);
+      this.instanceNumber = findColumn(resultSet, instanceNumberField);
+    }
+  }
+
+  private static int findColumn(ResultSet resultSet, String field) throws SQLException {
+    return field == null ? 0 : resultSet.findColumn(field);
+  }
+
+  /**
+   * Map the rows of a query to the study trees.
+   *
+   * @param resultSet the rows of the query, one row per instance
+   * @param trees the study trees by Study Instance UID, the new studies are added
+   * @param maxStudies the number of studies after which the reading stops, no limit when lower than
+   *     1 (the rows must be ordered by study date, the most recent first)
+   * @throws SQLException if a row cannot be read
+   */
+  public void map(ResultSet resultSet, Map<String, StudyTree> trees, int maxStudies)
+      throws SQLException {
+    Columns columns = new Columns(resultSet);
+    Map<String, SeriesTree> seriesMap = new HashMap<>();
+    String lastStudyUID = null;
+    String lastSeriesUID = null;
+    StudyTree study = null;
+    SeriesTree series = null;
+    int datedStudies = 0;
+    while (resultSet.next()) {
+      String studyUID = getString(resultSet, columns.studyIUID);
+      if (study == null || !Objects.equals(studyUID, lastStudyUID)) {
+        study = trees.get(studyUID);
+        if (study == null) {
+          LocalDateTime dateTime = getLocalDateTime(resultSet, columns.studyDate);
+          // The studies without date are not counted, as in StudyFilter
+          if (maxStudies > 0 && dateTime != null && ++datedStudies > maxStudies) {
+            // The next studies are older than the most recent results
+            break;
+          }
+          study =
+              new StudyTree(newStudy(resultSet, columns, studyUID, dateTime), new ArrayList<>());
+          trees.put(studyUID, study);
+        }
+        lastStudyUID = studyUID;
+        series = null;
+      }
+
+      String seriesUID = getString(resultSet, columns.seriesIUID);
+      if (series == null || !Objects.equals(seriesUID, lastSeriesUID)) {
+        String seriesKey = studyUID + '\\' + seriesUID;
+        series = seriesMap.get(seriesKey);
+        if (series == null) {
+          Attributes dataset = new Attributes();
+          dataset.setString(Tag.SeriesInstanceUID, VR.UI, seriesUID);
+          dataset.setString(
+              Tag.SeriesDescription, VR.LO, getString(resultSet, columns.seriesDescription));
+          dataset.setString(Tag.Modality, VR.CS, getString(resultSet, columns.modality));
+          dataset.setString(Tag.SeriesNumber, VR.IS, getString(resultSet, columns.seriesNumber));
+
+          series = new SeriesTree(dataset, new ArrayList<>());
+          seriesMap.put(seriesKey, series);
+          study.series().add(series);
+        }
+        lastSeriesUID = seriesUID;
+      }
+
+      Attributes instance = new Attributes(2);
+      instance.setString(Tag.SOPInstanceUID, VR.UI, getString(resultSet, columns.sopIUID));
+      instance.setString(Tag.InstanceNumber, VR.IS, getString(resultSet, columns.instanceNumber));
+      series.instances().add(instance);
+    }
+
+    // Modalities of the study used by the modality filter of StudyFilter
+    for (StudyTree tree : trees.values()) {
+      Set<String> modalities = new LinkedHashSet<>();
+      for (SeriesTree s : tree.series()) {
+        String modality = s.series().getString(Tag.Modality);
+        if (StringUtil.hasText(modality)) {
+          modalities.add(modality);
+        }
+      }
+      tree.study().setString(Tag.ModalitiesInStudy, VR.CS, modalities.toArray(new String[0]));
+    }
+  }
+
+  private Attributes newStudy(
+      ResultSet resultSet, Columns columns, String studyUID, LocalDateTime dateTime)
+      throws SQLException {
+    Attributes dataset = new Attributes();
+    // Do not handle issuer of patientID as it should be unique within a DB
+    dataset.setString(Tag.PatientID, VR.LO, getString(resultSet, columns.patientId));
+    dataset.setString(Tag.PatientName, VR.PN, getString(resultSet, columns.patientName));
+
+    if (patientBirthDateType == BirthDateType.VARCHAR2) {
+      dataset.setString(Tag.PatientBirthDate, VR.DA, getDate(resultSet, columns.patientBirthDate));
+    } else if (patientBirthDateType == BirthDateType.DATE) {
+      dataset.setString(
+          Tag.PatientBirthDate, VR.DA, getSqlDate(resultSet, columns.patientBirthDate));
+    }
+
+    if (columns.patientBirthTime > 0) {
+      LocalDateTime birthTime = getLocalDateTime(resultSet, columns.patientBirthTime);
+      dataset.setString(
+          Tag.PatientBirthTime,
+          VR.TM,
+          birthTime == null ? null : DateTimeUtils.formatTM(birthTime.toLocalTime()));
+    }
+
+    dataset.setString(Tag.PatientSex, VR.CS, getString(resultSet, columns.patientSex));
+    dataset.setString(Tag.StudyInstanceUID, VR.UI, studyUID);
+
+    if (dateTime != null) {
+      dataset.setString(Tag.StudyDate, VR.DA, DateTimeUtils.formatDA(dateTime.toLocalDate()));
+      dataset.setString(Tag.StudyTime, VR.TM, DateTimeUtils.formatTM(dateTime.toLocalTime()));
+    }
+
+    dataset.setString(Tag.AccessionNumber, VR.SH, getString(resultSet, columns.accessionNumber));
+    dataset.setString(Tag.StudyID, VR.SH, getString(resultSet, columns.studyId));
+    dataset.setString(
+        Tag.ReferringPhysicianName, VR.PN, getString(resultSet, columns.referringPhysicianName));
+    dataset.setString(Tag.StudyDescription, VR.LO, getString(resultSet, columns.studyDescription));
+    return dataset;
+  }
+
+  private static String getString(ResultSet resultSet, int column) throws SQLException {
+    if (column > 0) {
+      return EscapeChars.forXML(resultSet.getString(column));
+    }
+    return null;
+  }
+
+  private static LocalDateTime getLocalDateTime(ResultSet resultSet, int column)
+      throws SQLException {
+    if (column > 0) {
+      Timestamp timestamp = resultSet.getTimestamp(column);
+      if (timestamp != null) {
+        return timestamp.toLocalDateTime();
+      }
+    }
+    return null;
+  }
+
+  private static String getSqlDate(ResultSet resultSet, int column) throws SQLException {
+    if (column > 0) {
+      java.sql.Date date = resultSet.getDate(column);
+      if (date != null) {
+        return DateTimeUtils.formatDA(date.toLocalDate());
+      }
+    }
+    return null;
+  }
+
+  private String getDate(ResultSet resultSet, int column) throws SQLException {
+    if (column == 0 || patientBirthDateFormat == null) {
+      return null;
+    }
+    String dateStr = resultSet.getString(column);
+    try {
+      if (StringUtil.hasText(dateStr)) {
+        return DateTimeUtils.formatDA(LocalDate.parse(dateStr, patientBirthDateFormat));
+      }
+    } catch (DateTimeParseException e) {
+      LOGGER.error(
+          "Format Error: error parsing the field [{}] - {}", patientBirthDateField, e.getMessage());
+    }
+    return null;
+  }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2026 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.query.dicom;
+
+import java.io.Serial;
+
+/** Thrown when the archive answers a C-FIND request with a failure or a warning status. */
+public class CFindException extends IllegalStateException {
+  @Serial private static final long serialVersionUID = -4305927118531470127L;
+
+  private final int status;
+
+  public CFindException(int status, String errorComment) {
+    super(String.format("C-FIND failed with status %04XH: %s", status, errorComment));
+    this.status = status;
+  }
+
+  /**
+   * @return the DIMSE status of the C-FIND response
+   */
+  public int getStatus() {
+    return status;
+  }
+
+  /**
+   * @param e an exception
+   * @return the DIMSE status of the C-FIND exception found in the causes of the exception, or -1
+   *     when the exception is not due to a C-FIND response (e.g. I/O error or timeout)
+   */
+  public static int getStatus(Throwable e) {
+    for (Throwable t = e; t != null; t = t.getCause()) {
+      if (t instanceof CFindException cfind) {
+        return cfind.status;
+      }
+    }
+    return -1;
+  }
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright (c) 2026 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.query.dicom;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.net.Status;
+import org.dcm4che3.net.service.QueryRetrieveLevel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.weasis.dicom.op.CFind;
+import org.weasis.dicom.param.AdvancedParams;
+import org.weasis.dicom.param.DicomNode;
+import org.weasis.dicom.param.DicomParam;
+import org.weasis.dicom.param.DicomState;
+import org.weasis.query.Deadline;
+import org.weasis.query.QueryExecutor;
+import org.weasis.servlet.ConnectorProperties;
+import org.weasis.servlet.ServletUtil;
+
+/**
+ * Discover the query capabilities of the DICOM archives with the extended negotiation and small
+ * test C-FINDs matching random UIDs. The results are cached per archive and probed again in the
+ * background after "arc.probe.interval" (in milliseconds, 0 disables the probe).
+ */
+public final class CapabilityProbe {
+  private static final Logger LOGGER = LoggerFactory.getLogger(CapabilityProbe.class);
+
+  /** Number of UIDs of a List of UID matching when the archive supports it. */
+  public static final int UID_LIST_SIZE = 20;
+
+  /**
+   * @param relational the relational queries are accepted
+   * @param uidList the List of UID matching is supported
+   * @param dateRange the StudyDate range matching is supported
+   * @param modalitiesInStudy the ModalitiesInStudy matching is supported
+   * @param probeTime the time of the probe
+   */
+  public record Capabilities(
+      boolean relational,
+      boolean uidList,
+      boolean dateRange,
+      boolean modalitiesInStudy,
+      long probeTime) {}
+
+  private static final Map<String, Capabilities> capabilities = new ConcurrentHashMap<>();
+  private static final Set<String> probing = ConcurrentHashMap.newKeySet();
+
+  private CapabilityProbe() {}
+
+  private static String getKey(DicomNode calling, DicomNode called) {
+    return calling.getAet()
+        + "->"
+        + called.getAet()
+        + "@"
+        + called.getHostname()
+        + ":"
+        + called.getPort();
+  }
+
+  /**
+   * Get the capabilities of the archive. When they are unknown or older than "arc.probe.interval",
+   * the archive is probed in the background with its own archive configuration.
+   *
+   * @param properties the archive properties
+   * @param callingNode the calling node
+   * @param calledNode the called node of the archive
+   * @return the capabilities or null when the probe is disabled or not yet completed
+   */
+  public static Capabilities getCapabilities(
+      Properties properties, DicomNode callingNode, DicomNode calledNode) {
+    long interval = ServletUtil.getLongProperty(properties, "arc.probe.interval", 0L);
+    if (interval <= 0) {
+      return null;
+    }
+    String key = getKey(callingNode, calledNode);
+    Capabilities result = capabilities.get(key);
+    if ((result == null || System.currentTimeMillis() - result.probeTime() >= interval)
+        && probing.add(key)) {
+      try {
+        QueryExecutor.getExecutor()
+            .execute(
+                () -> {
+                  try {
+                    // Not the configuration in construction of the caller
+                    Capabilities probed =
+                        probe(new DicomQueryConfiguration(properties, callingNode));
+                    if (probed != null) {
+                      capabilities.put(key, probed);
+                    }
+                  } catch (Exception e) {
+                    // e.g. the association pools are closed
+                    LOGGER.warn("Cannot probe the capabilities of {}", key, e);
+                  } finally {
+                    probing.remove(key);
+                  }
+                });
+      } catch (RejectedExecutionException e) {
+        probing.remove(key);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Probe at startup the DICOM archives having "arc.probe.interval".
+   *
+   * @param properties the weasis-pacs-connector properties
+   */
+  public static void probeAll(ConnectorProperties properties) {
+    DicomNode callingNode = new DicomNode(properties.getProperty("aet", "PACS-CONNECTOR"));
+    for (Properties p : properties.getArchivePropertiesList()) {
+      if (p.getProperty("arc.aet") != null
+          && p.getProperty("arc.qido.url") == null
+          && ServletUtil.getLongProperty(p, "arc.probe.interval", 0L) > 0) {
+        // The configuration gets the capabilities and starts the probe
+        new DicomQueryConfiguration(p, callingNode);
+      }
+    }
+  }
+
+  /**
+   * @param config the archive configuration
+   * @return the capabilities of the archive or null when it is not reachable
+   */
+  static Capabilities probe(DicomQueryConfiguration config) {
+    long start = System.currentTimeMillis();
+    AdvancedParams params = config.getAdvancedParams();
+    // Reference query, when it fails the archive is not available and the previous result is kept
+    if (!isSupported(
+        config,
+        params,
+        QueryRetrieveLevel.STUDY,
+        new DicomParam(Tag.StudyInstanceUID, randomUID()))) {
+      LOGGER.warn("Cannot probe the capabilities of {}", config.getArchiveConfigName());
+      return null;
+    }
+
+    boolean relational = isRelationalAccepted(config);
+    if (relational) {
+      // Instance level without the Study and Series Instance UIDs
+      relational =
+          isSupported(
+              config,
+              config.getRelationalParams(),
+              QueryRetrieveLevel.IMAGE,
+              new DicomParam(Tag.SOPInstanceUID, randomUID()));
+    }
+    boolean uidList =
+        isSupported(
+            config,
+            params,
+            QueryRetrieveLevel.STUDY,
+            new DicomParam(Tag.StudyInstanceUID, randomUID(), randomUID()));
+    boolean dateRange =
+        isSupported(
+            config,
+            params,
+            QueryRetrieveLevel.STUDY,
+            new DicomParam(Tag.StudyInstanceUID, randomUID()),
+            new DicomParam(Tag.StudyDate, "19000101-19000102"));
+    boolean modalitiesInStudy =
+        isSupported(
+            config,
+            params,
+            QueryRetrieveLevel.STUDY,
+            new DicomParam(Tag.StudyInstanceUID, randomUID()),
+            new DicomParam(Tag.ModalitiesInStudy, "OT", "SR"));
+
+    Capabilities result =
+        new Capabilities(
+            relational, uidList, dateRange, modalitiesInStudy, System.currentTimeMillis());
+    LOGGER.info(
+        "Capabilities of {} probed in {} ms: {}",
+        config.getArchiveConfigName(),
+        System.currentTimeMillis() - start,
+        result);
+    return result;
+  }
+
+  private static boolean isRelationalAccepted(DicomQueryConfiguration config) {
+    DicomAssociationPool pool = DicomAssociationPool.getPool(config);
+    if (pool == null) {
+      // Without the pool, only the test query can tell
+      return true;
+    }
+    // The associations of the pool always propose the relational queries
+    PooledAssociation as = pool.borrow();
+    try {
+      return as.isRelationalQueryAccepted();
+    } finally {
+      pool.release(as, true);
+    }
+  }
+
+  private static boolean isSupported(
+      DicomQueryConfiguration config,
+      AdvancedParams params,
+      QueryRetrieveLevel level,
+      DicomParam... keys) {
+    try {
+      DicomAssociationPool pool = DicomAssociationPool.getPool(config);
+      if (pool == null) {
+        DicomState state =
+            CFind.process(params, config.getCallingNode(), config.getCalledNode(), 1, level, keys);
+        int status = state.getStatus();
+        return status == Status.Success || status == Status.Cancel || Status.isPending(status);
+      }
+      long timeout =
+          ServletUtil.getLongProperty(config.getProperties(), "arc.probe.timeout", 10000L);
+      pool.find(level, ds -> false, Deadline.after(timeout), keys);
+      return true;
+    } catch (Exception e) {
+      LOGGER.debug("Test C-FIND failed with {}", config.getArchiveConfigName(), e);
+      return false;
+    }
+  }
+
+  private static String randomUID() {
+    return "2.25." + (UUID.randomUUID().getMostSignificantBits() & Long.MAX_VALUE);
+  }
+
+  /**
+   * @return the capabilities of the probed archives, each name is prefixed by "capabilities.[key]"
+   */
+  public static Map<String, Object> getStatistics() {
+    Map<String, Object> stats = new LinkedHashMap<>();
+    new TreeMap<>(capabilities)
+        .forEach(
+            (key, c) -> {
+              String prefix = "capabilities." + key;
+              stats.put(prefix + ".relational", c.relational());
+              stats.put(prefix + ".uid.list", c.uidList());
+              stats.put(prefix + ".date.range", c.dateRange());
+              stats.put(prefix + ".modalities.in.study", c.modalitiesInStudy());
+            });
+    return stats;
+  }
+}
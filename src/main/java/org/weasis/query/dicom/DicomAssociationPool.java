@@ -0,0 +1,517 @@
+/*
+ * Copyright (c) 2026 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.query.dicom;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Predicate;
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.UID;
+import org.dcm4che3.net.ApplicationEntity;
+import org.dcm4che3.net.Association;
+import org.dcm4che3.net.Connection;
+import org.dcm4che3.net.Device;
+import org.dcm4che3.net.QueryOption;
+import org.dcm4che3.net.pdu.AAssociateRQ;
+import org.dcm4che3.net.pdu.ExtendedNegotiation;
+import org.dcm4che3.net.pdu.PresentationContext;
+import org.dcm4che3.net.service.QueryRetrieveLevel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.weasis.dicom.param.AdvancedParams;
+import org.weasis.dicom.param.DicomNode;
+import org.weasis.dicom.param.DicomParam;
+import org.weasis.query.Deadline;
+import org.weasis.query.QueryExecutor;
+import org.weasis.query.QueryTimeoutException;
+import org.weasis.servlet.ServletUtil;
+
+/**
+ * Pool of open associations between the connector and one archive. The same pool is shared by all
+ * the {@link DicomQueryConfiguration} having the same calling node, called node, TLS configuration
+ * and pool options, so that the C-FIND requests of the manifests reuse a few warm associations
+ * instead of opening a new one for each request.
+ */
+public class DicomAssociationPool {
+  private static final Logger LOGGER = LoggerFactory.getLogger(DicomAssociationPool.class);
+
+  private static final Map<PoolKey, DicomAssociationPool> POOLS = new ConcurrentHashMap<>();
+
+  // Archive properties configuring the associations of a pool (the passwords are not in the key)
+  private static final List<String> OPTION_KEYS =
+      List.of(
+          "arc.pool.",
+          "arc.tls",
+          "arc.keystoreURL",
+          "arc.keystoreType",
+          "arc.truststoreURL",
+          "arc.truststoreType",
+          "arc.query.async.ops");
+
+  private static final ExecutorService EXECUTOR =
+      Executors.newCachedThreadPool(QueryExecutor.daemonThreadFactory("dicom-association"));
+  // Timers of the associations (ARTIM, response timeouts), they must never be blocked
+  private static final ScheduledExecutorService SCHEDULER =
+      Executors.newSingleThreadScheduledExecutor(
+          QueryExecutor.daemonThreadFactory("dicom-association-timer"));
+  // Eviction and C-ECHO validation, waiting for the responses of the archives
+  private static final ScheduledExecutorService EVICTOR =
+      Executors.newSingleThreadScheduledExecutor(
+          QueryExecutor.daemonThreadFactory("dicom-pool-evictor"));
+
+  static {
+    EVICTOR.scheduleWithFixedDelay(DicomAssociationPool::evictAll, 10, 10, TimeUnit.SECONDS);
+  }
+
+  private final PoolKey key;
+  private final AdvancedParams options;
+  private final DicomNode calledNode;
+  private final int minIdle;
+  private final int maxIdle;
+  private final int maxTotal;
+  private final long idleTimeout;
+  private final long validationInterval;
+  private final long borrowTimeout;
+  private final int asyncOps;
+
+  private final Device device;
+  private final ApplicationEntity ae;
+  private final Connection conn;
+
+  private final LinkedBlockingDeque<PooledAssociation> idle = new LinkedBlockingDeque<>();
+  private final Semaphore permits;
+  private final AtomicInteger openCount = new AtomicInteger();
+  private volatile boolean closed = false;
+
+  /**
+   * @param options the archive properties configuring the associations, see {@link #getOptions}
+   */
+  record PoolKey(
+      String callingAet,
+      String calledAet,
+      String hostname,
+      int port,
+      Map<String, String> options) {}
+
+  private DicomAssociationPool(
+      PoolKey key,
+      AdvancedParams options,
+      DicomNode callingNode,
+      DicomNode calledNode,
+      Properties properties) {
+    this.key = key;
+    this.options = options;
+    this.calledNode = calledNode;
+    this.maxTotal = Math.max(1, ServletUtil.getIntProperty(properties, "arc.pool.max.total", 8));
+    this.maxIdle =
+        Math.min(maxTotal, ServletUtil.getIntProperty(properties, "arc.pool.max.idle", 4));
+    this.minIdle =
+        Math.min(maxIdle, ServletUtil.getIntProperty(properties, "arc.pool.min.idle", 0));
+    this.idleTimeout = ServletUtil.getLongProperty(properties, "arc.pool.idle.timeout", 60000L);
+    this.validationInterval =
+        ServletUtil.getLongProperty(properties, "arc.pool.validation.interval", 30000L);
+    this.borrowTimeout = ServletUtil.getLongProperty(properties, "arc.pool.borrow.timeout", 30000L);
+    this.asyncOps = Math.max(0, ServletUtil.getIntProperty(properties, "arc.query.async.ops", 1));
+    this.permits = new Semaphore(maxTotal, true);
+
+    this.device = new Device("weasis-pacs-connector");
+    this.conn = new Connection();
+    this.ae = new ApplicationEntity(callingNode.getAet());
+    device.addConnection(conn);
+    device.addApplicationEntity(ae);
+    ae.addConnection(conn);
+    device.setExecutor(EXECUTOR);
+    device.setScheduledExecutor(SCHEDULER);
+    options.configureBind(ae, conn, callingNode);
+    options.configure(conn);
+    // Asynchronous Operations Window proposed to the archive (1 is synchronous, 0 is unlimited)
+    conn.setMaxOpsInvoked(asyncOps);
+    conn.setMaxOpsPerformed(asyncOps);
+  }
+
+  /**
+   * Get the association pool of an archive configuration, or null when the pool is disabled with
+   * "arc.pool.max.total=0".
+   */
+  public static DicomAssociationPool getPool(DicomQueryConfiguration config) {
+    return getPool(config, config.getCalledNode());
+  }
+
+  /**
+   * Get the association pool of a node of an archive configuration, or null when the pool is
+   * disabled with "arc.pool.max.total=0".
+   *
+   * @param config the archive configuration
+   * @param called one of the equivalent nodes of the archive
+   * @throws IllegalStateException when the pools have been closed by {@link #closeAll()}
+   */
+  public static DicomAssociationPool getPool(DicomQueryConfiguration config, DicomNode called) {
+    Properties properties = config.getProperties();
+    if (ServletUtil.getIntProperty(properties, "arc.pool.max.total", 8) <= 0) {
+      return null;
+    }
+    DicomNode calling = config.getCallingNode();
+    AdvancedParams params = config.getAdvancedParams();
+    PoolKey poolKey =
+        new PoolKey(
+            calling.getAet(),
+            called.getAet(),
+            called.getHostname(),
+            called.getPort(),
+            getOptions(properties));
+    return POOLS.computeIfAbsent(
+        poolKey,
+        k -> {
+          // No new pool after closeAll(), its associations would never be closed
+          if (EXECUTOR.isShutdown()) {
+            throw new IllegalStateException("The DICOM association pools are closed");
+          }
+          return new DicomAssociationPool(
+              k, params == null ? new AdvancedParams() : params, calling, called, properties);
+        });
+  }
+
+  /**
+   * @param properties the archive properties
+   * @return the TLS configuration and the pool options of the archive, two archive configurations
+   *     share a pool only when they are identical
+   */
+  static Map<String, String> getOptions(Properties properties) {
+    Map<String, String> options = new TreeMap<>();
+    for (String name : properties.stringPropertyNames()) {
+      if (OPTION_KEYS.stream().anyMatch(name::startsWith)) {
+        options.put(name, properties.getProperty(name));
+      }
+    }
+    return Collections.unmodifiableMap(options);
+  }
+
+  /**
+   * Close all the pooled associations and stop the threads of the pools, must be called when the
+   * web application is stopped.
+   */
+  public static void closeAll() {
+    for (DicomAssociationPool pool : POOLS.values()) {
+      pool.close();
+    }
+    POOLS.clear();
+    EVICTOR.shutdownNow();
+    SCHEDULER.shutdownNow();
+    EXECUTOR.shutdownNow();
+  }
+
+  public PoolKey getKey() {
+    return key;
+  }
+
+  /**
+   * Execute a C-FIND with an association of the pool.
+   *
+   * @param level the query/retrieve level
+   * @param deadline the time limit of the request
+   * @param keys the matching and return keys
+   * @return the matching datasets
+   */
+  public List<Attributes> find(QueryRetrieveLevel level, Deadline deadline, DicomParam... keys) {
+    List<Attributes> result = new ArrayList<>();
+    find(level, result::add, deadline, keys);
+    return result;
+  }
+
+  /**
+   * Execute a C-FIND with an association of the pool and give each matching dataset to the consumer
+   * as soon as it is received. The C-FIND is canceled when the consumer returns false.
+   *
+   * @param level the query/retrieve level
+   * @param consumer the consumer of the matching datasets, called by the association thread
+   * @param deadline the time limit of the request
+   * @param keys the matching and return keys
+   */
+  public void find(
+      QueryRetrieveLevel level,
+      Predicate<Attributes> consumer,
+      Deadline deadline,
+      DicomParam... keys) {
+    long start = System.currentTimeMillis();
+    AtomicInteger matches = new AtomicInteger();
+    PooledAssociation as = borrow(deadline);
+    boolean reusable = false;
+    try {
+      as.find(
+          level,
+          options.getPriority(),
+          ds -> {
+            matches.incrementAndGet();
+            return consumer.test(ds);
+          },
+          deadline,
+          keys);
+      reusable = true;
+      LOGGER.debug(
+          "C-FIND at {} level to {}: {} matches in {} ms",
+          level,
+          calledNode.getAet(),
+          matches.get(),
+          System.currentTimeMillis() - start);
+    } finally {
+      release(as, reusable);
+    }
+  }
+
+  /**
+   * Execute several C-FIND requests with the same association. When the archive has accepted an
+   * asynchronous operations window, the requests are sent without waiting for the responses of the
+   * previous ones (up to the size of the window).
+   *
+   * @param level the query/retrieve level
+   * @param keysList the matching and return keys of each request
+   * @param deadline the time limit of the request
+   * @param canceled the condition stopping the requests (C-CANCEL), e.g. when another node of the
+   *     archive has answered
+   * @return the matching datasets of each request, in the same order as keysList
+   * @throws java.util.concurrent.CancellationException when the requests have been stopped by the
+   *     condition
+   */
+  public List<List<Attributes>> findAll(
+      QueryRetrieveLevel level,
+      List<DicomParam[]> keysList,
+      Deadline deadline,
+      BooleanSupplier canceled) {
+    if (keysList.isEmpty()) {
+      return new ArrayList<>();
+    }
+    long start = System.currentTimeMillis();
+    PooledAssociation as = borrow(deadline);
+    boolean reusable = false;
+    try {
+      List<List<Attributes>> results =
+          as.findAll(level, options.getPriority(), keysList, deadline, canceled);
+      reusable = true;
+      LOGGER.debug(
+          "{} C-FIND at {} level to {} (async window {}) in {} ms",
+          keysList.size(),
+          level,
+          calledNode.getAet(),
+          as.getMaxOpsInvoked(),
+          System.currentTimeMillis() - start);
+      return results;
+    } finally {
+      release(as, reusable);
+    }
+  }
+
+  /**
+   * Get an association from the pool or open a new one when no idle association is available.
+   *
+   * @return a ready association which must be given back with {@link #release}
+   */
+  public PooledAssociation borrow() {
+    return borrow(Deadline.NONE);
+  }
+
+  /**
+   * Get an association from the pool or open a new one when no idle association is available.
+   *
+   * @param deadline the time limit of the request, the waiting time cannot exceed it
+   * @return a ready association which must be given back with {@link #release}
+   */
+  public PooledAssociation borrow(Deadline deadline) {
+    if (closed) {
+      throw new IllegalStateException("The association pool of " + key + " is closed");
+    }
+    try {
+      if (!permits.tryAcquire(deadline.getTimeout(borrowTimeout), TimeUnit.MILLISECONDS)) {
+        if (deadline.isExpired()) {
+          throw new QueryTimeoutException(
+              "No free association to " + calledNode.getAet() + " before the time limit");
+        }
+        throw new IllegalStateException(
+            "No free association to " + calledNode.getAet() + " after " + borrowTimeout + " ms");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for an association", e);
+    }
+
+    try {
+      PooledAssociation as;
+      while ((as = idle.pollFirst()) != null) {
+        if (validate(as)) {
+          return as;
+        }
+        destroy(as);
+      }
+      return open();
+    } catch (RuntimeException e) {
+      permits.release();
+      throw e;
+    }
+  }
+
+  /**
+   * Give back an association to the pool.
+   *
+   * @param as the borrowed association
+   * @param reusable false when the association is in an unknown state (e.g. after an error)
+   */
+  public void release(PooledAssociation as, boolean reusable) {
+    try {
+      if (reusable && !closed && as.isReady() && idle.size() < maxIdle) {
+        as.touch();
+        idle.offerFirst(as);
+      } else {
+        destroy(as);
+      }
+    } finally {
+      permits.release();
+    }
+  }
+
+  private boolean validate(PooledAssociation as) {
+    if (!as.isReady()) {
+      return false;
+    }
+    if (System.currentTimeMillis() - as.getLastUsedTime() > validationInterval) {
+      return as.echo();
+    }
+    return true;
+  }
+
+  private PooledAssociation open() {
+    AAssociateRQ rq = new AAssociateRQ();
+    Connection remote = new Connection();
+    options.configureConnect(rq, remote, calledNode);
+    rq.addPresentationContext(
+        new PresentationContext(1, PooledAssociation.FIND_CUID, options.getTsuidOrder()));
+    rq.addPresentationContext(
+        new PresentationContext(3, UID.Verification, UID.ImplicitVRLittleEndian));
+    // Always negotiate relational queries, the archive can accept or refuse it
+    rq.addExtendedNegotiation(
+        new ExtendedNegotiation(
+            PooledAssociation.FIND_CUID,
+            QueryOption.toExtendedNegotiationInformation(EnumSet.of(QueryOption.RELATIONAL))));
+    try {
+      synchronized (conn) {
+        options.configureTLS(conn, remote);
+      }
+      Association as = ae.connect(conn, remote, rq);
+      openCount.incrementAndGet();
+      LOGGER.debug("Open a new association to {} ({} open)", calledNode.getAet(), openCount.get());
+      return new PooledAssociation(as);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while opening an association", e);
+    } catch (Exception e) {
+      throw new IllegalStateException(
+          "Cannot open an association to "
+              + calledNode.getAet()
+              + "@"
+              + calledNode.getHostname()
+              + ":"
+              + calledNode.getPort(),
+          e);
+    }
+  }
+
+  private void destroy(PooledAssociation as) {
+    openCount.decrementAndGet();
+    as.close();
+  }
+
+  private static void evictAll() {
+    for (DicomAssociationPool pool : POOLS.values()) {
+      try {
+        pool.evict();
+      } catch (Exception e) {
+        LOGGER.warn("Cannot evict associations of {}", pool.key, e);
+      }
+    }
+  }
+
+  /**
+   * Close the associations idle for more than "arc.pool.idle.timeout" (keeping at least
+   * "arc.pool.min.idle"), check the others with C-ECHO and reopen associations up to the min idle.
+   */
+  void evict() {
+    long now = System.currentTimeMillis();
+    Iterator<PooledAssociation> it = idle.descendingIterator();
+    while (it.hasNext()) {
+      PooledAssociation as = it.next();
+      long idleTime = now - as.getLastUsedTime();
+      if (idle.size() > minIdle && idleTime > idleTimeout) {
+        if (idle.remove(as)) {
+          destroy(as);
+        }
+      } else if (idleTime > validationInterval && idle.remove(as)) {
+        // Removed from the idle list to avoid being borrowed during the C-ECHO
+        if (as.isReady() && as.echo()) {
+          as.touch();
+          idle.offerLast(as);
+        } else {
+          destroy(as);
+        }
+      }
+    }
+
+    while (!closed && idle.size() < minIdle && permits.tryAcquire()) {
+      try {
+        idle.offerLast(open());
+      } catch (Exception e) {
+        LOGGER.warn("Cannot open an idle association to {}", calledNode.getAet(), e);
+        break;
+      } finally {
+        permits.release();
+      }
+    }
+  }
+
+  void close() {
+    closed = true;
+    PooledAssociation as;
+    while ((as = idle.pollFirst()) != null) {
+      destroy(as);
+    }
+  }
+
+  int getOpenCount() {
+    return openCount.get();
+  }
+
+  int getIdleCount() {
+    return idle.size();
+  }
+
+  @Override
+  public String toString() {
+    return calledNode.getAet()
+        + " [open="
+        + openCount.get()
+        + ", idle="
+        + idle.size()
+        + ", inUse="
+        + (maxTotal - permits.availablePermits())
+        + "]";
+  }
+}
@@ -9,24 +9,32 @@
  */
 package org.weasis.query.dicom;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
-import java.util.Date;
-import java.util.GregorianCalendar;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
-import javax.xml.datatype.DatatypeConfigurationException;
-import javax.xml.datatype.DatatypeFactory;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+import java.util.function.Predicate;
 import org.dcm4che3.data.Attributes;
 import org.dcm4che3.data.Tag;
 import org.dcm4che3.net.QueryOption;
+import org.dcm4che3.net.Status;
 import org.dcm4che3.net.service.QueryRetrieveLevel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.weasis.core.util.LangUtil;
 import org.weasis.core.util.StringUtil;
 import org.weasis.dicom.mf.Patient;
-import org.weasis.dicom.mf.Series;
-import org.weasis.dicom.mf.SopInstance;
 import org.weasis.dicom.mf.Study;
 import org.weasis.dicom.mf.ViewerMessage;
 import org.weasis.dicom.op.CFind;
@@ -37,27 +45,65 @@ import org.weasis.dicom.param.DicomState;
 import org.weasis.dicom.param.TlsOptions;
 import org.weasis.query.AbstractQueryConfiguration;
 import org.weasis.query.CommonQueryParams;
+import org.weasis.query.ExpiringCache;
+import org.weasis.query.HedgePolicy;
+import org.weasis.query.IdentifierCache;
+import org.weasis.query.QueryExecutor;
+import org.weasis.query.QueryTimeoutException;
+import org.weasis.query.SingleFlight;
+import org.weasis.query.StudyCache;
+import org.weasis.query.StudyFilter;
+import org.weasis.query.StudySelector;
+import org.weasis.query.StudyTree;
+import org.weasis.query.StudyTree.SeriesTree;
 import org.weasis.servlet.ServletUtil;
 
 public class DicomQueryConfiguration extends AbstractQueryConfiguration {
   private static final Logger LOGGER = LoggerFactory.getLogger(DicomQueryConfiguration.class);
 
-  private static final String C_FIND_WITH_SERIESUID = "C-FIND with SeriesInstanceUID {}";
   private static final String DICOM_QUERY_ERROR = "DICOM query Error of {}";
 
+  // Archives which have rejected a List of UID matching, the lists are tried again after one hour
+  private static final ExpiringCache<String, Boolean> UID_LIST_REJECTED =
+      new ExpiringCache<>("dicom.uid.list.rejected", 3_600_000L, 0, 10_000, v -> 1);
+
+  /**
+   * Identifies the identical C-FIND requests of different manifests.
+   *
+   * @param nodes the calling and the called nodes
+   * @param level the query/retrieve level
+   * @param keys the matching and return keys
+   * @param selection the selection of the streamed responses, or null
+   */
+  private record FindKey(
+      String nodes, QueryRetrieveLevel level, List<String> keys, Object selection) {}
+
+  private static final SingleFlight<FindKey, List<Attributes>> FIND_FLIGHTS =
+      new SingleFlight<>("dicom.find", DicomQueryConfiguration::copyDatasets);
+  private static final SingleFlight<FindKey, List<List<Attributes>>> FIND_ALL_FLIGHTS =
+      new SingleFlight<>(
+          "dicom.find.all",
+          lists -> {
+            List<List<Attributes>> copy = new ArrayList<>(lists.size());
+            lists.forEach(l -> copy.add(copyDatasets(l)));
+            return copy;
+          });
+
   private final DicomNode callingNode;
   private final DicomNode calledNode;
+  private final List<DicomNode> calledNodes;
+  private final HedgePolicy hedgePolicy;
   private final AdvancedParams advancedParams;
+  private final AdvancedParams relationalParams;
+  private final int parallelism;
+  private final boolean flatQuery;
+  private final int uidListSize;
+  private final boolean dateMatching;
+  private final boolean modalityMatching;
 
-  private static final DatatypeFactory datatypeFactory;
-
-  static {
-    try {
-      datatypeFactory = DatatypeFactory.newInstance();
-    } catch (DatatypeConfigurationException e) {
-      throw new Error(e);
-    }
-  }
+  // Parent datasets queried during this request by Series and Study Instance UID
+  private final Map<String, Attributes> parentSeries = new ConcurrentHashMap<>();
+  private final Map<String, Attributes> parentStudies = new ConcurrentHashMap<>();
 
   public DicomQueryConfiguration(Properties properties, DicomNode callingNode) {
     super(properties);
@@ -70,7 +116,52 @@ public class DicomQueryConfiguration extends AbstractQueryConfiguration {
             properties.getProperty("arc.aet", "DCM4CHEE"),
             properties.getProperty("arc.host", "localhost"),
             Integer.parseInt(properties.getProperty("arc.port", "11112")));
+    this.calledNodes = buildCalledNodes();
+    this.hedgePolicy = HedgePolicy.getInstance(getArchiveID(), properties);
     this.advancedParams = buildAdvancedParams();
+    this.relationalParams = buildRelationalParams();
+    this.parallelism = ServletUtil.getIntProperty(properties, "arc.query.parallelism", 1);
+    // The explicit configuration takes precedence over the probed capabilities of the archive
+    CapabilityProbe.Capabilities caps =
+        CapabilityProbe.getCapabilities(properties, callingNode, calledNode);
+    String mode = properties.getProperty("arc.query.mode");
+    this.flatQuery =
+        mode == null ? caps != null && caps.relational() : "flat".equalsIgnoreCase(mode);
+    int defaultListSize = caps != null && caps.uidList() ? CapabilityProbe.UID_LIST_SIZE : 1;
+    this.uidListSize =
+        ServletUtil.getIntProperty(properties, "arc.query.uid.list.size", defaultListSize);
+    this.dateMatching = getMatching("arc.query.match.date", caps == null || caps.dateRange());
+    this.modalityMatching =
+        getMatching("arc.query.match.modality", caps == null || caps.modalitiesInStudy());
+  }
+
+  private boolean getMatching(String key, boolean defaultValue) {
+    String value = properties.getProperty(key);
+    return value == null ? defaultValue : !"false".equalsIgnoreCase(value);
+  }
+
+  /**
+   * @return the called node followed by the equivalent nodes of "arc.hosts" (comma-separated
+   *     hostname:port values, the port of "arc.port" when missing)
+   */
+  private List<DicomNode> buildCalledNodes() {
+    List<DicomNode> nodes = new ArrayList<>();
+    nodes.add(calledNode);
+    String hosts = properties.getProperty("arc.hosts");
+    if (StringUtil.hasText(hosts)) {
+      for (String host : hosts.split(",")) {
+        String value = host.trim();
+        int index = value.lastIndexOf(':');
+        String hostname = index < 0 ? value : value.substring(0, index);
+        int port = index < 0 ? calledNode.getPort() : Integer.parseInt(value.substring(index + 1));
+        if (StringUtil.hasText(hostname)
+            && nodes.stream()
+                .noneMatch(n -> n.getHostname().equals(hostname) && n.getPort() == port)) {
+          nodes.add(new DicomNode(calledNode.getAet(), hostname, port));
+        }
+      }
+    }
+    return List.copyOf(nodes);
   }
 
   private AdvancedParams buildAdvancedParams() {
@@ -93,6 +184,20 @@ public class DicomQueryConfiguration extends AbstractQueryConfiguration {
     return params;
   }
 
+  // Own instance, the advanced parameters of the other queries must not be relational
+  private AdvancedParams buildRelationalParams() {
+    AdvancedParams params = buildAdvancedParams();
+    if (params == null) {
+      params = new AdvancedParams();
+    }
+    params.getQueryOptions().add(QueryOption.RELATIONAL);
+    return params;
+  }
+
+  AdvancedParams getRelationalParams() {
+    return relationalParams;
+  }
+
   public DicomNode getCalledNode() {
     return calledNode;
   }
@@ -105,8 +210,360 @@ public class DicomQueryConfiguration extends AbstractQueryConfiguration {
     return callingNode;
   }
 
+  /**
+   * @return the called node and its equivalent nodes
+   */
+  public List<DicomNode> getCalledNodes() {
+    return calledNodes;
+  }
+
+  /**
+   * Execute a query on the called node or, when the archive has equivalent nodes, with the hedge
+   * policy of the archive.
+   *
+   * @param query the query on a node, the condition becomes true when another node has answered
+   * @return the result of the query
+   */
+  private <T> T hedge(BiFunction<DicomNode, BooleanSupplier, T> query) {
+    if (calledNodes.size() == 1) {
+      return query.apply(calledNode, () -> false);
+    }
+    List<Function<BooleanSupplier, T>> attempts = new ArrayList<>(calledNodes.size());
+    for (DicomNode node : calledNodes) {
+      attempts.add(canceled -> query.apply(node, canceled));
+    }
+    return hedgePolicy.call(attempts, deadline);
+  }
+
+  /**
+   * Execute a C-FIND with an association of the archive pool, or with a new association when the
+   * pool is disabled.
+   *
+   * @param params the advanced parameters used when the pool is disabled
+   * @param level the query/retrieve level
+   * @param keys the matching and return keys
+   * @return the matching datasets
+   */
+  private List<Attributes> find(
+      AdvancedParams params, QueryRetrieveLevel level, DicomParam... keys) {
+    return find(params, level, false, keys);
+  }
+
+  /**
+   * @param uidList true when the matching key is a list of UIDs: its rejection by the archive is
+   *     not counted as a failure by the circuit breaker
+   */
+  private List<Attributes> find(
+      AdvancedParams params, QueryRetrieveLevel level, boolean uidList, DicomParam... keys) {
+    deadline.check();
+    return FIND_FLIGHTS.execute(
+        getFindKey(level, null, Collections.singletonList(keys)),
+        deadline,
+        () ->
+            circuitBreaker.call(
+                () -> hedge((node, canceled) -> find(node, params, level, canceled, keys)),
+                e -> uidList && isUIDListRejected(e)));
+  }
+
+  /**
+   * @return the key of the C-FIND requests, the identical requests in progress share their result
+   */
+  private FindKey getFindKey(
+      QueryRetrieveLevel level, Object selection, List<DicomParam[]> keysList) {
+    List<String> values = new ArrayList<>();
+    for (DicomParam[] keys : keysList) {
+      for (DicomParam param : keys) {
+        String[] v = param.getValues();
+        values.add(param.getTag() + "=" + (v == null ? "" : String.join("\\", v)));
+      }
+      // Separator of the requests
+      values.add("");
+    }
+    return new FindKey(callingNode.getAet() + "->" + getUIDListKey(), level, values, selection);
+  }
+
+  private static List<Attributes> copyDatasets(List<Attributes> datasets) {
+    if (datasets == null) {
+      return null;
+    }
+    List<Attributes> copy = new ArrayList<>(datasets.size());
+    for (Attributes dataset : datasets) {
+      copy.add(new Attributes(dataset));
+    }
+    return copy;
+  }
+
+  private List<Attributes> find(
+      DicomNode node,
+      AdvancedParams params,
+      QueryRetrieveLevel level,
+      BooleanSupplier canceled,
+      DicomParam... keys) {
+    DicomAssociationPool pool = DicomAssociationPool.getPool(this, node);
+    if (pool == null) {
+      DicomState state = CFind.process(params, callingNode, node, 0, level, keys);
+      LOGGER.debug("C-FIND at {} level {}", level, state.getMessage());
+      int status = state.getStatus();
+      if (status != Status.Success && status != Status.Cancel && !Status.isPending(status)) {
+        throw new CFindException(status, state.getMessage());
+      }
+      return state.getDicomRSP();
+    }
+    List<Attributes> results = new ArrayList<>();
+    pool.find(level, ds -> !canceled.getAsBoolean() && results.add(ds), deadline, keys);
+    return results;
+  }
+
+  /**
+   * Execute a C-FIND and give each matching dataset to the consumer. With the archive pool, the
+   * datasets are given as soon as they are received and the C-FIND is canceled when the consumer
+   * returns false. This C-FIND is only sent to the called node, a hedged request would give the
+   * datasets of several nodes to the consumer.
+   *
+   * @param params the advanced parameters used when the pool is disabled
+   * @param level the query/retrieve level
+   * @param consumer the consumer of the matching datasets
+   * @param keys the matching and return keys
+   */
+  private void find(
+      AdvancedParams params,
+      QueryRetrieveLevel level,
+      Predicate<Attributes> consumer,
+      DicomParam... keys) {
+    DicomAssociationPool pool = DicomAssociationPool.getPool(this);
+    if (pool == null) {
+      List<Attributes> results = find(params, level, keys);
+      if (results != null) {
+        for (Attributes dataset : results) {
+          if (!consumer.test(dataset)) {
+            break;
+          }
+        }
+      }
+    } else {
+      deadline.check();
+      circuitBreaker.call(
+          () -> {
+            pool.find(level, consumer, deadline, keys);
+            return null;
+          });
+    }
+  }
+
+  /**
+   * Execute a C-FIND which is canceled after the first matching dataset.
+   *
+   * @param params the advanced parameters used when the pool is disabled
+   * @param level the query/retrieve level
+   * @param keys the matching and return keys
+   * @return the first matching dataset or null
+   */
+  private Attributes findFirst(
+      AdvancedParams params, QueryRetrieveLevel level, DicomParam... keys) {
+    deadline.check();
+    return circuitBreaker.call(
+        () -> hedge((node, canceled) -> findFirst(node, params, level, canceled, keys)));
+  }
+
+  private Attributes findFirst(
+      DicomNode node,
+      AdvancedParams params,
+      QueryRetrieveLevel level,
+      BooleanSupplier canceled,
+      DicomParam... keys) {
+    DicomAssociationPool pool = DicomAssociationPool.getPool(this, node);
+    if (pool == null) {
+      DicomState state = CFind.process(params, callingNode, node, 1, level, keys);
+      List<Attributes> results = state.getDicomRSP();
+      return results == null || results.isEmpty() ? null : results.get(0);
+    }
+    Attributes[] first = new Attributes[1];
+    pool.find(
+        level,
+        ds -> {
+          if (!canceled.getAsBoolean()) {
+            first[0] = ds;
+          }
+          return false;
+        },
+        deadline,
+        keys);
+    return first[0];
+  }
+
+  /**
+   * Execute several C-FIND requests with the same association of the archive pool.
+   *
+   * @param params the advanced parameters used when the pool is disabled
+   * @param level the query/retrieve level
+   * @param keysList the matching and return keys of each request
+   * @return the matching datasets of each request, in the same order as keysList
+   */
+  private List<List<Attributes>> findAll(
+      AdvancedParams params, QueryRetrieveLevel level, List<DicomParam[]> keysList) {
+    deadline.check();
+    return FIND_ALL_FLIGHTS.execute(
+        getFindKey(level, null, keysList),
+        deadline,
+        () ->
+            circuitBreaker.call(
+                () -> hedge((node, canceled) -> findAll(node, params, level, keysList, canceled))));
+  }
+
+  /**
+   * Execute several C-FIND requests on a node, the next requests are not sent (and the requests in
+   * progress are canceled with the archive pool) when another node has answered.
+   */
+  private List<List<Attributes>> findAll(
+      DicomNode node,
+      AdvancedParams params,
+      QueryRetrieveLevel level,
+      List<DicomParam[]> keysList,
+      BooleanSupplier canceled) {
+    DicomAssociationPool pool = DicomAssociationPool.getPool(this, node);
+    if (pool != null) {
+      return pool.findAll(level, keysList, deadline, canceled);
+    }
+    List<List<Attributes>> results = new ArrayList<>(keysList.size());
+    for (DicomParam[] keys : keysList) {
+      if (canceled.getAsBoolean()) {
+        throw new CancellationException("C-FIND requests canceled");
+      }
+      deadline.check();
+      results.add(find(node, params, level, canceled, keys));
+    }
+    return results;
+  }
+
+  /**
+   * Split the UIDs in chunks of "arc.query.uid.list.size" values, each chunk being matched by a
+   * single C-FIND with a List of UID matching.
+   */
+  private List<String[]> getUIDChunks(String... uids) {
+    List<String> list = Arrays.stream(uids).filter(StringUtil::hasText).distinct().toList();
+    int size =
+        UID_LIST_REJECTED.getIfPresent(getUIDListKey(), null) != null
+            ? 1
+            : Math.max(1, uidListSize);
+    List<String[]> chunks = new ArrayList<>();
+    for (List<String> chunk : QueryExecutor.partition(list, (list.size() + size - 1) / size)) {
+      chunks.add(chunk.toArray(new String[0]));
+    }
+    return chunks;
+  }
+
+  private String getUIDListKey() {
+    return calledNode.getAet() + "@" + calledNode.getHostname() + ":" + calledNode.getPort();
+  }
+
+  /**
+   * @param e the exception of a C-FIND matching a list of UIDs
+   * @return true when the archive has rejected the request (status A900H or CxxxH), false for the
+   *     transient errors (I/O, timeout, out of resources...)
+   */
+  static boolean isUIDListRejected(Exception e) {
+    int status = CFindException.getStatus(e);
+    return status == Status.IdentifierDoesNotMatchSOPClass || (status & 0xF000) == 0xC000;
+  }
+
+  /**
+   * Execute a C-FIND matching a list of UIDs. When the archive rejects the list or returns nothing,
+   * the UIDs are queried one by one. After a rejection, the archive is not queried with lists
+   * during one hour. The other errors (I/O, timeout...) are thrown without changing the way the
+   * archive is queried.
+   *
+   * @param params the advanced parameters used when the pool is disabled
+   * @param level the query/retrieve level
+   * @param uidTag the tag of the UID matching key
+   * @param uids the UIDs to match
+   * @param returnKeys the return keys
+   * @return the matching datasets in the order of the UIDs
+   */
+  private List<Attributes> findByUIDs(
+      AdvancedParams params,
+      QueryRetrieveLevel level,
+      int uidTag,
+      String[] uids,
+      DicomParam... returnKeys) {
+    if (uids.length == 1) {
+      List<Attributes> results = find(params, level, buildUIDKeys(uidTag, uids, returnKeys));
+      return results == null ? List.of() : results;
+    }
+
+    try {
+      List<Attributes> results = find(params, level, true, buildUIDKeys(uidTag, uids, returnKeys));
+      if (results != null && !results.isEmpty()) {
+        List<String> order = Arrays.asList(uids);
+        results.sort(Comparator.comparingInt(a -> order.indexOf(a.getString(uidTag))));
+        return results;
+      }
+    } catch (QueryTimeoutException e) {
+      throw e;
+    } catch (RuntimeException e) {
+      if (!isUIDListRejected(e)) {
+        throw e;
+      }
+      LOGGER.debug("C-FIND with a list of {} UIDs failed", uids.length, e);
+      if (UID_LIST_REJECTED.getIfPresent(getUIDListKey(), null) == null) {
+        UID_LIST_REJECTED.put(getUIDListKey(), Boolean.TRUE);
+        LOGGER.warn(
+            "{} does not support the List of UID matching, the UIDs are queried one by one",
+            getArchiveConfigName());
+      }
+    }
+
+    List<Attributes> results = new ArrayList<>();
+    for (String uid : uids) {
+      try {
+        List<Attributes> matches =
+            find(params, level, buildUIDKeys(uidTag, new String[] {uid}, returnKeys));
+        if (matches != null) {
+          results.addAll(matches);
+        }
+      } catch (QueryTimeoutException e) {
+        throw e;
+      } catch (Exception e) {
+        LOGGER.error(DICOM_QUERY_ERROR, getArchiveConfigName(), e);
+      }
+    }
+    return results;
+  }
+
+  private static DicomParam[] buildUIDKeys(int uidTag, String[] uids, DicomParam... returnKeys) {
+    DicomParam[] keys = new DicomParam[returnKeys.length + 1];
+    // Matching Keys
+    keys[0] = new DicomParam(uidTag, uids);
+    // Return Keys
+    System.arraycopy(returnKeys, 0, keys, 1, returnKeys.length);
+    return keys;
+  }
+
   @Override
   public void buildFromPatientID(CommonQueryParams params, String... patientIDs) {
+    StudyFilter filter = StudyFilter.of(params);
+    // Filters applied by the archive, the studies are filtered again by StudyFilter
+    DicomParam studyDate = CFind.StudyDate;
+    if (dateMatching) {
+      String range = getStudyDateRange(params);
+      if (range != null) {
+        studyDate = new DicomParam(Tag.StudyDate, range);
+      }
+    }
+    DicomParam modalities = new DicomParam(Tag.ModalitiesInStudy);
+    // mostRecentResults counts the most recent studies of any modality, then filters the modality
+    if (modalityMatching
+        && filter.getLimit() <= 0
+        && StringUtil.hasText(params.getModalitiesInStudy())) {
+      String[] values =
+          Arrays.stream(params.getModalitiesInStudy().split(","))
+              .map(String::trim)
+              .filter(StringUtil::hasText)
+              .toArray(String[]::new);
+      if (values.length > 0) {
+        modalities = new DicomParam(Tag.ModalitiesInStudy, values);
+      }
+    }
+
     for (String patientID : patientIDs) {
       if (!StringUtil.hasText(patientID)) {
         continue;
@@ -135,24 +592,29 @@ public class DicomQueryConfiguration extends AbstractQueryConfiguration {
         CFind.PatientSex,
         CFind.ReferringPhysicianName,
         CFind.StudyDescription,
-        CFind.StudyDate,
+        studyDate,
         CFind.StudyTime,
         CFind.AccessionNumber,
         CFind.StudyInstanceUID,
         CFind.StudyID,
-        new DicomParam(Tag.ModalitiesInStudy)
+        modalities
       };
 
       try {
-        DicomState state =
-            CFind.process(
-                advancedParams, callingNode, calledNode, 0, QueryRetrieveLevel.STUDY, keysStudies);
-        LOGGER.debug("C-FIND with PatientID {}", state.getMessage());
-
-        List<Attributes> studies = state.getDicomRSP();
-        if (studies != null && !studies.isEmpty()) {
-          studies.sort(getStudyComparator());
-          applyAllFilters(params, studies);
+        List<Attributes> studies =
+            IdentifierCache.get(
+                getArchiveID(),
+                IdentifierCache.PATIENT_ID,
+                () -> findStudies(filter, keysStudies),
+                patientID,
+                params.getPatientName(),
+                params.getPatientBirthDate(),
+                params.getLowerDateTime(),
+                params.getUpperDateTime(),
+                params.getMostRecentResults(),
+                params.getModalitiesInStudy());
+        if (!studies.isEmpty()) {
+          fillAllSeries(filter.apply(studies));
         }
       } catch (Exception e) {
         LOGGER.error(DICOM_QUERY_ERROR, getArchiveConfigName(), e);
@@ -160,160 +622,49 @@ public class DicomQueryConfiguration extends AbstractQueryConfiguration {
     }
   }
 
-  private void applyAllFilters(CommonQueryParams params, List<Attributes> studies) {
-    if (StringUtil.hasText(params.getLowerDateTime())) {
-      Date lowerDateTime = null;
-      try {
-        lowerDateTime = parseDateTime(params.getLowerDateTime()).getTime();
-      } catch (Exception e) {
-        LOGGER.error("Cannot parse date: {}", params.getLowerDateTime(), e);
-      }
-      if (lowerDateTime != null) {
-        for (int i = studies.size() - 1; i >= 0; i--) {
-          Attributes s = studies.get(i);
-          Date date = s.getDate(Tag.StudyDateAndTime);
-          if (date != null) {
-            int rep = date.compareTo(lowerDateTime);
-            if (rep > 0) {
-              studies.remove(i);
-            }
-          }
-        }
-      }
-    }
-
-    if (StringUtil.hasText(params.getUpperDateTime())) {
-      Date upperDateTime = null;
-      try {
-        upperDateTime = parseDateTime(params.getUpperDateTime()).getTime();
-      } catch (Exception e) {
-        LOGGER.error("Cannot parse date: {}", params.getUpperDateTime(), e);
-      }
-      if (upperDateTime != null) {
-        for (int i = studies.size() - 1; i >= 0; i--) {
-          Attributes s = studies.get(i);
-          Date date = s.getDate(Tag.StudyDateAndTime);
-          if (date != null) {
-            int rep = date.compareTo(upperDateTime);
-            if (rep < 0) {
-              studies.remove(i);
-            }
-          }
-        }
-      }
-    }
-
-    if (StringUtil.hasText(params.getMostRecentResults())) {
-      int recent = StringUtil.getInteger(params.getMostRecentResults());
-      if (recent > 0) {
-        for (int i = studies.size() - 1; i >= recent; i--) {
-          studies.remove(i);
-        }
-      }
-    }
-
-    if (StringUtil.hasText(params.getModalitiesInStudy())) {
-      for (int i = studies.size() - 1; i >= 0; i--) {
-        Attributes s = studies.get(i);
-        String m = s.getString(Tag.ModalitiesInStudy);
-        if (StringUtil.hasText(m)) {
-          boolean remove = true;
-          for (String mod : params.getModalitiesInStudy().split(",")) {
-            if (m.contains(mod)) {
-              remove = false;
-              break;
-            }
-          }
-
-          if (remove) {
-            studies.remove(i);
-          }
-        }
-      }
-    }
-
-    if (StringUtil.hasText(params.getKeywords())) {
-      String[] keys = params.getKeywords().split(",");
-      for (int i = 0; i < keys.length; i++) {
-        keys[i] = StringUtil.deAccent(keys[i].trim().toUpperCase());
-      }
-
-      studyLabel:
-      for (int i = studies.size() - 1; i >= 0; i--) {
-        Attributes s = studies.get(i);
-        String desc = StringUtil.deAccent(s.getString(Tag.StudyDescription, "").toUpperCase());
-
-        for (String key : keys) {
-          if (desc.contains(key)) {
-            continue studyLabel;
-          }
-        }
-        studies.remove(i);
-      }
-    }
-
-    for (Attributes studyDataSet : studies) {
-      fillSeries(studyDataSet);
-    }
-  }
-
-  private static Comparator<Attributes> getStudyComparator() {
-    return (o1, o2) -> {
-      Date date1 = o1.getDate(Tag.StudyDate);
-      Date date2 = o2.getDate(Tag.StudyDate);
-      if (date1 != null && date2 != null) {
-        // inverse time
-        int rep = date2.compareTo(date1);
-        if (rep == 0) {
-          Date time1 = o1.getDate(Tag.StudyTime);
-          Date time2 = o2.getDate(Tag.StudyTime);
-          if (time1 != null && time2 != null) {
-            // inverse time
-            return time2.compareTo(time1);
-          }
-        } else {
-          return rep;
-        }
-      }
-      if (date1 == null && date2 == null) {
-        return o1.getString(Tag.StudyInstanceUID, "")
-            .compareTo(o2.getString(Tag.StudyInstanceUID, ""));
-      } else {
-        if (date1 == null) {
-          return 1;
-        }
-        if (date2 == null) {
-          return -1;
-        }
-      }
-      return 0;
-    };
+  /**
+   * Query the studies and keep only those in the date range and the most recent ones while the
+   * responses are received. The other filters are applied by {@link StudyFilter#apply}.
+   */
+  private List<Attributes> findStudies(StudyFilter filter, DicomParam[] keysStudies) {
+    return FIND_FLIGHTS.execute(
+        getFindKey(
+            QueryRetrieveLevel.STUDY,
+            filter.getSelectionKey(),
+            Collections.singletonList(keysStudies)),
+        deadline,
+        () -> {
+          StudySelector selector = new StudySelector(filter);
+          find(advancedParams, QueryRetrieveLevel.STUDY, selector, keysStudies);
+          return selector.getStudies();
+        });
   }
 
   @Override
   public void buildFromStudyInstanceUID(CommonQueryParams params, String... studyInstanceUIDs) {
-    for (String studyInstanceUID : studyInstanceUIDs) {
-      if (!StringUtil.hasText(studyInstanceUID)) {
-        continue;
-      }
-      DicomParam[] keysStudies = {
-        // Matching Keys
-        new DicomParam(Tag.StudyInstanceUID, studyInstanceUID),
-        // Return Keys
-        CFind.PatientID,
-        CFind.IssuerOfPatientID,
-        CFind.PatientName,
-        CFind.PatientBirthDate,
-        CFind.PatientSex,
-        CFind.ReferringPhysicianName,
-        CFind.StudyDescription,
-        CFind.StudyDate,
-        CFind.StudyTime,
-        CFind.AccessionNumber,
-        CFind.StudyID
-      };
+    DicomParam[] returnKeys = {
+      CFind.PatientID,
+      CFind.IssuerOfPatientID,
+      CFind.PatientName,
+      CFind.PatientBirthDate,
+      CFind.PatientSex,
+      CFind.ReferringPhysicianName,
+      CFind.StudyDescription,
+      CFind.StudyDate,
+      CFind.StudyTime,
+      CFind.AccessionNumber,
+      CFind.StudyID
+    };
 
-      fillStudy(keysStudies);
+    for (String[] uids : getUIDChunks(studyInstanceUIDs)) {
+      try {
+        List<Attributes> studies =
+            findByUIDs(
+                advancedParams, QueryRetrieveLevel.STUDY, Tag.StudyInstanceUID, uids, returnKeys);
+        fillAllSeries(studies);
+      } catch (Exception e) {
+        LOGGER.error(DICOM_QUERY_ERROR, getArchiveConfigName(), e);
+      }
     }
   }
 
@@ -340,55 +691,56 @@ public class DicomQueryConfiguration extends AbstractQueryConfiguration {
         CFind.StudyID
       };
 
-      fillStudy(keysStudies);
+      fillStudy(accessionNumber, keysStudies);
     }
   }
 
   @Override
   public void buildFromSeriesInstanceUID(CommonQueryParams params, String... seriesInstanceUIDs) {
-    AdvancedParams advParams = advancedParams == null ? new AdvancedParams() : advancedParams;
-    advParams.getQueryOptions().add(QueryOption.RELATIONAL);
+    AdvancedParams advParams = getRelationalParams();
 
-    for (String seriesInstanceUID : seriesInstanceUIDs) {
-      if (!StringUtil.hasText(seriesInstanceUID)) {
-        continue;
-      }
-
-      DicomParam[] keysSeries = {
-        // Matching Keys
-        new DicomParam(Tag.SeriesInstanceUID, seriesInstanceUID),
-        // Return Keys
-        CFind.PatientID,
-        CFind.IssuerOfPatientID,
-        CFind.PatientName,
-        CFind.PatientBirthDate,
-        CFind.PatientSex,
-        CFind.ReferringPhysicianName,
-        CFind.StudyDescription,
-        CFind.StudyDate,
-        CFind.StudyTime,
-        CFind.AccessionNumber,
-        CFind.StudyInstanceUID,
-        CFind.StudyID,
-        CFind.Modality,
-        CFind.SeriesNumber,
-        CFind.SeriesDescription
-      };
+    DicomParam[] returnKeys = {
+      CFind.PatientID,
+      CFind.IssuerOfPatientID,
+      CFind.PatientName,
+      CFind.PatientBirthDate,
+      CFind.PatientSex,
+      CFind.ReferringPhysicianName,
+      CFind.StudyDescription,
+      CFind.StudyDate,
+      CFind.StudyTime,
+      CFind.AccessionNumber,
+      CFind.StudyInstanceUID,
+      CFind.StudyID,
+      CFind.Modality,
+      CFind.SeriesNumber,
+      CFind.SeriesDescription
+    };
 
+    for (String[] uids : getUIDChunks(seriesInstanceUIDs)) {
       try {
-        DicomState state =
-            CFind.process(
-                advParams, callingNode, calledNode, 0, QueryRetrieveLevel.SERIES, keysSeries);
-        LOGGER.debug(C_FIND_WITH_SERIESUID, state.getMessage());
-
-        List<Attributes> series = state.getDicomRSP();
-        if (series != null && !series.isEmpty()) {
-          Attributes dataset = series.get(0);
-          Patient patient = getPatient(dataset);
-          Study study = getStudy(patient, dataset);
-          for (Attributes seriesDataset : series) {
-            fillInstance(seriesDataset, study);
-          }
+        List<Attributes> series =
+            findByUIDs(
+                advParams, QueryRetrieveLevel.SERIES, Tag.SeriesInstanceUID, uids, returnKeys);
+        resolveParents(series);
+        // The series of a list can belong to different studies
+        Map<String, List<Attributes>> seriesByStudy = new LinkedHashMap<>();
+        for (Attributes dataset : series) {
+          fillPatientAttributes(dataset);
+          seriesByStudy
+              .computeIfAbsent(dataset.getString(Tag.StudyInstanceUID), k -> new ArrayList<>())
+              .add(dataset);
+        }
+        for (List<Attributes> studySeries : seriesByStudy.values()) {
+          Attributes dataset = studySeries.get(0);
+          List<SeriesTree> seriesTrees =
+              queryInstances(dataset.getString(Tag.StudyInstanceUID), studySeries);
+          addResults(
+              () -> {
+                Patient patient = getPatient(dataset);
+                Study study = getStudy(patient, dataset);
+                addSeriesTrees(study, seriesTrees);
+              });
         }
       } catch (Exception e) {
         LOGGER.error(DICOM_QUERY_ERROR, getArchiveConfigName(), e);
@@ -398,87 +750,97 @@ public class DicomQueryConfiguration extends AbstractQueryConfiguration {
 
   @Override
   public void buildFromSopInstanceUID(CommonQueryParams params, String... sopInstanceUIDs) {
-    AdvancedParams advParams = advancedParams == null ? new AdvancedParams() : advancedParams;
-    advParams.getQueryOptions().add(QueryOption.RELATIONAL);
+    AdvancedParams advParams = getRelationalParams();
 
-    for (String sopInstanceUID : sopInstanceUIDs) {
-      if (!StringUtil.hasText(sopInstanceUID)) {
-        continue;
-      }
-
-      DicomParam[] keysInstance = {
-        // Matching Keys
-        new DicomParam(Tag.SOPInstanceUID, sopInstanceUID),
-        // Return Keys
-        CFind.PatientID,
-        CFind.IssuerOfPatientID,
-        CFind.PatientName,
-        CFind.PatientBirthDate,
-        CFind.PatientSex,
-        CFind.ReferringPhysicianName,
-        CFind.StudyDescription,
-        CFind.StudyDate,
-        CFind.StudyTime,
-        CFind.AccessionNumber,
-        CFind.StudyInstanceUID,
-        CFind.StudyID,
-        CFind.SeriesInstanceUID,
-        CFind.Modality,
-        CFind.SeriesNumber,
-        CFind.SeriesDescription
-      };
+    DicomParam[] returnKeys = {
+      CFind.PatientID,
+      CFind.IssuerOfPatientID,
+      CFind.PatientName,
+      CFind.PatientBirthDate,
+      CFind.PatientSex,
+      CFind.ReferringPhysicianName,
+      CFind.StudyDescription,
+      CFind.StudyDate,
+      CFind.StudyTime,
+      CFind.AccessionNumber,
+      CFind.StudyInstanceUID,
+      CFind.StudyID,
+      CFind.SeriesInstanceUID,
+      CFind.Modality,
+      CFind.SeriesNumber,
+      CFind.SeriesDescription
+    };
 
+    for (String[] uids : getUIDChunks(sopInstanceUIDs)) {
       try {
-        DicomState state =
-            CFind.process(
-                advParams, callingNode, calledNode, 0, QueryRetrieveLevel.IMAGE, keysInstance);
-        LOGGER.debug("C-FIND with sopInstanceUID {}", state.getMessage());
-
-        List<Attributes> instances = state.getDicomRSP();
-        if (instances != null && !instances.isEmpty()) {
-          Attributes dataset = instances.get(0);
-          Patient patient = getPatient(dataset);
-          Study study = getStudy(patient, dataset);
-          Series s = getSeries(study, dataset, properties);
-          for (Attributes instanceDataSet : instances) {
-            Integer frame =
-                ServletUtil.getIntegerFromDicomElement(instanceDataSet, Tag.InstanceNumber, null);
-            String sopUID = instanceDataSet.getString(Tag.SOPInstanceUID);
-            SopInstance sop = s.getSopInstance(sopUID, frame);
-            if (sop == null) {
-              s.addSopInstance(new SopInstance(sopUID, frame));
-            }
-          }
-        }
+        List<Attributes> instances =
+            findByUIDs(advParams, QueryRetrieveLevel.IMAGE, Tag.SOPInstanceUID, uids, returnKeys);
+        resolveParents(instances);
+        addResults(
+            () -> {
+              for (Attributes dataset : instances) {
+                Patient patient = getPatient(dataset);
+                Study study = getStudy(patient, dataset);
+                addInstances(getSeries(study, dataset, properties), List.of(dataset));
+              }
+            });
       } catch (Exception e) {
         String msg = DICOM_QUERY_ERROR + getArchiveConfigName();
         LOGGER.error(msg, e);
-        setViewerMessage(new ViewerMessage(msg, e.getMessage(), ViewerMessage.eLevel.ERROR));
+        addResults(
+            () ->
+                setViewerMessage(
+                    new ViewerMessage(msg, e.getMessage(), ViewerMessage.eLevel.ERROR)));
       }
     }
   }
 
-  private void fillStudy(DicomParam[] keysStudies) {
+  private void fillStudy(String accessionNumber, DicomParam[] keysStudies) {
     try {
-      DicomState state =
-          CFind.process(
-              advancedParams, callingNode, calledNode, 0, QueryRetrieveLevel.STUDY, keysStudies);
-      LOGGER.debug("C-FIND at study level {}", state.getMessage());
-
-      List<Attributes> studies = state.getDicomRSP();
-      if (studies != null) {
-        for (Attributes studyDataSet : studies) {
-          fillSeries(studyDataSet);
-        }
-      }
+      List<Attributes> studies =
+          IdentifierCache.get(
+              getArchiveID(),
+              IdentifierCache.ACCESSION_NUMBER,
+              () -> find(advancedParams, QueryRetrieveLevel.STUDY, keysStudies),
+              accessionNumber);
+      fillAllSeries(studies);
     } catch (Exception e) {
       LOGGER.error(DICOM_QUERY_ERROR, getArchiveConfigName(), e);
     }
   }
 
-  private void fillSeries(Attributes studyDataSet) {
+  /**
+   * Query the series and the instances of the studies (in parallel when "arc.query.parallelism" is
+   * greater than 1) and add them to the patient list in the order of the studies. The queries of
+   * the instances share the same limit, at most "arc.query.parallelism" C-FIND are running.
+   */
+  private void fillAllSeries(List<Attributes> studies) {
+    List<StudyTree> trees = QueryExecutor.invokeAll(studies, queryLimiter, this::getStudyTree);
+    for (StudyTree tree : trees) {
+      if (tree != null) {
+        addStudyTree(tree);
+      }
+    }
+  }
+
+  private StudyTree getStudyTree(Attributes studyDataSet) {
+    String studyInstanceUID = studyDataSet.getString(Tag.StudyInstanceUID);
+    if (!StudyCache.isEnabled() || !StringUtil.hasText(studyInstanceUID)) {
+      return queryStudyTree(studyDataSet);
+    }
+    StudyTree tree =
+        StudyCache.get(getArchiveID(), studyInstanceUID, uid -> queryStudyTree(studyDataSet));
+    // Keep the study attributes of the current query
+    return tree == null ? null : new StudyTree(studyDataSet, tree.series());
+  }
+
+  private StudyTree queryStudyTree(Attributes studyDataSet) {
     String studyInstanceUID = studyDataSet.getString(Tag.StudyInstanceUID);
     if (StringUtil.hasText(studyInstanceUID)) {
+      if (flatQuery) {
+        List<SeriesTree> series = queryFlatStudy(studyInstanceUID);
+        return series.isEmpty() ? null : new StudyTree(studyDataSet, series);
+      }
 
       DicomParam[] keysSeries = {
         // Matching Keys
@@ -490,75 +852,176 @@ public class DicomQueryConfiguration extends AbstractQueryConfiguration {
         CFind.SeriesDescription
       };
 
-      DicomState state =
-          CFind.process(
-              advancedParams, callingNode, calledNode, 0, QueryRetrieveLevel.SERIES, keysSeries);
-      LOGGER.debug("C-FIND with StudyInstanceUID {}", state.getMessage());
-
-      List<Attributes> series = state.getDicomRSP();
+      List<Attributes> series = find(advancedParams, QueryRetrieveLevel.SERIES, keysSeries);
       if (series != null && !series.isEmpty()) {
-        // Get patient from each study in case IssuerOfPatientID is different
-        Patient patient = getPatient(studyDataSet);
-        Study study = getStudy(patient, studyDataSet);
-        for (Attributes seriesDataset : series) {
-          fillInstance(seriesDataset, study);
-        }
+        return new StudyTree(studyDataSet, queryInstances(studyInstanceUID, series));
       }
     }
+    return null;
   }
 
-  private void fillInstance(Attributes seriesDataset, Study study) {
-    String serieInstanceUID = seriesDataset.getString(Tag.SeriesInstanceUID);
-    if (StringUtil.hasText(serieInstanceUID)) {
-      DicomParam[] keysInstance = {
-        // Matching Keys
-        new DicomParam(Tag.StudyInstanceUID, study.getStudyInstanceUID()),
-        new DicomParam(Tag.SeriesInstanceUID, serieInstanceUID),
-        // Return Keys
-        CFind.SOPInstanceUID,
-        CFind.InstanceNumber
-      };
-      DicomState state =
-          CFind.process(
-              advancedParams, callingNode, calledNode, 0, QueryRetrieveLevel.IMAGE, keysInstance);
-      LOGGER.debug(C_FIND_WITH_SERIESUID, state.getMessage());
-
-      List<Attributes> instances = state.getDicomRSP();
-      if (instances != null && !instances.isEmpty()) {
-        Series s = getSeries(study, seriesDataset, properties);
-
-        for (Attributes instanceDataSet : instances) {
-          Integer frame =
-              ServletUtil.getIntegerFromDicomElement(instanceDataSet, Tag.InstanceNumber, null);
-          String sopUID = instanceDataSet.getString(Tag.SOPInstanceUID);
-          SopInstance sop = s.getSopInstance(sopUID, frame);
-          if (sop == null) {
-            s.addSopInstance(new SopInstance(sopUID, frame));
-          }
+  /**
+   * Get the series and the instances of a study with a single relational C-FIND at IMAGE level
+   * ("arc.query.mode=flat"). The series are in the order of their first instance in the responses.
+   */
+  private List<SeriesTree> queryFlatStudy(String studyInstanceUID) {
+    DicomParam[] keysInstance = {
+      // Matching Keys
+      new DicomParam(Tag.StudyInstanceUID, studyInstanceUID),
+      // Return Keys
+      CFind.SeriesInstanceUID,
+      CFind.Modality,
+      CFind.SeriesNumber,
+      CFind.SeriesDescription,
+      CFind.SOPInstanceUID,
+      CFind.InstanceNumber
+    };
+
+    List<Attributes> instances =
+        find(getRelationalParams(), QueryRetrieveLevel.IMAGE, keysInstance);
+    Map<String, SeriesTree> seriesMap = new LinkedHashMap<>();
+    if (instances != null) {
+      for (Attributes instanceDataSet : instances) {
+        String seriesInstanceUID = instanceDataSet.getString(Tag.SeriesInstanceUID);
+        if (StringUtil.hasText(seriesInstanceUID)) {
+          seriesMap
+              .computeIfAbsent(
+                  seriesInstanceUID, k -> new SeriesTree(instanceDataSet, new ArrayList<>()))
+              .instances()
+              .add(instanceDataSet);
         }
       }
     }
+    return new ArrayList<>(seriesMap.values());
   }
 
-  private Patient getPatient(Attributes patientDataset) {
+  private List<SeriesTree> queryInstances(String studyInstanceUID, List<Attributes> seriesList) {
+    List<Attributes> validSeries = new ArrayList<>(seriesList.size());
+    List<DicomParam[]> keysList = new ArrayList<>(seriesList.size());
+    for (Attributes seriesDataset : seriesList) {
+      String serieInstanceUID = seriesDataset.getString(Tag.SeriesInstanceUID);
+      if (StringUtil.hasText(serieInstanceUID)) {
+        DicomParam[] keysInstance = {
+          // Matching Keys
+          new DicomParam(Tag.StudyInstanceUID, studyInstanceUID),
+          new DicomParam(Tag.SeriesInstanceUID, serieInstanceUID),
+          // Return Keys
+          CFind.SOPInstanceUID,
+          CFind.InstanceNumber
+        };
+        validSeries.add(seriesDataset);
+        keysList.add(keysInstance);
+      }
+    }
+
+    // The queries of each chunk are sent through the same association (pipelined when the
+    // archive accepts asynchronous operations)
+    List<List<Attributes>> results = new ArrayList<>(keysList.size());
+    List<List<List<Attributes>>> chunkResults =
+        QueryExecutor.invokeAll(
+            QueryExecutor.partition(keysList, parallelism),
+            queryLimiter,
+            chunk -> findAll(advancedParams, QueryRetrieveLevel.IMAGE, chunk));
+    chunkResults.forEach(results::addAll);
+
+    List<SeriesTree> seriesTrees = new ArrayList<>(validSeries.size());
+    for (int i = 0; i < validSeries.size(); i++) {
+      List<Attributes> instances = results.get(i);
+      seriesTrees.add(
+          new SeriesTree(validSeries.get(i), instances == null ? List.of() : instances));
+    }
+    return seriesTrees;
+  }
+
+  @Override
+  protected Patient getPatient(Attributes patientDataset) {
     if (patientDataset == null) {
       throw new IllegalArgumentException("patientDataset cannot be null");
     }
-
     fillPatientAttributes(patientDataset);
+    return super.getPatient(patientDataset);
+  }
+
+  private static DicomParam[] getSeriesParentKeys() {
+    return new DicomParam[] {
+      CFind.StudyInstanceUID, CFind.Modality, CFind.SeriesNumber, CFind.SeriesDescription
+    };
+  }
+
+  private static DicomParam[] getStudyParentKeys() {
+    return new DicomParam[] {
+      CFind.PatientID,
+      CFind.IssuerOfPatientID,
+      CFind.PatientName,
+      CFind.PatientBirthDate,
+      CFind.PatientSex,
+      CFind.ReferringPhysicianName,
+      CFind.StudyDescription,
+      CFind.StudyDate,
+      CFind.StudyTime,
+      CFind.AccessionNumber,
+      CFind.StudyID
+    };
+  }
 
-    String id = patientDataset.getString(Tag.PatientID, "Unknown");
-    String ispid = patientDataset.getString(Tag.IssuerOfPatientID);
-    Patient p = getPatient(id, ispid);
-    if (p == null) {
-      p = new Patient(id, ispid);
-      p.setPatientName(patientDataset.getString(Tag.PatientName));
-      // Only set birth date, birth time is often not consistent (00:00)
-      p.setPatientBirthDate(patientDataset.getString(Tag.PatientBirthDate));
-      p.setPatientSex(patientDataset.getString(Tag.PatientSex));
-      addPatient(p);
+  /**
+   * Query in batch the series and the studies missing in the datasets, so that {@link
+   * #fillPatientAttributes} finds them in the parent datasets of this request.
+   *
+   * @param datasets the series or instance datasets
+   */
+  private void resolveParents(List<Attributes> datasets) {
+    try {
+      Set<String> seriesUIDs = new LinkedHashSet<>();
+      for (Attributes dataset : datasets) {
+        String seriesUID = dataset.getString(Tag.SeriesInstanceUID);
+        if (!dataset.contains(Tag.PatientID)
+            && !dataset.contains(Tag.StudyInstanceUID)
+            && StringUtil.hasText(seriesUID)
+            && !parentSeries.containsKey(seriesUID)) {
+          seriesUIDs.add(seriesUID);
+        }
+      }
+      for (String[] uids : getUIDChunks(seriesUIDs.toArray(new String[0]))) {
+        for (Attributes series :
+            findByUIDs(
+                advancedParams,
+                QueryRetrieveLevel.SERIES,
+                Tag.SeriesInstanceUID,
+                uids,
+                getSeriesParentKeys())) {
+          parentSeries.putIfAbsent(series.getString(Tag.SeriesInstanceUID, ""), series);
+        }
+      }
+
+      Set<String> studyUIDs = new LinkedHashSet<>();
+      for (Attributes dataset : datasets) {
+        if (!dataset.contains(Tag.PatientID)) {
+          String studyUID = dataset.getString(Tag.StudyInstanceUID);
+          if (studyUID == null) {
+            Attributes series = parentSeries.get(dataset.getString(Tag.SeriesInstanceUID, ""));
+            studyUID = series == null ? null : series.getString(Tag.StudyInstanceUID);
+          }
+          if (StringUtil.hasText(studyUID) && !parentStudies.containsKey(studyUID)) {
+            studyUIDs.add(studyUID);
+          }
+        }
+      }
+      for (String[] uids : getUIDChunks(studyUIDs.toArray(new String[0]))) {
+        for (Attributes study :
+            findByUIDs(
+                advancedParams,
+                QueryRetrieveLevel.STUDY,
+                Tag.StudyInstanceUID,
+                uids,
+                getStudyParentKeys())) {
+          parentStudies.putIfAbsent(study.getString(Tag.StudyInstanceUID, ""), study);
+        }
+      }
+    } catch (Exception e) {
+      // The missing parents are queried one by one by fillPatientAttributes
+      LOGGER.debug("Cannot get the parents of the datasets", e);
     }
-    return p;
   }
 
   private void fillPatientAttributes(Attributes patientDataset) {
@@ -570,112 +1033,44 @@ public class DicomQueryConfiguration extends AbstractQueryConfiguration {
         if (!StringUtil.hasText(seriesInstanceUID)) {
           throw new IllegalStateException("Cannot get Series Instance UID from C-Find");
         }
-        DicomParam[] keysSeries = {
-          // Matching Keys
-          new DicomParam(Tag.SeriesInstanceUID, seriesInstanceUID),
-          // Return Keys
-          CFind.StudyInstanceUID,
-          CFind.Modality,
-          CFind.SeriesNumber,
-          CFind.SeriesDescription
-        };
-
-        DicomState state =
-            CFind.process(
-                advancedParams, callingNode, calledNode, 0, QueryRetrieveLevel.SERIES, keysSeries);
-        LOGGER.debug(C_FIND_WITH_SERIESUID, state.getMessage());
-
-        List<Attributes> series = state.getDicomRSP();
-        if (series.isEmpty()) {
-          throw new IllegalStateException(
-              "Get empty C-Find reply at Series level for " + seriesInstanceUID);
+        Attributes series = parentSeries.get(seriesInstanceUID);
+        if (series == null) {
+          series =
+              findFirst(
+                  advancedParams,
+                  QueryRetrieveLevel.SERIES,
+                  buildUIDKeys(
+                      Tag.SeriesInstanceUID,
+                      new String[] {seriesInstanceUID},
+                      getSeriesParentKeys()));
+          if (series == null) {
+            throw new IllegalStateException(
+                "Get empty C-Find reply at Series level for " + seriesInstanceUID);
+          }
+          parentSeries.put(seriesInstanceUID, series);
         }
-        patientDataset.addAll(series.get(0));
+        patientDataset.addAll(series);
       }
 
       String studyInstanceUID = patientDataset.getString(Tag.StudyInstanceUID);
       if (!StringUtil.hasText(studyInstanceUID)) {
         throw new IllegalStateException("Cannot get Study Instance UID from C-Find");
       }
-      DicomParam[] keysStudies = {
-        // Matching Keys
-        new DicomParam(Tag.StudyInstanceUID, studyInstanceUID),
-        // Return Keys
-        CFind.PatientID,
-        CFind.IssuerOfPatientID,
-        CFind.PatientName,
-        CFind.PatientBirthDate,
-        CFind.PatientSex,
-        CFind.ReferringPhysicianName,
-        CFind.StudyDescription,
-        CFind.StudyDate,
-        CFind.StudyTime,
-        CFind.AccessionNumber,
-        CFind.StudyID
-      };
-
-      DicomState state =
-          CFind.process(
-              advancedParams, callingNode, calledNode, 0, QueryRetrieveLevel.STUDY, keysStudies);
-      LOGGER.debug("C-FIND with StudyInstanceUID {}", state.getMessage());
-
-      List<Attributes> studies = state.getDicomRSP();
-      if (studies.isEmpty()) {
-        throw new IllegalStateException(
-            "Get empty C-Find reply at Study level for " + studyInstanceUID);
-      }
-      patientDataset.addAll(studies.get(0));
-    }
-  }
-
-  private static Study getStudy(Patient patient, final Attributes studyDataset) {
-    if (studyDataset == null) {
-      throw new IllegalArgumentException("studyDataset cannot be null");
-    }
-    String uid = studyDataset.getString(Tag.StudyInstanceUID);
-    Study s = patient.getStudy(uid);
-    if (s == null) {
-      s = new Study(uid);
-      s.setStudyDescription(studyDataset.getString(Tag.StudyDescription));
-      s.setStudyDate(studyDataset.getString(Tag.StudyDate));
-      s.setStudyTime(studyDataset.getString(Tag.StudyTime));
-      s.setAccessionNumber(studyDataset.getString(Tag.AccessionNumber));
-      s.setStudyID(studyDataset.getString(Tag.StudyID));
-      s.setReferringPhysicianName(studyDataset.getString(Tag.ReferringPhysicianName));
-      patient.addStudy(s);
-    }
-    return s;
-  }
-
-  private static Series getSeries(
-      Study study, final Attributes seriesDataset, Properties properties) {
-    if (seriesDataset == null) {
-      throw new IllegalArgumentException("seriesDataset cannot be null");
-    }
-    String uid = seriesDataset.getString(Tag.SeriesInstanceUID);
-    Series s = study.getSeries(uid);
-    if (s == null) {
-      s = new Series(uid);
-      s.setModality(seriesDataset.getString(Tag.Modality));
-      s.setSeriesNumber(seriesDataset.getString(Tag.SeriesNumber));
-      s.setSeriesDescription(seriesDataset.getString(Tag.SeriesDescription));
-      String wadotTsuid = properties.getProperty("wado.request.tsuid");
-      if (StringUtil.hasText(wadotTsuid)) {
-        String[] val = wadotTsuid.split(":");
-        if (val.length > 0) {
-          s.setWadoTransferSyntaxUID(val[0]);
-        }
-        if (val.length > 1) {
-          s.setWadoCompression(val[1]);
+      Attributes study = parentStudies.get(studyInstanceUID);
+      if (study == null) {
+        study =
+            findFirst(
+                advancedParams,
+                QueryRetrieveLevel.STUDY,
+                buildUIDKeys(
+                    Tag.StudyInstanceUID, new String[] {studyInstanceUID}, getStudyParentKeys()));
+        if (study == null) {
+          throw new IllegalStateException(
+              "Get empty C-Find reply at Study level for " + studyInstanceUID);
         }
+        parentStudies.put(studyInstanceUID, study);
       }
-      study.addSeries(s);
+      patientDataset.addAll(study);
     }
-    return s;
-  }
-
-  public static GregorianCalendar parseDateTime(CharSequence s) {
-    String val = s.toString().trim();
-    return datatypeFactory.newXMLGregorianCalendar(val).toGregorianCalendar();
   }
 }
@@ -0,0 +1,342 @@
+/*
+ * Copyright (c) 2026 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.query.dicom;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+import java.util.function.Predicate;
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.data.UID;
+import org.dcm4che3.data.VR;
+import org.dcm4che3.net.Association;
+import org.dcm4che3.net.DimseRSP;
+import org.dcm4che3.net.DimseRSPHandler;
+import org.dcm4che3.net.QueryOption;
+import org.dcm4che3.net.Status;
+import org.dcm4che3.net.pdu.AAssociateAC;
+import org.dcm4che3.net.pdu.ExtendedNegotiation;
+import org.dcm4che3.net.service.QueryRetrieveLevel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.weasis.dicom.op.CFind;
+import org.weasis.dicom.param.DicomParam;
+import org.weasis.query.Deadline;
+import org.weasis.query.QueryTimeoutException;
+
+/**
+ * An open association of a {@link DicomAssociationPool}. It is used by only one thread at a time,
+ * between {@link DicomAssociationPool#borrow()} and {@link DicomAssociationPool#release}.
+ */
+public class PooledAssociation {
+  private static final Logger LOGGER = LoggerFactory.getLogger(PooledAssociation.class);
+
+  static final String FIND_CUID = UID.StudyRootQueryRetrieveInformationModelFind;
+
+  // Interval in milliseconds between two checks of the cancellation while waiting for a response
+  static final long CANCEL_CHECK_INTERVAL = 20;
+
+  private final Association association;
+  private final long creationTime;
+  private volatile long lastUsedTime;
+
+  PooledAssociation(Association association) {
+    this.association = association;
+    this.creationTime = System.currentTimeMillis();
+    this.lastUsedTime = creationTime;
+  }
+
+  public Association getAssociation() {
+    return association;
+  }
+
+  public long getCreationTime() {
+    return creationTime;
+  }
+
+  public long getLastUsedTime() {
+    return lastUsedTime;
+  }
+
+  void touch() {
+    lastUsedTime = System.currentTimeMillis();
+  }
+
+  public boolean isReady() {
+    return association.isReadyForDataTransfer();
+  }
+
+  /**
+   * Check that the remote node still answers on this association.
+   *
+   * @return true if the C-ECHO has been successful
+   */
+  boolean echo() {
+    try {
+      DimseRSP rsp = association.cecho();
+      rsp.next();
+      return rsp.getCommand().getInt(Tag.Status, -1) == Status.Success;
+    } catch (IOException e) {
+      LOGGER.debug("C-ECHO failed on a pooled association", e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    return false;
+  }
+
+  /**
+   * Send a C-FIND request and wait for all the responses.
+   *
+   * @param level the query/retrieve level
+   * @param priority the DIMSE priority
+   * @param deadline the time limit of the responses
+   * @param keys the matching and return keys
+   * @return the matching datasets
+   */
+  public List<Attributes> find(
+      QueryRetrieveLevel level, int priority, Deadline deadline, DicomParam... keys) {
+    return getResult(findAsync(level, priority, keys), deadline);
+  }
+
+  /**
+   * Send a C-FIND request without waiting for the responses. When the asynchronous operations
+   * window is full, it blocks until one of the outstanding requests is completed.
+   *
+   * @param level the query/retrieve level
+   * @param priority the DIMSE priority
+   * @param keys the matching and return keys
+   * @return the future matching datasets
+   */
+  public CompletableFuture<List<Attributes>> findAsync(
+      QueryRetrieveLevel level, int priority, DicomParam... keys) {
+    List<Attributes> matches = new ArrayList<>();
+    return findAsync(level, priority, matches::add, keys).result.thenApply(v -> matches);
+  }
+
+  /**
+   * Send a C-FIND request and give each matching dataset to the consumer as soon as it is received.
+   * When the consumer returns false, a C-CANCEL is sent and the next datasets are ignored.
+   *
+   * @param level the query/retrieve level
+   * @param priority the DIMSE priority
+   * @param consumer the consumer of the matching datasets, called by the association thread
+   * @param deadline the time limit of the responses
+   * @param keys the matching and return keys
+   */
+  public void find(
+      QueryRetrieveLevel level,
+      int priority,
+      Predicate<Attributes> consumer,
+      Deadline deadline,
+      DicomParam... keys) {
+    getResult(findAsync(level, priority, consumer, keys).result, deadline);
+  }
+
+  /**
+   * Send several C-FIND requests and wait for all the responses. When the archive has accepted an
+   * asynchronous operations window, the requests are sent without waiting for the responses of the
+   * previous ones (up to the size of the window). When the condition becomes true, the next
+   * requests are not sent and a C-CANCEL is sent for the requests in progress.
+   *
+   * @param level the query/retrieve level
+   * @param priority the DIMSE priority
+   * @param keysList the matching and return keys of each request
+   * @param deadline the time limit of the responses
+   * @param canceled the condition stopping the requests
+   * @return the matching datasets of each request, in the same order as keysList
+   * @throws CancellationException when the requests have been stopped by the condition
+   */
+  public List<List<Attributes>> findAll(
+      QueryRetrieveLevel level,
+      int priority,
+      List<DicomParam[]> keysList,
+      Deadline deadline,
+      BooleanSupplier canceled) {
+    boolean synchronous = getMaxOpsInvoked() == 1;
+    List<List<Attributes>> results = new ArrayList<>(keysList.size());
+    List<FindHandler> handlers = new ArrayList<>(keysList.size());
+    try {
+      for (DicomParam[] keys : keysList) {
+        if (canceled.getAsBoolean()) {
+          throw new CancellationException("C-FIND requests canceled");
+        }
+        List<Attributes> matches = new ArrayList<>();
+        FindHandler handler =
+            findAsync(level, priority, ds -> !canceled.getAsBoolean() && matches.add(ds), keys);
+        handlers.add(handler);
+        results.add(matches);
+        if (synchronous) {
+          await(handler.result, deadline, canceled);
+        }
+      }
+      for (FindHandler handler : handlers) {
+        await(handler.result, deadline, canceled);
+      }
+      return results;
+    } catch (CancellationException e) {
+      handlers.forEach(h -> h.stop(association));
+      throw e;
+    }
+  }
+
+  private FindHandler findAsync(
+      QueryRetrieveLevel level, int priority, Predicate<Attributes> consumer, DicomParam... keys) {
+    FindHandler handler = new FindHandler(association.nextMessageID(), consumer);
+    try {
+      association.cfind(FIND_CUID, priority, buildKeys(level, keys), null, handler);
+      return handler;
+    } catch (IOException e) {
+      throw new IllegalStateException("Cannot send C-FIND request", e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("C-FIND interrupted", e);
+    } finally {
+      touch();
+    }
+  }
+
+  /**
+   * @return true when the archive has accepted the relational queries in the extended negotiation
+   */
+  public boolean isRelationalQueryAccepted() {
+    AAssociateAC ac = association.getAAssociateAC();
+    ExtendedNegotiation extNeg = ac == null ? null : ac.getExtNegotiationFor(FIND_CUID);
+    return extNeg != null && QueryOption.toOptions(extNeg).contains(QueryOption.RELATIONAL);
+  }
+
+  /**
+   * @return the maximum number of outstanding operations accepted by the archive (1 means
+   *     synchronous and 0 unlimited)
+   */
+  public int getMaxOpsInvoked() {
+    return association.getMaxOpsInvoked();
+  }
+
+  static <T> T getResult(CompletableFuture<T> future, Deadline deadline) {
+    try {
+      if (deadline.isLimited()) {
+        return future.get(deadline.getRemainingTime(), TimeUnit.MILLISECONDS);
+      }
+      return future.get();
+    } catch (TimeoutException e) {
+      throw new QueryTimeoutException("No C-FIND response before the time limit of the request");
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("C-FIND interrupted", e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException(e.getCause().getMessage(), e.getCause());
+    }
+  }
+
+  /**
+   * Wait for the completion of a C-FIND, checking the condition every {@link
+   * #CANCEL_CHECK_INTERVAL}.
+   *
+   * @throws CancellationException when the condition has become true before the completion
+   */
+  static void await(CompletableFuture<?> future, Deadline deadline, BooleanSupplier canceled) {
+    while (true) {
+      try {
+        future.get(deadline.getTimeout(CANCEL_CHECK_INTERVAL), TimeUnit.MILLISECONDS);
+        return;
+      } catch (TimeoutException e) {
+        if (deadline.isExpired()) {
+          throw new QueryTimeoutException(
+              "No C-FIND response before the time limit of the request");
+        }
+        if (canceled.getAsBoolean()) {
+          throw new CancellationException("C-FIND requests canceled");
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("C-FIND interrupted", e);
+      } catch (ExecutionException e) {
+        throw new IllegalStateException(e.getCause().getMessage(), e.getCause());
+      }
+    }
+  }
+
+  static Attributes buildKeys(QueryRetrieveLevel level, DicomParam... keys) {
+    Attributes attrs = new Attributes();
+    if (level != null) {
+      attrs.setString(Tag.QueryRetrieveLevel, VR.CS, level.name());
+    }
+    for (DicomParam p : keys) {
+      CFind.addAttributes(attrs, p);
+    }
+    return attrs;
+  }
+
+  void close() {
+    try {
+      if (association.isReadyForDataTransfer()) {
+        association.release();
+      } else {
+        association.abort();
+      }
+    } catch (IOException e) {
+      LOGGER.debug("Cannot release association", e);
+      association.abort();
+    }
+  }
+
+  static class FindHandler extends DimseRSPHandler {
+    private final Predicate<Attributes> consumer;
+    private final AtomicBoolean canceled = new AtomicBoolean();
+    final CompletableFuture<Void> result = new CompletableFuture<>();
+
+    FindHandler(int msgId, Predicate<Attributes> consumer) {
+      super(msgId);
+      this.consumer = consumer;
+    }
+
+    @Override
+    public void onDimseRSP(Association as, Attributes cmd, Attributes data) {
+      super.onDimseRSP(as, cmd, data);
+      int status = cmd.getInt(Tag.Status, -1);
+      if (Status.isPending(status)) {
+        if (data != null && !canceled.get() && !consumer.test(data)) {
+          stop(as);
+        }
+      } else if (status == Status.Success || status == Status.Cancel) {
+        result.complete(null);
+      } else {
+        result.completeExceptionally(
+            new CFindException(status, cmd.getString(Tag.ErrorComment, "")));
+      }
+    }
+
+    /** Send a C-CANCEL when the C-FIND is in progress, the next datasets are ignored. */
+    void stop(Association as) {
+      if (!result.isDone() && canceled.compareAndSet(false, true)) {
+        try {
+          cancel(as);
+        } catch (IOException e) {
+          LOGGER.debug("Cannot send C-CANCEL", e);
+        }
+      }
+    }
+
+    @Override
+    public void onClose(Association as) {
+      super.onClose(as);
+      result.completeExceptionally(
+          new IllegalStateException("Association closed before the end of the C-FIND"));
+    }
+  }
+}
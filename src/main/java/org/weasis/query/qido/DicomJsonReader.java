@@ -0,0 +1,279 @@
+/*
+ * Copyright (c) 2026 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.query.qido;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Sequence;
+import org.dcm4che3.data.VR;
+
+/**
+ * Streaming reader of a QIDO-RS response in the DICOM JSON model (PS3.18 Annex F). The datasets of
+ * the top level array are converted one at a time, so the whole response is never kept in memory.
+ * The bulk data (InlineBinary and BulkDataURI) are ignored.
+ */
+final class DicomJsonReader {
+
+  private final Reader reader;
+  private int next = -2;
+
+  DicomJsonReader(InputStream in) {
+    this.reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Read the datasets of the response and give them to the consumer.
+   *
+   * @param consumer the consumer of the datasets, the reading stops when it returns false
+   * @return the number of datasets read
+   * @throws IOException if the response cannot be read or is not a JSON array of datasets
+   */
+  int readDatasets(Predicate<Attributes> consumer) throws IOException {
+    if (skipWhitespace() == -1) {
+      return 0;
+    }
+    expect('[');
+    if (skipWhitespace() == ']') {
+      read();
+      return 0;
+    }
+    int count = 0;
+    do {
+      if (!(readValue() instanceof Map<?, ?> dataset)) {
+        throw new IOException("A DICOM JSON dataset is expected");
+      }
+      count++;
+      if (!consumer.test(toAttributes(dataset))) {
+        break;
+      }
+    } while (readSeparator(']'));
+    return count;
+  }
+
+  static Attributes toAttributes(Map<?, ?> dataset) {
+    Attributes attrs = new Attributes(dataset.size());
+    for (Map.Entry<?, ?> entry : dataset.entrySet()) {
+      if (entry.getValue() instanceof Map<?, ?> element) {
+        int tag = (int) Long.parseLong(entry.getKey().toString(), 16);
+        Object vrName = element.get("vr");
+        VR vr = vrName == null ? VR.UN : VR.valueOf(vrName.toString());
+        if (element.get("Value") instanceof List<?> values && !values.isEmpty()) {
+          if (vr == VR.SQ) {
+            Sequence seq = attrs.newSequence(tag, values.size());
+            for (Object item : values) {
+              if (item instanceof Map<?, ?> itemDataset) {
+                seq.add(toAttributes(itemDataset));
+              }
+            }
+          } else {
+            String[] strings = new String[values.size()];
+            for (int i = 0; i < strings.length; i++) {
+              strings[i] = toString(values.get(i));
+            }
+            attrs.setString(tag, vr, strings);
+          }
+        } else {
+          attrs.setNull(tag, vr);
+        }
+      }
+    }
+    return attrs;
+  }
+
+  private static String toString(Object value) {
+    if (value == null) {
+      return "";
+    }
+    if (value instanceof Map<?, ?> personName) {
+      // Person Name components: Alphabetic=Ideographic=Phonetic
+      StringBuilder buf = new StringBuilder();
+      String[] groups = {"Alphabetic", "Ideographic", "Phonetic"};
+      for (int i = 0; i < groups.length; i++) {
+        if (i > 0) {
+          buf.append('=');
+        }
+        Object group = personName.get(groups[i]);
+        if (group != null) {
+          buf.append(group);
+        }
+      }
+      int end = buf.length();
+      while (end > 0 && buf.charAt(end - 1) == '=') {
+        end--;
+      }
+      return buf.substring(0, end);
+    }
+    return value.toString();
+  }
+
+  private Object readValue() throws IOException {
+    int c = skipWhitespace();
+    return switch (c) {
+      case '{' -> readObject();
+      case '[' -> readArray();
+      case '"' -> readString();
+      case 't' -> readLiteral("true", Boolean.TRUE);
+      case 'f' -> readLiteral("false", Boolean.FALSE);
+      case 'n' -> readLiteral("null", null);
+      case -1 -> throw new IOException("Unexpected end of the JSON response");
+      default -> readNumber();
+    };
+  }
+
+  private Map<String, Object> readObject() throws IOException {
+    expect('{');
+    Map<String, Object> map = new LinkedHashMap<>();
+    if (skipWhitespace() == '}') {
+      read();
+      return map;
+    }
+    do {
+      if (skipWhitespace() != '"') {
+        throw new IOException("A JSON member name is expected");
+      }
+      String name = readString();
+      expect(':');
+      map.put(name, readValue());
+    } while (readSeparator('}'));
+    return map;
+  }
+
+  private List<Object> readArray() throws IOException {
+    expect('[');
+    List<Object> list = new ArrayList<>();
+    if (skipWhitespace() == ']') {
+      read();
+      return list;
+    }
+    do {
+      list.add(readValue());
+    } while (readSeparator(']'));
+    return list;
+  }
+
+  private String readString() throws IOException {
+    expect('"');
+    StringBuilder buf = new StringBuilder();
+    while (true) {
+      int c = read();
+      switch (c) {
+        case '"':
+          return buf.toString();
+        case '\\':
+          buf.append(readEscape());
+          break;
+        case -1:
+          throw new IOException("Unterminated JSON string");
+        default:
+          buf.append((char) c);
+      }
+    }
+  }
+
+  private char readEscape() throws IOException {
+    int c = read();
+    return switch (c) {
+      case '"', '\\', '/' -> (char) c;
+      case 'b' -> '\b';
+      case 'f' -> '\f';
+      case 'n' -> '\n';
+      case 'r' -> '\r';
+      case 't' -> '\t';
+      case 'u' -> {
+        int code = 0;
+        for (int i = 0; i < 4; i++) {
+          int digit = Character.digit(read(), 16);
+          if (digit < 0) {
+            throw new IOException("Invalid JSON unicode escape");
+          }
+          code = (code << 4) + digit;
+        }
+        yield (char) code;
+      }
+      default -> throw new IOException("Invalid JSON escape character");
+    };
+  }
+
+  private String readNumber() throws IOException {
+    // Keep the text of the number as DS and IS values are converted to strings
+    StringBuilder buf = new StringBuilder();
+    int c;
+    while ((c = peek()) != -1 && "+-0123456789.eE".indexOf(c) >= 0) {
+      buf.append((char) read());
+    }
+    if (buf.isEmpty()) {
+      throw new IOException("Unexpected character in the JSON response: " + (char) c);
+    }
+    return buf.toString();
+  }
+
+  private Object readLiteral(String literal, Object value) throws IOException {
+    for (int i = 0; i < literal.length(); i++) {
+      if (read() != literal.charAt(i)) {
+        throw new IOException("Invalid JSON literal, " + literal + " is expected");
+      }
+    }
+    return value;
+  }
+
+  /**
+   * @return true when the next value is separated by a comma, false at the end of the object or the
+   *     array
+   */
+  private boolean readSeparator(char end) throws IOException {
+    int c = skipWhitespace();
+    read();
+    if (c == ',') {
+      return true;
+    }
+    if (c == end) {
+      return false;
+    }
+    throw new IOException("',' or '" + end + "' is expected in the JSON response");
+  }
+
+  private void expect(char expected) throws IOException {
+    if (skipWhitespace() != expected) {
+      throw new IOException("'" + expected + "' is expected in the JSON response");
+    }
+    read();
+  }
+
+  private int skipWhitespace() throws IOException {
+    int c;
+    while ((c = peek()) == ' ' || c == '\n' || c == '\r' || c == '\t') {
+      read();
+    }
+    return c;
+  }
+
+  private int peek() throws IOException {
+    if (next == -2) {
+      next = reader.read();
+    }
+    return next;
+  }
+
+  private int read() throws IOException {
+    int c = peek();
+    next = -2;
+    return c;
+  }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2026 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.query.qido;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import org.dcm4che3.data.Attributes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.weasis.core.util.StringUtil;
+import org.weasis.query.Deadline;
+import org.weasis.query.QueryTimeoutException;
+import org.weasis.servlet.ServletUtil;
+
+/**
+ * HTTP client of a QIDO-RS service, shared by all the requests to the same URL. The client keeps
+ * its connections open and multiplexes the requests on HTTP/2 connections when the server supports
+ * it.
+ */
+public class QidoClient {
+  private static final Logger LOGGER = LoggerFactory.getLogger(QidoClient.class);
+
+  public static final String DICOM_JSON = "application/dicom+json";
+
+  private static final Map<String, QidoClient> clients = new ConcurrentHashMap<>();
+
+  private final String baseUrl;
+  private final HttpClient httpClient;
+  private final long readTimeout;
+  private final int pageSize;
+
+  QidoClient(String baseUrl, Properties properties) {
+    this.baseUrl = baseUrl;
+    this.readTimeout = ServletUtil.getLongProperty(properties, "arc.qido.read.timeout", 60000L);
+    this.pageSize = ServletUtil.getIntProperty(properties, "arc.qido.page.size", 500);
+    long connectTimeout =
+        ServletUtil.getLongProperty(properties, "arc.qido.connect.timeout", 10000L);
+    HttpClient.Builder builder =
+        HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .followRedirects(HttpClient.Redirect.NORMAL);
+    if (connectTimeout > 0) {
+      builder.connectTimeout(Duration.ofMillis(connectTimeout));
+    }
+    this.httpClient = builder.build();
+  }
+
+  /**
+   * @param properties the archive properties
+   * @return the client of the URL "arc.qido.url"
+   */
+  public static QidoClient getClient(Properties properties) {
+    String url = properties.getProperty("arc.qido.url");
+    if (!StringUtil.hasText(url)) {
+      throw new IllegalArgumentException("arc.qido.url cannot be empty!");
+    }
+    String base = url.trim();
+    if (base.endsWith("/")) {
+      base = base.substring(0, base.length() - 1);
+    }
+    return clients.computeIfAbsent(base, k -> new QidoClient(k, properties));
+  }
+
+  public String getBaseUrl() {
+    return baseUrl;
+  }
+
+  /**
+   * Send a QIDO-RS request and give each matching dataset to the consumer as soon as it is parsed.
+   * When "arc.qido.page.size" is greater than 0, the results are requested page by page with the
+   * limit and offset parameters, and the next pages are not requested when the consumer returns
+   * false.
+   *
+   * @param path the path of the resource (e.g. "/studies")
+   * @param query the query parameters, the values are encoded by this method
+   * @param headers the HTTP headers of the request
+   * @param deadline the time limit of the request
+   * @param consumer the consumer of the matching datasets
+   * @return the number of matching datasets
+   */
+  public int search(
+      String path,
+      Map<String, String> query,
+      Map<String, String> headers,
+      Deadline deadline,
+      Predicate<Attributes> consumer) {
+    boolean[] stopped = {false};
+    Predicate<Attributes> pageConsumer =
+        ds -> {
+          if (consumer.test(ds)) {
+            return true;
+          }
+          stopped[0] = true;
+          return false;
+        };
+
+    int total = 0;
+    int offset = 0;
+    while (true) {
+      deadline.check();
+      StringBuilder url = new StringBuilder(baseUrl).append(path);
+      char separator = '?';
+      for (Map.Entry<String, String> param : query.entrySet()) {
+        url.append(separator).append(param.getKey()).append('=');
+        url.append(URLEncoder.encode(param.getValue(), StandardCharsets.UTF_8));
+        separator = '&';
+      }
+      if (pageSize > 0) {
+        url.append(separator).append("limit=").append(pageSize);
+        url.append("&offset=").append(offset);
+      }
+
+      int count = searchPage(URI.create(url.toString()), headers, deadline, pageConsumer);
+      total += count;
+      if (stopped[0] || pageSize <= 0 || count < pageSize) {
+        return total;
+      }
+      offset += count;
+    }
+  }
+
+  private int searchPage(
+      URI uri, Map<String, String> headers, Deadline deadline, Predicate<Attributes> consumer) {
+    HttpRequest.Builder builder = HttpRequest.newBuilder(uri).header("Accept", DICOM_JSON).GET();
+    long timeout = deadline.getTimeout(readTimeout);
+    if (timeout != Long.MAX_VALUE) {
+      builder.timeout(Duration.ofMillis(Math.max(1, timeout)));
+    }
+    for (Map.Entry<String, String> header : headers.entrySet()) {
+      try {
+        builder.header(header.getKey(), header.getValue());
+      } catch (IllegalArgumentException e) {
+        LOGGER.debug("Cannot set the HTTP header {}", header.getKey(), e);
+      }
+    }
+
+    long start = System.currentTimeMillis();
+    try {
+      HttpResponse<InputStream> response =
+          httpClient.send(builder.build(), HttpResponse.BodyHandlers.ofInputStream());
+      // Closing the stream before the end aborts the response when the consumer stops reading
+      try (InputStream in = response.body()) {
+        int status = response.statusCode();
+        if (status == 204) {
+          return 0;
+        }
+        if (status != 200) {
+          throw new IllegalStateException(
+              "QIDO-RS request failed with HTTP status " + status + ": " + uri);
+        }
+        int count = new DicomJsonReader(in).readDatasets(consumer);
+        LOGGER.debug(
+            "QIDO-RS {}: {} matches in {} ms", uri, count, System.currentTimeMillis() - start);
+        return count;
+      }
+    } catch (HttpTimeoutException e) {
+      if (deadline.isExpired()) {
+        throw new QueryTimeoutException("No QIDO-RS response before the time limit: " + uri);
+      }
+      throw new IllegalStateException("QIDO-RS request timeout: " + uri, e);
+    } catch (IOException e) {
+      throw new IllegalStateException("QIDO-RS request failed: " + uri, e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("QIDO-RS request interrupted", e);
+    }
+  }
+}
@@ -0,0 +1,383 @@
+/*
+ * Copyright (c) 2026 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.query.qido;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.function.Predicate;
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Tag;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.weasis.core.util.StringUtil;
+import org.weasis.dicom.mf.Patient;
+import org.weasis.dicom.mf.Study;
+import org.weasis.query.AbstractQueryConfiguration;
+import org.weasis.query.CommonQueryParams;
+import org.weasis.query.IdentifierCache;
+import org.weasis.query.QueryExecutor;
+import org.weasis.query.StudyCache;
+import org.weasis.query.StudyFilter;
+import org.weasis.query.StudySelector;
+import org.weasis.query.StudyTree;
+import org.weasis.query.StudyTree.SeriesTree;
+import org.weasis.servlet.ServletUtil;
+
+/**
+ * Query of an archive with the QIDO-RS service of DICOMweb ("arc.qido.url"). Each level is queried
+ * with a single HTTP request: the series of a study are obtained with one request and all their
+ * instances with another one.
+ */
+public class QidoQueryConfiguration extends AbstractQueryConfiguration {
+  private static final Logger LOGGER = LoggerFactory.getLogger(QidoQueryConfiguration.class);
+
+  private static final String QIDO_QUERY_ERROR = "QIDO-RS query Error of {}";
+
+  // Attributes required by the manifest, the other ones are not requested
+  private static final String STUDY_FIELDS =
+      "PatientID,IssuerOfPatientID,PatientName,PatientBirthDate,PatientSex,ReferringPhysicianName,"
+          + "StudyDescription,StudyDate,StudyTime,AccessionNumber,StudyInstanceUID,StudyID,"
+          + "ModalitiesInStudy";
+  private static final String SERIES_FIELDS =
+      "SeriesInstanceUID,Modality,SeriesNumber,SeriesDescription";
+  private static final String INSTANCE_FIELDS = "SeriesInstanceUID,SOPInstanceUID,InstanceNumber";
+
+  private final QidoClient client;
+  private final Map<String, String> httpHeaders;
+  private final int uidListSize;
+  private final boolean dateMatching;
+  private final boolean modalityMatching;
+
+  public QidoQueryConfiguration(Properties properties) {
+    super(properties);
+    this.client = QidoClient.getClient(properties);
+    this.httpHeaders = buildHttpHeaders();
+    this.uidListSize = ServletUtil.getIntProperty(properties, "arc.query.uid.list.size", 50);
+    this.dateMatching = !"false".equalsIgnoreCase(properties.getProperty("arc.query.match.date"));
+    this.modalityMatching =
+        !"false".equalsIgnoreCase(properties.getProperty("arc.query.match.modality"));
+  }
+
+  /** Same authentication and HTTP tags as the WADO requests. */
+  private Map<String, String> buildHttpHeaders() {
+    Map<String, String> headers = new LinkedHashMap<>();
+    String webLogin = properties.getProperty("arc.web.login");
+    if (StringUtil.hasText(webLogin)) {
+      headers.put(
+          "Authorization",
+          "Basic " + Base64.getEncoder().encodeToString(webLogin.trim().getBytes()));
+    }
+    String httpTags = properties.getProperty("wado.httpTags");
+    if (StringUtil.hasText(httpTags)) {
+      for (String tag : httpTags.split(",")) {
+        String[] val = tag.split(":");
+        if (val.length == 2) {
+          headers.put(val[0].trim(), val[1].trim());
+        }
+      }
+    }
+    return headers;
+  }
+
+  public QidoClient getClient() {
+    return client;
+  }
+
+  private static Map<String, String> buildQuery(String... params) {
+    Map<String, String> query = new LinkedHashMap<>();
+    for (int i = 0; i < params.length - 1; i += 2) {
+      if (StringUtil.hasText(params[i + 1])) {
+        query.put(params[i], params[i + 1]);
+      }
+    }
+    return query;
+  }
+
+  private void search(String path, Map<String, String> query, Predicate<Attributes> consumer) {
+    circuitBreaker.call(() -> client.search(path, query, httpHeaders, deadline, consumer));
+  }
+
+  private List<Attributes> search(String path, Map<String, String> query) {
+    List<Attributes> results = new ArrayList<>();
+    search(path, query, results::add);
+    return results;
+  }
+
+  /**
+   * Split the UIDs in comma-separated lists of "arc.query.uid.list.size" values, each list being
+   * matched by a single request.
+   */
+  private List<String> getUIDLists(String... uids) {
+    List<String> list = Arrays.stream(uids).filter(StringUtil::hasText).distinct().toList();
+    List<String> uidLists = new ArrayList<>();
+    int size = Math.max(1, uidListSize);
+    for (int i = 0; i < list.size(); i += size) {
+      uidLists.add(String.join(",", list.subList(i, Math.min(i + size, list.size()))));
+    }
+    return uidLists;
+  }
+
+  @Override
+  public void buildFromPatientID(CommonQueryParams params, String... patientIDs) {
+    StudyFilter filter = StudyFilter.of(params);
+    // Filters applied by the archive, the studies are filtered again by StudyFilter
+    String studyDate = dateMatching ? getStudyDateRange(params) : null;
+    String modality = null;
+    // mostRecentResults counts the most recent studies of any modality, then filters the modality
+    if (modalityMatching
+        && filter.getLimit() <= 0
+        && StringUtil.hasText(params.getModalitiesInStudy())) {
+      String[] values =
+          Arrays.stream(params.getModalitiesInStudy().split(","))
+              .map(String::trim)
+              .filter(StringUtil::hasText)
+              .toArray(String[]::new);
+      // Multiple values are filtered only by StudyFilter
+      if (values.length == 1) {
+        modality = values[0];
+      }
+    }
+
+    for (String patientID : patientIDs) {
+      if (!StringUtil.hasText(patientID)) {
+        continue;
+      }
+
+      int beginIndex = patientID.indexOf("^^^");
+      int offset = 3;
+      // IssuerOfPatientID filter ( syntax like in HL7 with extension^^^root)
+      if (beginIndex == -1) {
+        // if patientID has been encrypted
+        beginIndex = patientID.indexOf("%5E%5E%5E");
+        offset = 9;
+      }
+
+      Map<String, String> query =
+          buildQuery(
+              "PatientID",
+              beginIndex < 0 ? patientID : patientID.substring(0, beginIndex),
+              "IssuerOfPatientID",
+              beginIndex < 0 ? null : patientID.substring(beginIndex + offset),
+              "PatientName",
+              params.getPatientName(),
+              "PatientBirthDate",
+              params.getPatientBirthDate(),
+              "StudyDate",
+              studyDate,
+              "ModalitiesInStudy",
+              modality,
+              "includefield",
+              STUDY_FIELDS);
+
+      try {
+        List<Attributes> studies =
+            IdentifierCache.get(
+                getArchiveID(),
+                IdentifierCache.PATIENT_ID,
+                () -> findStudies(filter, query),
+                patientID,
+                params.getPatientName(),
+                params.getPatientBirthDate(),
+                params.getLowerDateTime(),
+                params.getUpperDateTime(),
+                params.getMostRecentResults(),
+                params.getModalitiesInStudy());
+        if (!studies.isEmpty()) {
+          fillAllSeries(filter.apply(studies));
+        }
+      } catch (Exception e) {
+        LOGGER.error(QIDO_QUERY_ERROR, getArchiveConfigName(), e);
+      }
+    }
+  }
+
+  /**
+   * Query the studies and keep only those in the date range and the most recent ones while the
+   * responses are received.
+   */
+  private List<Attributes> findStudies(StudyFilter filter, Map<String, String> query) {
+    StudySelector selector = new StudySelector(filter);
+    search("/studies", query, selector);
+    return selector.getStudies();
+  }
+
+  @Override
+  public void buildFromStudyInstanceUID(CommonQueryParams params, String... studyInstanceUIDs) {
+    for (String uids : getUIDLists(studyInstanceUIDs)) {
+      try {
+        fillAllSeries(
+            search("/studies", buildQuery("StudyInstanceUID", uids, "includefield", STUDY_FIELDS)));
+      } catch (Exception e) {
+        LOGGER.error(QIDO_QUERY_ERROR, getArchiveConfigName(), e);
+      }
+    }
+  }
+
+  @Override
+  public void buildFromStudyAccessionNumber(CommonQueryParams params, String... accessionNumbers) {
+    for (String accessionNumber : accessionNumbers) {
+      if (!StringUtil.hasText(accessionNumber)) {
+        continue;
+      }
+      try {
+        List<Attributes> studies =
+            IdentifierCache.get(
+                getArchiveID(),
+                IdentifierCache.ACCESSION_NUMBER,
+                () ->
+                    search(
+                        "/studies",
+                        buildQuery(
+                            "AccessionNumber", accessionNumber, "includefield", STUDY_FIELDS)),
+                accessionNumber);
+        fillAllSeries(studies);
+      } catch (Exception e) {
+        LOGGER.error(QIDO_QUERY_ERROR, getArchiveConfigName(), e);
+      }
+    }
+  }
+
+  @Override
+  public void buildFromSeriesInstanceUID(CommonQueryParams params, String... seriesInstanceUIDs) {
+    for (String uids : getUIDLists(seriesInstanceUIDs)) {
+      try {
+        // The study attributes are returned with the series when the study is not in the path
+        List<Attributes> series =
+            search(
+                "/series",
+                buildQuery(
+                    "SeriesInstanceUID", uids, "includefield", STUDY_FIELDS + "," + SERIES_FIELDS));
+        Map<String, List<Attributes>> seriesByStudy = new LinkedHashMap<>();
+        for (Attributes dataset : series) {
+          String studyInstanceUID = dataset.getString(Tag.StudyInstanceUID);
+          if (StringUtil.hasText(studyInstanceUID)) {
+            seriesByStudy.computeIfAbsent(studyInstanceUID, k -> new ArrayList<>()).add(dataset);
+          }
+        }
+        for (Map.Entry<String, List<Attributes>> entry : seriesByStudy.entrySet()) {
+          List<Attributes> studySeries = entry.getValue();
+          String studySeriesUIDs =
+              String.join(
+                  ",", studySeries.stream().map(s -> s.getString(Tag.SeriesInstanceUID)).toList());
+          List<SeriesTree> seriesTrees =
+              queryInstances(entry.getKey(), studySeries, studySeriesUIDs);
+          addResults(
+              () -> {
+                Patient patient = getPatient(studySeries.get(0));
+                Study study = getStudy(patient, studySeries.get(0));
+                addSeriesTrees(study, seriesTrees);
+              });
+        }
+      } catch (Exception e) {
+        LOGGER.error(QIDO_QUERY_ERROR, getArchiveConfigName(), e);
+      }
+    }
+  }
+
+  @Override
+  public void buildFromSopInstanceUID(CommonQueryParams params, String... sopInstanceUIDs) {
+    for (String uids : getUIDLists(sopInstanceUIDs)) {
+      try {
+        List<Attributes> instances =
+            search(
+                "/instances",
+                buildQuery(
+                    "SOPInstanceUID",
+                    uids,
+                    "includefield",
+                    STUDY_FIELDS + "," + SERIES_FIELDS + ",SOPInstanceUID,InstanceNumber"));
+        addResults(
+            () -> {
+              for (Attributes dataset : instances) {
+                Patient patient = getPatient(dataset);
+                Study study = getStudy(patient, dataset);
+                addInstances(getSeries(study, dataset, properties), List.of(dataset));
+              }
+            });
+      } catch (Exception e) {
+        LOGGER.error(QIDO_QUERY_ERROR, getArchiveConfigName(), e);
+      }
+    }
+  }
+
+  /**
+   * Query the series and the instances of the studies (in parallel when "arc.query.parallelism" is
+   * greater than 1) and add them to the patient list in the order of the studies.
+   */
+  private void fillAllSeries(List<Attributes> studies) {
+    List<StudyTree> trees = QueryExecutor.invokeAll(studies, queryLimiter, this::getStudyTree);
+    for (StudyTree tree : trees) {
+      if (tree != null) {
+        addStudyTree(tree);
+      }
+    }
+  }
+
+  private StudyTree getStudyTree(Attributes studyDataSet) {
+    String studyInstanceUID = studyDataSet.getString(Tag.StudyInstanceUID);
+    if (!StudyCache.isEnabled() || !StringUtil.hasText(studyInstanceUID)) {
+      return queryStudyTree(studyDataSet);
+    }
+    StudyTree tree =
+        StudyCache.get(getArchiveID(), studyInstanceUID, uid -> queryStudyTree(studyDataSet));
+    // Keep the study attributes of the current query
+    return tree == null ? null : new StudyTree(studyDataSet, tree.series());
+  }
+
+  private StudyTree queryStudyTree(Attributes studyDataSet) {
+    String studyInstanceUID = studyDataSet.getString(Tag.StudyInstanceUID);
+    if (StringUtil.hasText(studyInstanceUID)) {
+      List<Attributes> series =
+          search(
+              "/studies/" + studyInstanceUID + "/series",
+              buildQuery("includefield", SERIES_FIELDS));
+      if (!series.isEmpty()) {
+        return new StudyTree(studyDataSet, queryInstances(studyInstanceUID, series, null));
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Query with a single request the instances of the series of a study.
+   *
+   * @param studyInstanceUID the Study Instance UID
+   * @param seriesList the series of the study
+   * @param seriesInstanceUIDs the comma-separated UIDs of the series, or null for all the series of
+   *     the study
+   * @return the series with their instances, in the order of seriesList
+   */
+  private List<SeriesTree> queryInstances(
+      String studyInstanceUID, List<Attributes> seriesList, String seriesInstanceUIDs) {
+    Map<String, SeriesTree> seriesMap = new LinkedHashMap<>();
+    for (Attributes seriesDataset : seriesList) {
+      String seriesInstanceUID = seriesDataset.getString(Tag.SeriesInstanceUID);
+      if (StringUtil.hasText(seriesInstanceUID)) {
+        seriesMap.putIfAbsent(seriesInstanceUID, new SeriesTree(seriesDataset, new ArrayList<>()));
+      }
+    }
+    search(
+        "/studies/" + studyInstanceUID + "/instances",
+        buildQuery("SeriesInstanceUID", seriesInstanceUIDs, "includefield", INSTANCE_FIELDS),
+        ds -> {
+          SeriesTree tree = seriesMap.get(ds.getString(Tag.SeriesInstanceUID));
+          if (tree != null) {
+            tree.instances().add(ds);
+          }
+          return true;
+        });
+    return new ArrayList<>(seriesMap.values());
+  }
+}
@@ -25,6 +25,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.weasis.dicom.mf.thread.ManifestBuilder;
 import org.weasis.dicom.mf.thread.ManifestManagerThread;
+import org.weasis.query.IdentifierCache;
+import org.weasis.query.QueryExecutor;
+import org.weasis.query.StudyCache;
+import org.weasis.query.db.DbConnectionPool;
+import org.weasis.query.db.DbReplicaRouter;
+import org.weasis.query.dicom.CapabilityProbe;
+import org.weasis.query.dicom.DicomAssociationPool;
 
 /**
  * @author Nicolas Roduit
@@ -95,6 +102,9 @@ public class ManifestManager implements ServletContextListener {
         LOGGER.error("Error on initialization of ManifestManager", e);
       }
       sc.setAttribute("componentProperties", properties);
+      StudyCache.configure(properties);
+      IdentifierCache.configure(properties);
+      CapabilityProbe.probeAll(properties);
 
       manifestManagerThread.setCleanFrequency(
           ServletUtil.getLongProperty(
@@ -121,6 +131,10 @@ public class ManifestManager implements ServletContextListener {
     LOGGER.info("Stop the manifest manager servlet");
 
     manifestManagerThread.interrupt();
+    DicomAssociationPool.closeAll();
+    DbReplicaRouter.closeAll();
+    DbConnectionPool.closeAll();
+    QueryExecutor.shutdown();
   }
 
   private static String getBaseConfigURL(URL config) {
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2026 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.servlet;
+
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Serial;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.weasis.query.CircuitBreaker;
+import org.weasis.query.HedgePolicy;
+import org.weasis.query.IdentifierCache;
+import org.weasis.query.SingleFlight;
+import org.weasis.query.StudyCache;
+import org.weasis.query.db.DbConnectionPool;
+import org.weasis.query.db.DbReplicaRouter;
+import org.weasis.query.dicom.CapabilityProbe;
+
+/**
+ * Servlet returning the statistics of the query caches, the state of the archive circuit breakers,
+ * the hedged and coalesced queries, the probed archive capabilities, the DB connection pools and
+ * the DB read replicas as plain text (one "name=value" per line). The parameter "purgeCache"
+ * removes the studies and the identifiers from the caches, optionally only those of the parameters
+ * "archive" (archive ID) and "studyUID".
+ */
+@WebServlet(name = "QueryStatus", urlPatterns = "/status")
+public class QueryStatus extends HttpServlet {
+
+  @Serial private static final long serialVersionUID = -3183417290635741925L;
+  private static final Logger LOGGER = LoggerFactory.getLogger(QueryStatus.class);
+
+  @Override
+  public void doPost(HttpServletRequest request, HttpServletResponse response)
+      throws ServletException, IOException {
+    doGet(request, response);
+  }
+
+  @Override
+  public void doGet(HttpServletRequest request, HttpServletResponse response)
+      throws ServletException, IOException {
+    ConnectorProperties connectorProperties =
+        (ConnectorProperties) this.getServletContext().getAttribute("componentProperties");
+    // Check if the source of this request is allowed
+    if (!ServletUtil.isRequestAllowed(request, connectorProperties, LOGGER)) {
+      response.sendError(HttpServletResponse.SC_FORBIDDEN);
+      return;
+    }
+
+    response.setHeader("Cache-Control", "no-cache, no-store, must-revalidate");
+    response.setContentType("text/plain");
+    response.setCharacterEncoding("UTF-8");
+
+    Map<String, Object> values = new LinkedHashMap<>();
+    if (request.getParameter("purgeCache") != null) {
+      String archive = request.getParameter("archive");
+      String studyUID = request.getParameter("studyUID");
+      int count = StudyCache.purge(archive, studyUID);
+      LOGGER.info(
+          "Purge {} studies from the cache (archive={}, studyUID={})",
+          count,
+          ServletUtil.hasText(archive) ? archive.replaceAll("[\n|\r|\t]", "_") : "all",
+          ServletUtil.hasText(studyUID) ? studyUID.replaceAll("[\n|\r|\t]", "_") : "all");
+      values.put("cache.study.purged", count);
+      if (studyUID == null) {
+        values.put("cache.identifier.purged", IdentifierCache.purge(archive));
+      }
+    }
+    values.putAll(StudyCache.getStatistics());
+    values.putAll(IdentifierCache.getStatistics());
+    values.putAll(CircuitBreaker.getStatistics());
+    values.putAll(HedgePolicy.getStatistics());
+    values.putAll(SingleFlight.getStatistics());
+    values.putAll(CapabilityProbe.getStatistics());
+    values.putAll(DbConnectionPool.getStatistics());
+    values.putAll(DbReplicaRouter.getStatistics());
+
+    PrintWriter writer = response.getWriter();
+    for (Map.Entry<String, Object> entry : values.entrySet()) {
+      writer.append(entry.getKey()).append('=').append(String.valueOf(entry.getValue()));
+      writer.append('\n');
+    }
+  }
+}
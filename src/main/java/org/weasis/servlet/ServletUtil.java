@@ -23,11 +23,18 @@ import jakarta.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
 import java.util.Properties;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import org.dcm4che3.data.Attributes;
@@ -39,6 +46,8 @@ import org.weasis.dicom.mf.ViewerMessage;
 import org.weasis.dicom.mf.thread.ManifestBuilder;
 import org.weasis.query.AbstractQueryConfiguration;
 import org.weasis.query.CommonQueryParams;
+import org.weasis.query.Deadline;
+import org.weasis.query.QueryExecutor;
 import org.weasis.util.EncryptUtils;
 
 /**
@@ -46,6 +55,8 @@ import org.weasis.util.EncryptUtils;
  */
 public class ServletUtil {
   private static final Logger LOGGER = LoggerFactory.getLogger(ServletUtil.class);
+  // Time given to the queries stopped by the request deadline to return their partial results
+  private static final long DEADLINE_GRACE_PERIOD = 1000L;
 
   private ServletUtil() {}
 
@@ -213,14 +224,10 @@ public class ServletUtil {
         String anbID = params.getReqAccessionNumber();
         if (hasText(anbID)) {
           String val = ServletUtil.decrypt(anbID, key, ACCESSION_NUMBER);
-          for (AbstractQueryConfiguration query : params.getArchiveList()) {
-            query.buildFromStudyAccessionNumber(params, val);
-          }
+          queryArchives(params, query -> query.buildFromStudyAccessionNumber(params, val));
         } else if (hasText(stuID)) {
           String val = ServletUtil.decrypt(stuID, key, STUDY_UID);
-          for (AbstractQueryConfiguration query : params.getArchiveList()) {
-            query.buildFromStudyInstanceUID(params, val);
-          }
+          queryArchives(params, query -> query.buildFromStudyInstanceUID(params, val));
         } else {
           LOGGER.error(
               "No ID found for STUDY request type: {}", requestType.replaceAll("[\n|\r|\t]", "_"));
@@ -238,9 +245,7 @@ public class ServletUtil {
         String patID = params.getReqPatientID();
         if (hasText(patID)) {
           String val = ServletUtil.decrypt(patID, key, PATIENT_ID);
-          for (AbstractQueryConfiguration query : params.getArchiveList()) {
-            query.buildFromPatientID(params, val);
-          }
+          queryArchives(params, query -> query.buildFromPatientID(params, val));
         } else {
           LOGGER.error(
               "No ID found for PATIENT request type: {}",
@@ -274,37 +279,27 @@ public class ServletUtil {
         if (hasText(obj) && isRequestIDAllowed(OBJECT_UID, properties)) {
           if (!doBuildQuery) return true;
           String[] val = decrypt(obj, key, OBJECT_UID);
-          for (AbstractQueryConfiguration query : params.getArchiveList()) {
-            query.buildFromSopInstanceUID(params, val);
-          }
+          queryArchives(params, query -> query.buildFromSopInstanceUID(params, val));
         }
         if (hasText(ser) && isRequestIDAllowed(SERIES_UID, properties)) {
           if (!doBuildQuery) return true;
           String[] val = decrypt(ser, key, SERIES_UID);
-          for (AbstractQueryConfiguration query : params.getArchiveList()) {
-            query.buildFromSeriesInstanceUID(params, val);
-          }
+          queryArchives(params, query -> query.buildFromSeriesInstanceUID(params, val));
         }
         if (hasText(anb) && isRequestIDAllowed(ACCESSION_NUMBER, properties)) {
           if (!doBuildQuery) return true;
           String[] val = decrypt(anb, key, ACCESSION_NUMBER);
-          for (AbstractQueryConfiguration query : params.getArchiveList()) {
-            query.buildFromStudyAccessionNumber(params, val);
-          }
+          queryArchives(params, query -> query.buildFromStudyAccessionNumber(params, val));
         }
         if (hasText(stu) && isRequestIDAllowed(STUDY_UID, properties)) {
           if (!doBuildQuery) return true;
           String[] val = decrypt(stu, key, STUDY_UID);
-          for (AbstractQueryConfiguration query : params.getArchiveList()) {
-            query.buildFromStudyInstanceUID(params, val);
-          }
+          queryArchives(params, query -> query.buildFromStudyInstanceUID(params, val));
         }
         if (hasText(pat) && isRequestIDAllowed(PATIENT_ID, properties)) {
           if (!doBuildQuery) return true;
           String[] val = decrypt(pat, key, PATIENT_ID);
-          for (AbstractQueryConfiguration query : params.getArchiveList()) {
-            query.buildFromPatientID(params, val);
-          }
+          queryArchives(params, query -> query.buildFromPatientID(params, val));
         }
       }
     } catch (Exception e) {
@@ -319,6 +314,150 @@ public class ServletUtil {
     return false;
   }
 
+  /**
+   * Run the query on all the archives of the request concurrently. Each archive must answer within
+   * its "arc.query.timeout" (in milliseconds, no limit by default), otherwise the results already
+   * received are kept with a warning message and the results received later are ignored. When the
+   * time limit of the request ("request.timeout") is reached, the queries stop and the results
+   * already received are kept with a warning message. An archive whose circuit breaker is open is
+   * skipped. The results are collected in the order of the archive list.
+   *
+   * @param params the common query parameters
+   * @param query the query applied to each archive
+   */
+  static void queryArchives(CommonQueryParams params, Consumer<AbstractQueryConfiguration> query) {
+    List<AbstractQueryConfiguration> archives = new ArrayList<>();
+    for (AbstractQueryConfiguration archive : params.getArchiveList()) {
+      if (archive.getCircuitBreaker().tryAcquire()) {
+        archives.add(archive);
+      } else {
+        LOGGER.warn("Skip the archive {}, its circuit is open", archive.getArchiveConfigName());
+        params.discardArchive(
+            archive,
+            new ViewerMessage(
+                "Archive not available",
+                "The archive "
+                    + archive.getArchiveID()
+                    + " is temporarily skipped after repeated errors or slow responses",
+                ViewerMessage.eLevel.WARN));
+      }
+    }
+    if (archives.isEmpty()) {
+      return;
+    }
+    Deadline deadline = params.getDeadline();
+    if (archives.size() == 1 && getArchiveTimeout(archives.get(0)) <= 0) {
+      query.accept(archives.get(0));
+      checkIncomplete(archives.get(0), deadline);
+      return;
+    }
+
+    long start = System.currentTimeMillis();
+    List<Future<Long>> futures = new ArrayList<>(archives.size());
+    for (AbstractQueryConfiguration archive : archives) {
+      futures.add(
+          QueryExecutor.getExecutor()
+              .submit(
+                  () -> {
+                    if (!archive.beginQuery()) {
+                      return 0L;
+                    }
+                    try {
+                      long startArchive = System.currentTimeMillis();
+                      query.accept(archive);
+                      return System.currentTimeMillis() - startArchive;
+                    } finally {
+                      archive.endQuery();
+                    }
+                  }));
+    }
+
+    long sequentialTime = 0;
+    RuntimeException error = null;
+    for (int i = 0; i < archives.size(); i++) {
+      AbstractQueryConfiguration archive = archives.get(i);
+      Future<Long> future = futures.get(i);
+      long timeout = getArchiveTimeout(archive);
+      if (timeout > 0) {
+        timeout = Math.max(1, start + timeout - System.currentTimeMillis());
+      }
+      timeout = deadline.getTimeout(timeout);
+      if (deadline.isLimited() && timeout != Long.MAX_VALUE) {
+        timeout += DEADLINE_GRACE_PERIOD;
+      }
+      try {
+        if (timeout != Long.MAX_VALUE) {
+          sequentialTime += future.get(timeout, TimeUnit.MILLISECONDS);
+        } else {
+          sequentialTime += future.get();
+        }
+        checkIncomplete(archive, deadline);
+      } catch (TimeoutException e) {
+        // Cancel before discarding: a query which has not started yet will not start
+        future.cancel(true);
+        long elapsed = System.currentTimeMillis() - start;
+        sequentialTime += elapsed;
+        // The "arc.query.timeout" of the archive has expired, not the time limit of the request.
+        // The
+        // interrupted query does not record it.
+        if (!deadline.isExpired()) {
+          archive.getCircuitBreaker().record(elapsed, true);
+        }
+        LOGGER.warn("The archive {} has not answered in time", archive.getArchiveConfigName());
+        params.discardArchive(
+            archive,
+            new ViewerMessage(
+                "Incomplete results",
+                "The archive "
+                    + archive.getArchiveID()
+                    + " has not answered in time, its results may be incomplete",
+                ViewerMessage.eLevel.WARN));
+      } catch (ExecutionException e) {
+        LOGGER.error("Query error of {}", archive.getArchiveConfigName(), e.getCause());
+        if (error == null) {
+          error =
+              e.getCause() instanceof RuntimeException runtimeException
+                  ? runtimeException
+                  : new IllegalStateException(e.getCause());
+        }
+      } catch (InterruptedException e) {
+        futures.forEach(f -> f.cancel(true));
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while querying the archives", e);
+      }
+    }
+
+    long duration = System.currentTimeMillis() - start;
+    LOGGER.info(
+        "Query of {} archives in {} ms (sequential time {} ms, saved {} ms)",
+        archives.size(),
+        duration,
+        sequentialTime,
+        Math.max(0, sequentialTime - duration));
+    if (error != null) {
+      throw error;
+    }
+  }
+
+  private static void checkIncomplete(AbstractQueryConfiguration archive, Deadline deadline) {
+    if (deadline.isExpired() && archive.getViewerMessage() == null) {
+      LOGGER.warn(
+          "The time limit of the request has been reached, the results of {} may be incomplete",
+          archive.getArchiveConfigName());
+      archive.setViewerMessage(
+          new ViewerMessage(
+              "Incomplete results",
+              "The archive "
+                  + archive.getArchiveID()
+                  + " has not returned all the results before the time limit",
+              ViewerMessage.eLevel.WARN));
+    }
+  }
+
+  private static long getArchiveTimeout(AbstractQueryConfiguration archive) {
+    return getLongProperty(archive.getProperties(), "arc.query.timeout", 0L);
+  }
+
   static boolean hasText(String... str) {
     return Objects.nonNull(str) && Arrays.stream(str).anyMatch(StringUtil::hasText);
   }
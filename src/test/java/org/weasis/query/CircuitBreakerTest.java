@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2026 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.query;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Properties;
+import org.junit.jupiter.api.Test;
+import org.weasis.query.CircuitBreaker.State;
+
+public class CircuitBreakerTest {
+
+  private static CircuitBreaker newBreaker(long openDuration) {
+    Properties p = new Properties();
+    p.setProperty("arc.circuit.failure.rate", "50");
+    p.setProperty("arc.circuit.window", "4");
+    p.setProperty("arc.circuit.min.calls", "4");
+    p.setProperty("arc.circuit.slow.call", "1000");
+    p.setProperty("arc.circuit.open.duration", String.valueOf(openDuration));
+    return new CircuitBreaker("test", p);
+  }
+
+  @Test
+  public void testOpensOnFailureRate() {
+    CircuitBreaker breaker = newBreaker(60000);
+    breaker.record(10, false);
+    breaker.record(10, true);
+    breaker.record(10, false);
+    assertEquals(State.CLOSED, breaker.getState());
+    // Slow query counted as a failure: 2 of 4
+    breaker.record(1500, false);
+    assertEquals(State.OPEN, breaker.getState());
+    assertFalse(breaker.tryAcquire());
+    assertEquals(1L, breaker.getCounters().get("circuit.test.rejected"));
+  }
+
+  @Test
+  public void testHalfOpen() throws InterruptedException {
+    CircuitBreaker breaker = newBreaker(50);
+    for (int i = 0; i < 4; i++) {
+      breaker.record(10, true);
+    }
+    assertEquals(State.OPEN, breaker.getState());
+    Thread.sleep(60);
+
+    // A single request tests the archive
+    assertTrue(breaker.tryAcquire());
+    assertEquals(State.HALF_OPEN, breaker.getState());
+    assertFalse(breaker.tryAcquire());
+    breaker.record(10, true);
+    assertEquals(State.OPEN, breaker.getState());
+
+    Thread.sleep(60);
+    assertTrue(breaker.tryAcquire());
+    assertEquals("ok", breaker.call(() -> "ok"));
+    assertEquals(State.CLOSED, breaker.getState());
+    assertTrue(breaker.tryAcquire());
+  }
+
+  @Test
+  public void testRequestTimeout() {
+    CircuitBreaker breaker = newBreaker(60000);
+    for (int i = 0; i < 4; i++) {
+      assertThrows(
+          QueryTimeoutException.class,
+          () ->
+              breaker.call(
+                  () -> {
+                    throw new QueryTimeoutException("time limit of the request");
+                  }));
+    }
+    // The end of the time limit of the request is not a failure of the archive
+    assertEquals(State.CLOSED, breaker.getState());
+    assertEquals(0L, breaker.getCounters().get("circuit.test.calls"));
+
+    assertThrows(
+        IllegalStateException.class,
+        () ->
+            breaker.call(
+                () -> {
+                  throw new IllegalStateException("archive error");
+                }));
+    assertEquals(1L, breaker.getCounters().get("circuit.test.failures"));
+  }
+
+  @Test
+  public void testAnswered() {
+    CircuitBreaker breaker = newBreaker(60000);
+    for (int i = 0; i < 4; i++) {
+      assertThrows(
+          IllegalStateException.class,
+          () ->
+              breaker.call(
+                  () -> {
+                    throw new IllegalStateException("request rejected");
+                  },
+                  e -> true));
+    }
+    // The archive has answered, the request is rejected but the archive is available
+    assertEquals(State.CLOSED, breaker.getState());
+    assertEquals(4L, breaker.getCounters().get("circuit.test.calls"));
+    assertEquals(0L, breaker.getCounters().get("circuit.test.failures"));
+  }
+
+  @Test
+  public void testInterrupted() {
+    CircuitBreaker breaker = newBreaker(60000);
+    try {
+      assertThrows(
+          IllegalStateException.class,
+          () ->
+              breaker.call(
+                  () -> {
+                    // Query canceled by the caller
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("C-FIND interrupted");
+                  }));
+    } finally {
+      Thread.interrupted();
+    }
+    assertEquals(0L, breaker.getCounters().get("circuit.test.calls"));
+  }
+
+  @Test
+  public void testDisabled() {
+    CircuitBreaker breaker = CircuitBreaker.getInstance("test", new Properties());
+    assertSame(CircuitBreaker.DISABLED, breaker);
+    assertThrows(
+        IllegalStateException.class,
+        () ->
+            breaker.call(
+                () -> {
+                  throw new IllegalStateException();
+                }));
+    assertTrue(breaker.tryAcquire());
+  }
+}
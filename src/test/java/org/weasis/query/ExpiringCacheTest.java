@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2026 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.query;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+public class ExpiringCacheTest {
+
+  @Test
+  public void testGetLoadsOnce() {
+    ExpiringCache<String, String> cache = new ExpiringCache<>("test", 60_000, 0, 10, v -> 1);
+    AtomicInteger loads = new AtomicInteger();
+    assertEquals("A", cache.get("a", k -> loads.incrementAndGet() > 0 ? "A" : null));
+    assertEquals("A", cache.get("a", k -> loads.incrementAndGet() > 0 ? "B" : null));
+    assertEquals(1, loads.get());
+    assertEquals(1L, cache.getStatistics().get("test.hits"));
+    assertEquals(1L, cache.getStatistics().get("test.misses"));
+  }
+
+  @Test
+  public void testDisabled() {
+    ExpiringCache<String, String> cache = new ExpiringCache<>("test", 0, 0, 10, v -> 1);
+    assertFalse(cache.isEnabled());
+    cache.put("a", "A");
+    assertNull(cache.getIfPresent("a", null));
+    assertEquals("B", cache.get("a", k -> "B"));
+  }
+
+  @Test
+  public void testEvictionByWeight() {
+    ExpiringCache<String, String> cache =
+        new ExpiringCache<>("test", 60_000, 0, 10, String::length);
+    cache.put("a", "aaaa");
+    cache.put("b", "bbbb");
+    assertEquals("aaaa", cache.getIfPresent("a", null));
+    // "b" is the least recently used entry
+    cache.put("c", "cccc");
+    assertNull(cache.getIfPresent("b", null));
+    assertEquals("aaaa", cache.getIfPresent("a", null));
+    assertEquals(1L, cache.getStatistics().get("test.evictions"));
+    // Larger than the cache
+    cache.put("d", "ddddddddddddddd");
+    assertNull(cache.getIfPresent("d", null));
+  }
+
+  @Test
+  public void testStaleValueIsRefreshed() throws InterruptedException {
+    ExpiringCache<String, String> cache = new ExpiringCache<>("test", 1, 60_000, 10, v -> 1);
+    cache.put("a", "A");
+    Thread.sleep(5);
+    assertEquals("A", cache.getIfPresent("a", k -> "B"));
+    long end = System.currentTimeMillis() + 5000;
+    while (System.currentTimeMillis() < end) {
+      Thread.sleep(5);
+      if ("B".equals(cache.getIfPresent("a", null))) {
+        return;
+      }
+    }
+    fail("The stale value has not been refreshed");
+  }
+
+  @Test
+  public void testFailedRefresh() throws InterruptedException {
+    ExpiringCache<String, String> cache = new ExpiringCache<>("test", 1, 60_000, 10, v -> 1);
+    cache.put("a", "A");
+    cache.put("b", "B");
+    Thread.sleep(5);
+    AtomicInteger refreshes = new AtomicInteger();
+    assertEquals(
+        "A",
+        cache.getIfPresent(
+            "a",
+            k -> {
+              refreshes.incrementAndGet();
+              throw new IllegalStateException("DB not available");
+            }));
+    // Not in the archive anymore
+    assertEquals("B", cache.getIfPresent("b", k -> null));
+    long end = System.currentTimeMillis() + 5000;
+    while (System.currentTimeMillis() < end && (cache.size() > 1 || refreshes.get() == 0)) {
+      Thread.sleep(5);
+    }
+    assertNull(cache.getIfPresent("b", null));
+    // The stale value is kept when the refresh has failed
+    assertEquals(1, refreshes.get());
+    assertEquals("A", cache.getIfPresent("a", null));
+  }
+
+  @Test
+  public void testInvalidateIf() {
+    ExpiringCache<String, String> cache = new ExpiringCache<>("test", 60_000, 0, 10, v -> 1);
+    cache.put("a1", "A");
+    cache.put("a2", "A");
+    cache.put("b1", "B");
+    assertEquals(2, cache.invalidateIf(k -> k.startsWith("a")));
+    assertEquals(1, cache.size());
+  }
+}
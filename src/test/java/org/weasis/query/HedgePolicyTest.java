@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2026 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.query;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+import org.junit.jupiter.api.Test;
+
+public class HedgePolicyTest {
+
+  private static HedgePolicy newPolicy() {
+    Properties p = new Properties();
+    p.setProperty("arc.hedge.percentile", "90");
+    p.setProperty("arc.hedge.window", "10");
+    p.setProperty("arc.hedge.min.delay", "5");
+    HedgePolicy policy = new HedgePolicy("test", p);
+    for (int i = 1; i <= HedgePolicy.MIN_SAMPLES; i++) {
+      policy.record(i * 10L);
+    }
+    return policy;
+  }
+
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @Test
+  public void testDelay() {
+    HedgePolicy policy = new HedgePolicy("test", new Properties());
+    assertFalse(policy.isEnabled());
+    assertEquals(-1, policy.getDelay());
+    // 90th percentile of 10, 20, ..., 100
+    assertEquals(90, newPolicy().getDelay());
+  }
+
+  @Test
+  public void testHedgeWins() {
+    HedgePolicy policy = newPolicy();
+    AtomicBoolean canceled = new AtomicBoolean();
+    List<Function<BooleanSupplier, String>> attempts =
+        List.of(
+            c -> {
+              // Slow node, stops when the other node has answered
+              for (int i = 0; i < 100 && !c.getAsBoolean(); i++) {
+                sleep(20);
+              }
+              canceled.set(c.getAsBoolean());
+              return "slow";
+            },
+            c -> "fast");
+
+    assertEquals("fast", policy.call(attempts, Deadline.after(5000)));
+    sleep(100);
+    assertTrue(canceled.get());
+    assertEquals(1L, policy.getCounters().get("hedge.test.hedged"));
+    assertEquals(1L, policy.getCounters().get("hedge.test.hedge.wins"));
+  }
+
+  @Test
+  public void testFailover() {
+    HedgePolicy policy = newPolicy();
+    List<Function<BooleanSupplier, String>> attempts =
+        List.of(
+            c -> {
+              throw new IllegalStateException("Node down");
+            },
+            c -> "second");
+    assertEquals("second", policy.call(attempts, Deadline.NONE));
+
+    List<Function<BooleanSupplier, String>> failures =
+        List.of(
+            c -> {
+              throw new IllegalStateException("Node down");
+            },
+            c -> {
+              throw new IllegalStateException("Node down");
+            });
+    assertThrows(IllegalStateException.class, () -> policy.call(failures, Deadline.NONE));
+    assertThrows(
+        IllegalStateException.class, () -> HedgePolicy.DISABLED.call(failures, Deadline.NONE));
+  }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2026 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.query;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.Properties;
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.data.VR;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+public class IdentifierCacheTest {
+
+  @AfterEach
+  public void tearDown() {
+    IdentifierCache.configure(new Properties());
+  }
+
+  @Test
+  public void testCopyOfCachedStudies() {
+    Properties properties = new Properties();
+    properties.setProperty("cache.identifier.ttl", "60000");
+    IdentifierCache.configure(properties);
+
+    Attributes study = new Attributes();
+    study.setString(Tag.StudyInstanceUID, VR.UI, "1.2.3");
+    List<Attributes> first =
+        IdentifierCache.get("arc", IdentifierCache.PATIENT_ID, () -> List.of(study), "PAT1");
+    first.get(0).setString(Tag.StudyInstanceUID, VR.UI, "9.9.9");
+
+    List<Attributes> second =
+        IdentifierCache.get("arc", IdentifierCache.PATIENT_ID, () -> fail("Not cached"), "PAT1");
+    assertEquals("1.2.3", second.get(0).getString(Tag.StudyInstanceUID));
+    second.get(0).setString(Tag.StudyInstanceUID, VR.UI, "8.8.8");
+
+    List<Attributes> third =
+        IdentifierCache.get("arc", IdentifierCache.PATIENT_ID, () -> fail("Not cached"), "PAT1");
+    assertEquals("1.2.3", third.get(0).getString(Tag.StudyInstanceUID));
+  }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2026 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.query;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+public class QueryExecutorTest {
+
+  @Test
+  public void testInvokeAllKeepsOrder() {
+    List<Integer> items = IntStream.range(0, 50).boxed().collect(Collectors.toList());
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger maxRunning = new AtomicInteger();
+
+    List<Integer> results =
+        QueryExecutor.invokeAll(
+            items,
+            4,
+            i -> {
+              maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+              try {
+                Thread.sleep(50 - i);
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+              running.decrementAndGet();
+              return i * 2;
+            });
+
+    assertEquals(items.size(), results.size());
+    for (int i = 0; i < items.size(); i++) {
+      assertEquals(i * 2, results.get(i));
+    }
+    assertTrue(maxRunning.get() <= 4, "More tasks than the parallelism: " + maxRunning.get());
+  }
+
+  @Test
+  public void testInvokeAllPropagatesException() {
+    List<Integer> items = List.of(1, 2, 3);
+    IllegalStateException e =
+        assertThrows(
+            IllegalStateException.class,
+            () ->
+                QueryExecutor.invokeAll(
+                    items,
+                    2,
+                    i -> {
+                      if (i == 2) {
+                        throw new IllegalStateException("failed " + i);
+                      }
+                      return i;
+                    }));
+    assertEquals("failed 2", e.getMessage());
+  }
+
+  @Test
+  public void testNestedInvokeAllShareTheLimit() {
+    List<Integer> items = IntStream.range(0, 6).boxed().collect(Collectors.toList());
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger maxRunning = new AtomicInteger();
+    QueryExecutor.Limiter limiter = new QueryExecutor.Limiter(3);
+
+    List<List<Integer>> results =
+        QueryExecutor.invokeAll(
+            items,
+            limiter,
+            i ->
+                QueryExecutor.invokeAll(
+                    items,
+                    limiter,
+                    j -> {
+                      maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                      try {
+                        Thread.sleep(5);
+                      } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                      }
+                      running.decrementAndGet();
+                      return i * 10 + j;
+                    }));
+
+    assertEquals(items.size(), results.size());
+    assertEquals(List.of(50, 51, 52, 53, 54, 55), results.get(5));
+    assertTrue(maxRunning.get() <= 3, "More tasks than the parallelism: " + maxRunning.get());
+  }
+
+  @Test
+  public void testPermitsReleasedAfterFailure() throws InterruptedException {
+    List<Integer> items = IntStream.range(0, 6).boxed().collect(Collectors.toList());
+    QueryExecutor.Limiter limiter = new QueryExecutor.Limiter(3);
+    for (int n = 0; n < 20; n++) {
+      // The tasks 0 and 1 are sent to other threads, the task 2 fails in the calling thread
+      assertThrows(
+          IllegalStateException.class,
+          () ->
+              QueryExecutor.invokeAll(
+                  items,
+                  limiter,
+                  i -> {
+                    if (i == 2) {
+                      throw new IllegalStateException("query error");
+                    }
+                    return i;
+                  }));
+      long end = System.currentTimeMillis() + 5000;
+      while (limiter.availablePermits() < 2 && System.currentTimeMillis() < end) {
+        Thread.sleep(1);
+      }
+      assertEquals(2, limiter.availablePermits());
+    }
+  }
+
+  @Test
+  public void testPartition() {
+    List<Integer> items = IntStream.range(0, 10).boxed().collect(Collectors.toList());
+    List<List<Integer>> chunks = QueryExecutor.partition(items, 3);
+    assertEquals(3, chunks.size());
+    assertEquals(List.of(0, 1, 2, 3), chunks.get(0));
+    assertEquals(List.of(8, 9), chunks.get(2));
+    assertEquals(1, QueryExecutor.partition(items, 1).size());
+    assertTrue(QueryExecutor.partition(List.of(), 3).isEmpty());
+  }
+}
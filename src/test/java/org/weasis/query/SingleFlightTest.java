@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2026 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.query;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+public class SingleFlightTest {
+
+  @Test
+  public void testSharedExecution() throws Exception {
+    SingleFlight<String, List<String>> flights = new SingleFlight<>("test", ArrayList::new);
+    AtomicInteger executions = new AtomicInteger();
+    CountDownLatch release = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<List<String>>> results = new ArrayList<>();
+      for (int i = 0; i < 4; i++) {
+        results.add(
+            executor.submit(
+                () ->
+                    flights.execute(
+                        "key",
+                        Deadline.after(5000),
+                        () -> {
+                          executions.incrementAndGet();
+                          try {
+                            release.await(5, TimeUnit.SECONDS);
+                          } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                          }
+                          return new ArrayList<>(List.of("study"));
+                        })));
+      }
+      // Wait for the other requests joining the first one
+      long timeout = System.currentTimeMillis() + 5000;
+      while ((Long) flights.getCounters().get("singleflight.test.shared") < 3
+          && System.currentTimeMillis() < timeout) {
+        Thread.sleep(5);
+      }
+      release.countDown();
+
+      List<List<String>> lists = new ArrayList<>();
+      for (Future<List<String>> result : results) {
+        lists.add(result.get(5, TimeUnit.SECONDS));
+      }
+      assertEquals(1, executions.get());
+      assertEquals(List.of("study"), lists.get(0));
+      // Each request has its own copy
+      assertNotSame(lists.get(0), lists.get(1));
+      assertEquals(0, flights.getCounters().get("singleflight.test.in.flight"));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testFailure() {
+    SingleFlight<String, String> flights = new SingleFlight<>("failure", s -> s);
+    assertThrows(
+        IllegalStateException.class,
+        () ->
+            flights.execute(
+                "key",
+                Deadline.NONE,
+                () -> {
+                  throw new IllegalStateException("Archive not available");
+                }));
+    // The failed query is not kept
+    assertEquals("ok", flights.execute("key", Deadline.NONE, () -> "ok"));
+  }
+}
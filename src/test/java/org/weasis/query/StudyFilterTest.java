@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2026 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.query;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.data.VR;
+import org.junit.jupiter.api.Test;
+
+public class StudyFilterTest {
+
+  private static Attributes newStudy(String uid, String date, String modality, String desc) {
+    Attributes study = new Attributes();
+    study.setString(Tag.StudyInstanceUID, VR.UI, uid);
+    if (date != null) {
+      study.setString(Tag.StudyDate, VR.DA, date);
+      study.setString(Tag.StudyTime, VR.TM, "120000");
+    }
+    study.setString(Tag.ModalitiesInStudy, VR.CS, "SR", modality);
+    study.setString(Tag.StudyDescription, VR.LO, desc);
+    return study;
+  }
+
+  private static List<String> getUIDs(List<Attributes> studies) {
+    List<String> uids = new ArrayList<>();
+    for (Attributes study : studies) {
+      uids.add(study.getString(Tag.StudyInstanceUID));
+    }
+    return uids;
+  }
+
+  private static List<Attributes> getStudies() {
+    return List.of(
+        newStudy("1", "20200101", "CT", "Thorax"),
+        newStudy("2", "20230101", "MR", "Genou gauche"),
+        newStudy("3", null, "CT", "Abdomen"),
+        newStudy("4", "20220101", "CT", "Épaule"),
+        newStudy("5", "20240101", "US", "Abdomen"));
+  }
+
+  @Test
+  public void testOrder() {
+    StudyFilter filter = new StudyFilter(null, null, null, null, null);
+    assertEquals(List.of("5", "2", "4", "1", "3"), getUIDs(filter.apply(getStudies())));
+  }
+
+  @Test
+  public void testFilters() {
+    StudyFilter filter =
+        new StudyFilter("2023-06-01T00:00:00", "2021-01-01T00:00:00", null, "CT, MR", null);
+    assertEquals(List.of("2", "4", "3"), getUIDs(filter.apply(getStudies())));
+
+    filter = new StudyFilter(null, null, null, null, "epaule,ABDO");
+    assertEquals(List.of("5", "4", "3"), getUIDs(filter.apply(getStudies())));
+  }
+
+  @Test
+  public void testMostRecentResults() {
+    // The limit is applied before the modality filter
+    StudyFilter filter = new StudyFilter(null, null, "3", "CT", null);
+    assertEquals(List.of("4"), getUIDs(filter.apply(getStudies())));
+
+    StudySelector selector = new StudySelector(filter);
+    getStudies().forEach(selector::test);
+    assertEquals(List.of("5", "2", "4"), getUIDs(selector.getStudies()));
+  }
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright (c) 2026 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.query.db;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import jakarta.servlet.http.HttpServletRequest;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.weasis.dicom.mf.Patient;
+import org.weasis.dicom.mf.Series;
+import org.weasis.dicom.mf.Study;
+import org.weasis.query.CommonQueryParams;
+import org.weasis.query.StudyCache;
+import org.weasis.servlet.ConnectorProperties;
+
+public class DbQueryArchiveTest {
+  private static final String ARCHIVE_ID = "db-test";
+
+  private static DbTestDatabase db;
+  private static Properties properties;
+
+  @BeforeAll
+  public static void setup() throws Exception {
+    db = DbTestDatabase.create("db-query-test");
+    // 40 studies, 120 series, 1200 instances
+    db.populate(20, 2, 3, 10);
+    properties = db.getProperties(ARCHIVE_ID);
+  }
+
+  @AfterAll
+  public static void tearDown() throws Exception {
+    DbReplicaRouter.closeAll();
+    DbConnectionPool.closeAll();
+    db.close();
+  }
+
+  @AfterEach
+  public void purgeCache() {
+    StudyCache.purge(ARCHIVE_ID, null);
+  }
+
+  private static Study getStudy(DbQueryConfiguration config, int study) {
+    Patient patient =
+        config.getPatient(DbTestDatabase.getPatientID(study / db.getStudiesPerPatient()), null);
+    assertNotNull(patient, "patient of the study " + study);
+    return patient.getStudy(DbTestDatabase.getStudyUID(study));
+  }
+
+  /** Check that the series contains all its instances. */
+  private static void assertSeries(Study study, int series) {
+    Series s = study.getSeries(DbTestDatabase.getSeriesUID(series));
+    assertNotNull(s, "series " + series);
+    int instances = db.getInstancesPerSeries();
+    for (long i = (long) series * instances; i < (long) (series + 1) * instances; i++) {
+      assertNotNull(s.getSopInstance(DbTestDatabase.getSopInstanceUID(i), null), "instance " + i);
+    }
+  }
+
+  /** Check that the study contains all its series and instances. */
+  private static void assertStudy(DbQueryConfiguration config, int study) {
+    Study s = getStudy(config, study);
+    assertNotNull(s, "study " + study);
+    int series = db.getSeriesPerStudy();
+    for (int i = study * series; i < (study + 1) * series; i++) {
+      assertSeries(s, i);
+    }
+  }
+
+  /**
+   * @param parameters the name and the value of each parameter of the request
+   */
+  private static CommonQueryParams getParams(String... parameters) {
+    Map<String, String[]> map = new HashMap<>();
+    for (int i = 0; i < parameters.length; i += 2) {
+      map.put(parameters[i], new String[] {parameters[i + 1]});
+    }
+    HttpServletRequest request =
+        (HttpServletRequest)
+            Proxy.newProxyInstance(
+                HttpServletRequest.class.getClassLoader(),
+                new Class<?>[] {HttpServletRequest.class},
+                (proxy, method, args) ->
+                    switch (method.getName()) {
+                      case "getParameterMap" -> map;
+                      case "getParameter" -> {
+                        String[] values = map.get((String) args[0]);
+                        yield values == null ? null : values[0];
+                      }
+                      default -> null;
+                    });
+    return new CommonQueryParams(request, new ConnectorProperties());
+  }
+
+  private static Study getPatientStudy(DbQueryConfiguration config, int patient, int study) {
+    Patient p = config.getPatient(DbTestDatabase.getPatientID(patient), null);
+    return p == null ? null : p.getStudy(DbTestDatabase.getStudyUID(study));
+  }
+
+  @Test
+  public void testMostRecentResults() {
+    // Patient 4: the study 8 and the study 9 without date
+    assertTrue(DbTestDatabase.isDated(8));
+    assertFalse(DbTestDatabase.isDated(9));
+    DbQueryConfiguration config = new DbQueryConfiguration(properties);
+    config.buildFromPatientID(getParams(), DbTestDatabase.getPatientID(4));
+    assertNotNull(getPatientStudy(config, 4, 8));
+    assertNotNull(getPatientStudy(config, 4, 9));
+
+    // The studies without date are the last ones, whatever the null ordering of the database
+    config = new DbQueryConfiguration(properties);
+    config.buildFromPatientID(
+        getParams(CommonQueryParams.MOST_RECENT_RESULTS, "1"), DbTestDatabase.getPatientID(4));
+    assertNotNull(getPatientStudy(config, 4, 8));
+    assertNull(getPatientStudy(config, 4, 9));
+  }
+
+  @Test
+  public void testMostRecentResultsAndModality() {
+    // Patient 3: the study 6 and the more recent study 7 of another modality
+    String modality = DbTestDatabase.getModality(6);
+    assertNotEquals(modality, DbTestDatabase.getModality(7));
+    DbQueryConfiguration config = new DbQueryConfiguration(properties);
+    config.buildFromPatientID(
+        getParams(CommonQueryParams.MODALITIES_IN_STUDY, modality), DbTestDatabase.getPatientID(3));
+    assertNotNull(getPatientStudy(config, 3, 6));
+    assertNull(getPatientStudy(config, 3, 7));
+
+    // The most recent study of the patient does not have the modality
+    config = new DbQueryConfiguration(properties);
+    config.buildFromPatientID(
+        getParams(
+            CommonQueryParams.MOST_RECENT_RESULTS,
+            "1",
+            CommonQueryParams.MODALITIES_IN_STUDY,
+            modality),
+        DbTestDatabase.getPatientID(3));
+    assertNull(getPatientStudy(config, 3, 6));
+    assertNull(getPatientStudy(config, 3, 7));
+  }
+
+  @Test
+  public void testStudyInstanceUID() {
+    DbQueryConfiguration config = new DbQueryConfiguration(properties);
+    config.buildFromStudyInstanceUID(
+        null, DbTestDatabase.getStudyUID(3), DbTestDatabase.getStudyUID(5), "1.2.3.4.5");
+    assertStudy(config, 3);
+    assertStudy(config, 5);
+    assertNull(getStudy(config, 4));
+  }
+
+  @Test
+  public void testSeriesInstanceUID() {
+    DbQueryConfiguration config = new DbQueryConfiguration(properties);
+    // Second series of the study 2
+    int series = 2 * db.getSeriesPerStudy() + 1;
+    config.buildFromSeriesInstanceUID(null, DbTestDatabase.getSeriesUID(series));
+    Study study = getStudy(config, 2);
+    assertNotNull(study);
+    assertSeries(study, series);
+    // Only the requested series
+    assertNull(study.getSeries(DbTestDatabase.getSeriesUID(series - 1)));
+    assertNull(study.getSeries(DbTestDatabase.getSeriesUID(series + 1)));
+  }
+
+  @Test
+  public void testAccessionNumber() {
+    DbQueryConfiguration config = new DbQueryConfiguration(properties);
+    config.buildFromStudyAccessionNumber(
+        null, DbTestDatabase.getAccessionNumber(7), DbTestDatabase.getAccessionNumber(8));
+    assertStudy(config, 7);
+    assertStudy(config, 8);
+  }
+
+  @Test
+  public void testSopInstanceUID() {
+    DbQueryConfiguration config = new DbQueryConfiguration(properties);
+    long instance = (long) 4 * db.getInstancesPerSeries() + 3;
+    config.buildFromSopInstanceUID(null, DbTestDatabase.getSopInstanceUID(instance));
+    Study study = getStudy(config, 4 / db.getSeriesPerStudy());
+    assertNotNull(study);
+    Series series = study.getSeries(DbTestDatabase.getSeriesUID(4));
+    assertNotNull(series);
+    assertNotNull(series.getSopInstance(DbTestDatabase.getSopInstanceUID(instance), null));
+    assertNull(series.getSopInstance(DbTestDatabase.getSopInstanceUID(instance + 1), null));
+  }
+
+  @Test
+  public void testChunks() {
+    // Queries of 4 UIDs executed by 2 threads
+    Properties chunked = new Properties();
+    chunked.putAll(properties);
+    chunked.setProperty("arc.id", ARCHIVE_ID + "-chunks");
+    chunked.setProperty("arc.query.uid.list.size", "4");
+    chunked.setProperty("arc.query.parallelism", "2");
+    DbQueryConfiguration config = new DbQueryConfiguration(chunked);
+
+    String[] uids = new String[db.getStudies()];
+    for (int i = 0; i < uids.length; i++) {
+      uids[i] = DbTestDatabase.getStudyUID(i);
+    }
+    config.buildFromStudyInstanceUID(null, uids);
+    for (int i = 0; i < uids.length; i++) {
+      assertStudy(config, i);
+    }
+  }
+
+  @Test
+  public void testReplicas() {
+    // An unreachable database and the same database with another URI
+    Properties replicated = new Properties();
+    replicated.putAll(properties);
+    replicated.setProperty("arc.id", ARCHIVE_ID + "-replicas");
+    replicated.setProperty(
+        "arc.db.replicas", "jdbc:h2:tcp://localhost:1/missing,jdbc:h2:mem:db-query-test");
+    replicated.setProperty("arc.db.replica.check.interval", "0");
+    DbQueryConfiguration config = new DbQueryConfiguration(replicated);
+
+    for (int i = 10; i < 13; i++) {
+      config.buildFromStudyInstanceUID(null, DbTestDatabase.getStudyUID(i));
+      assertStudy(config, i);
+    }
+    DbReplicaRouter router = DbReplicaRouter.getInstance(replicated);
+    assertFalse(router.getReplicas().get(0).isHealthy());
+    assertTrue(router.getReplicas().get(1).isHealthy());
+    assertEquals(0, router.getReplicas().get(1).getOutstanding());
+    assertEquals(0L, router.getCounters().get("db.replica." + ARCHIVE_ID + "-replicas.fallbacks"));
+  }
+}
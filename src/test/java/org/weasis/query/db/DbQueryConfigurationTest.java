@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2026 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.query.db;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.data.VR;
+import org.junit.jupiter.api.Test;
+import org.weasis.query.Deadline;
+import org.weasis.query.StudyTree;
+import org.weasis.query.StudyTree.SeriesTree;
+
+public class DbQueryConfigurationTest {
+
+  @Test
+  public void testBindArity() {
+    assertEquals(1, DbQueryConfiguration.getBindArity(1));
+    assertEquals(8, DbQueryConfiguration.getBindArity(2));
+    assertEquals(8, DbQueryConfiguration.getBindArity(8));
+    assertEquals(32, DbQueryConfiguration.getBindArity(9));
+    assertEquals(128, DbQueryConfiguration.getBindArity(100));
+  }
+
+  @Test
+  public void testParameters() {
+    assertEquals(List.of(), DbQueryConfiguration.getValues("", null));
+    assertEquals(List.of("1.2", "1.3"), DbQueryConfiguration.getValues("1.2", " ", "1.3", "1.2"));
+    assertEquals(List.of("1.2"), DbQueryConfiguration.getParameters(List.of("1.2"), 512));
+    assertEquals(
+        List.of("1.2", "1.3", "1.3", "1.3", "1.3", "1.3", "1.3", "1.3"),
+        DbQueryConfiguration.getParameters(List.of("1.2", "1.3"), 512));
+    // The padding does not exceed the size of the chunks
+    assertEquals(
+        List.of("1.2", "1.3", "1.3", "1.3", "1.3"),
+        DbQueryConfiguration.getParameters(List.of("1.2", "1.3"), 5));
+  }
+
+  @Test
+  public void testStatementTimeout() {
+    Properties properties = new Properties();
+    properties.setProperty("arc.db.driver", "java.lang.Object");
+    DbQueryConfiguration config = new DbQueryConfiguration(properties);
+    // Default limit without deadline of the request
+    assertEquals(60, config.getStatementTimeout());
+    config.setDeadline(Deadline.after(5000));
+    assertTrue(config.getStatementTimeout() <= 5);
+    config.setDeadline(Deadline.after(600_000));
+    assertEquals(60, config.getStatementTimeout());
+
+    properties.setProperty("arc.db.query.timeout", "0");
+    config = new DbQueryConfiguration(properties);
+    assertEquals(0, config.getStatementTimeout());
+    config.setDeadline(Deadline.after(5000));
+    assertTrue(config.getStatementTimeout() <= 5);
+  }
+
+  private static StudyTree newStudyTree(String seriesUID, String... sopUIDs) {
+    Attributes study = new Attributes();
+    study.setString(Tag.StudyInstanceUID, VR.UI, "1.2");
+    Attributes series = new Attributes();
+    series.setString(Tag.SeriesInstanceUID, VR.UI, seriesUID);
+    List<Attributes> instances = new ArrayList<>();
+    for (String sopUID : sopUIDs) {
+      Attributes instance = new Attributes();
+      instance.setString(Tag.SOPInstanceUID, VR.UI, sopUID);
+      instances.add(instance);
+    }
+    return new StudyTree(study, new ArrayList<>(List.of(new SeriesTree(series, instances))));
+  }
+
+  @Test
+  public void testMergeStudyTrees() {
+    StudyTree first = newStudyTree("1.2.1", "1.2.1.1", "1.2.1.2");
+    Map<String, StudyTree> trees =
+        DbQueryConfiguration.mergeStudyTrees(
+            List.of(
+                Map.of("1.2", first),
+                Map.of("1.2", newStudyTree("1.2.1", "1.2.1.2", "1.2.1.3")),
+                Map.of("1.2", newStudyTree("1.2.2", "1.2.2.1"))));
+    assertEquals(1, trees.size());
+    List<SeriesTree> series = trees.get("1.2").series();
+    assertEquals(2, series.size());
+    assertEquals(3, series.get(0).instances().size());
+    assertEquals(1, series.get(1).instances().size());
+    // The trees of the queries are not modified
+    assertEquals(1, first.series().size());
+    assertEquals(2, first.series().get(0).instances().size());
+  }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2026 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.query.db;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Properties;
+import org.junit.jupiter.api.Test;
+import org.weasis.query.db.DbReplicaRouter.Target;
+
+public class DbReplicaRouterTest {
+
+  private static DbReplicaRouter newRouter(boolean fallback) {
+    Properties properties = new Properties();
+    properties.setProperty("arc.db.driver", "java.lang.Object");
+    properties.setProperty("arc.db.uri", "jdbc:none:primary");
+    properties.setProperty("arc.db.replicas", "jdbc:none:replica1, jdbc:none:replica2");
+    properties.setProperty("arc.db.replica.check.interval", "0");
+    properties.setProperty("arc.db.replica.fallback", String.valueOf(fallback));
+    properties.setProperty("arc.db.pool.max.total", "0");
+    return new DbReplicaRouter("test", properties);
+  }
+
+  @Test
+  public void testLeastOutstanding() {
+    DbReplicaRouter router = newRouter(true);
+    List<Target> replicas = router.getReplicas();
+    assertEquals(2, replicas.size());
+    assertEquals("jdbc:none:replica2", replicas.get(1).getProperties().getProperty("arc.db.uri"));
+
+    Target first = router.acquire();
+    Target second = router.acquire();
+    assertNotSame(first, second);
+    Target third = router.acquire();
+    assertTrue(third.isReplica());
+    // The replica of the released query has less outstanding queries
+    Target busy = third == first ? first : second;
+    Target other = busy == first ? second : first;
+    other.release();
+    assertSame(other, router.acquire());
+    assertEquals(2, busy.getOutstanding());
+  }
+
+  @Test
+  public void testFallback() {
+    DbReplicaRouter router = newRouter(true);
+    Target replica1 = router.getReplicas().get(0);
+    Target replica2 = router.getReplicas().get(1);
+    router.markDown(replica1, new SQLException("down"));
+    assertFalse(replica1.isHealthy());
+    assertSame(replica2, router.acquire());
+    assertSame(replica2, router.acquire());
+
+    router.markDown(replica2, new SQLException("down"));
+    Target primary = router.acquire();
+    assertFalse(primary.isReplica());
+    assertEquals("jdbc:none:primary", primary.getProperties().getProperty("arc.db.uri"));
+    // The primary database is never marked as unhealthy
+    router.markDown(primary, new SQLException("down"));
+    assertTrue(primary.isHealthy());
+
+    DbReplicaRouter noFallback = newRouter(false);
+    noFallback.getReplicas().forEach(r -> noFallback.markDown(r, new SQLException("down")));
+    assertThrows(IllegalStateException.class, noFallback::acquire);
+  }
+
+  @Test
+  public void testCloseAll() {
+    Properties properties = new Properties();
+    properties.setProperty("arc.id", "test-close");
+    properties.setProperty("arc.db.replicas", "jdbc:none:replica1");
+    properties.setProperty("arc.db.pool.max.total", "0");
+    DbReplicaRouter.closeAll();
+    // No check scheduled once the web application is stopped
+    DbReplicaRouter router = DbReplicaRouter.getInstance(properties);
+    assertNotNull(router);
+    assertTrue(router.acquire().isReplica());
+    DbReplicaRouter.closeAll();
+  }
+
+  @Test
+  public void testCheck() {
+    DbReplicaRouter router = newRouter(true);
+    Target replica = router.getReplicas().get(0);
+    // No driver accepts the URI
+    router.check(replica);
+    assertFalse(replica.isHealthy());
+    assertSame(router.getReplicas().get(1), router.acquire());
+  }
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright (c) 2026 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.query.db;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Properties;
+
+/**
+ * In-memory H2 database with the schema of db-dcm4chee.properties (the arc.db.query.* templates),
+ * populated with synthetic patients, studies, series and instances.
+ *
+ * <p>The UIDs, the accession numbers and the patient IDs are derived from the global index of the
+ * study, the series or the instance, so that the tests and the benchmarks can query any of them
+ * without reading the database. Each study is one hour after the previous one, except every tenth
+ * study which has no date. The null values are sorted as the highest ones (as with PostgreSQL and
+ * Oracle).
+ */
+public class DbTestDatabase implements AutoCloseable {
+  private static final String ROOT = "1.2.826.0.1.3680043.2.1";
+  private static final String[] MODALITIES = {"CT", "MR", "CR", "US"};
+  private static final int BATCH_SIZE = 10_000;
+  private static final LocalDateTime FIRST_STUDY = LocalDateTime.of(2000, 1, 1, 8, 30);
+
+  private final String uri;
+  // Keeps the in-memory database open
+  private final Connection connection;
+
+  private int studiesPerPatient;
+  private int seriesPerStudy;
+  private int instancesPerSeries;
+  private int studies;
+
+  private DbTestDatabase(String uri) throws SQLException {
+    this.uri = uri;
+    this.connection = DriverManager.getConnection(uri, "sa", "");
+  }
+
+  /**
+   * @param name the name of the in-memory database
+   * @return the database with the empty tables
+   */
+  public static DbTestDatabase create(String name) throws SQLException {
+    DbTestDatabase db =
+        new DbTestDatabase("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1;DEFAULT_NULL_ORDERING=HIGH");
+    db.createTables();
+    return db;
+  }
+
+  private void createTables() throws SQLException {
+    try (Statement stmt = connection.createStatement()) {
+      stmt.execute(
+          "create table patient (pk bigint primary key, pat_id varchar(64), pat_name varchar(255),"
+              + " pat_birthdate varchar(16), pat_sex varchar(16))");
+      stmt.execute(
+          "create table study (pk bigint primary key, patient_fk bigint, study_iuid varchar(64),"
+              + " study_datetime timestamp, accession_no varchar(16), study_id varchar(16),"
+              + " ref_physician varchar(255), study_desc varchar(255))");
+      stmt.execute(
+          "create table series (pk bigint primary key, study_fk bigint, series_iuid varchar(64),"
+              + " series_no varchar(16), modality varchar(16), series_desc varchar(255))");
+      stmt.execute(
+          "create table instance (pk bigint primary key, series_fk bigint, sop_iuid varchar(64),"
+              + " inst_no varchar(16))");
+      // Indexes of the archive (dcm4chee 2.x)
+      stmt.execute("create index pat_id_idx on patient (pat_id)");
+      stmt.execute("create index study_patient_fk_idx on study (patient_fk)");
+      stmt.execute("create unique index study_iuid_idx on study (study_iuid)");
+      stmt.execute("create index accession_no_idx on study (accession_no)");
+      stmt.execute("create index series_study_fk_idx on series (study_fk)");
+      stmt.execute("create unique index series_iuid_idx on series (series_iuid)");
+      stmt.execute("create index instance_series_fk_idx on instance (series_fk)");
+      stmt.execute("create unique index sop_iuid_idx on instance (sop_iuid)");
+    }
+  }
+
+  /**
+   * Insert the synthetic data, the database contains patients * studiesPerPatient * seriesPerStudy
+   * * instancesPerSeries instances.
+   *
+   * @param patients the number of patients
+   * @param studiesPerPatient the number of studies of each patient
+   * @param seriesPerStudy the number of series of each study
+   * @param instancesPerSeries the number of instances of each series
+   */
+  public void populate(
+      int patients, int studiesPerPatient, int seriesPerStudy, int instancesPerSeries)
+      throws SQLException {
+    if (studies > 0) {
+      throw new IllegalStateException("The database is already populated");
+    }
+    this.studiesPerPatient = studiesPerPatient;
+    this.seriesPerStudy = seriesPerStudy;
+    this.instancesPerSeries = instancesPerSeries;
+    this.studies = patients * studiesPerPatient;
+
+    connection.setAutoCommit(false);
+    try (PreparedStatement patient =
+            connection.prepareStatement("insert into patient values (?, ?, ?, ?, ?)");
+        PreparedStatement study =
+            connection.prepareStatement("insert into study values (?, ?, ?, ?, ?, ?, ?, ?)");
+        PreparedStatement series =
+            connection.prepareStatement("insert into series values (?, ?, ?, ?, ?, ?)");
+        PreparedStatement instance =
+            connection.prepareStatement("insert into instance values (?, ?, ?, ?)")) {
+      int batch = 0;
+      for (int p = 0; p < patients; p++) {
+        patient.setLong(1, p);
+        patient.setString(2, getPatientID(p));
+        patient.setString(3, "Doe^John" + p);
+        patient.setString(4, "19" + (50 + p % 50) + "0612");
+        patient.setString(5, p % 2 == 0 ? "M" : "F");
+        patient.addBatch();
+        for (int st = p * studiesPerPatient; st < (p + 1) * studiesPerPatient; st++) {
+          study.setLong(1, st);
+          study.setLong(2, p);
+          study.setString(3, getStudyUID(st));
+          study.setTimestamp(4, isDated(st) ? Timestamp.valueOf(FIRST_STUDY.plusHours(st)) : null);
+          study.setString(5, getAccessionNumber(st));
+          study.setString(6, String.valueOf(st));
+          study.setString(7, "Smith^Jane");
+          study.setString(8, "Study " + st);
+          study.addBatch();
+          for (int se = st * seriesPerStudy; se < (st + 1) * seriesPerStudy; se++) {
+            series.setLong(1, se);
+            series.setLong(2, st);
+            series.setString(3, getSeriesUID(se));
+            series.setString(4, String.valueOf(se % seriesPerStudy + 1));
+            series.setString(5, getModality(st));
+            series.setString(6, "Series " + se);
+            series.addBatch();
+            for (long i = (long) se * instancesPerSeries;
+                i < (long) (se + 1) * instancesPerSeries;
+                i++) {
+              instance.setLong(1, i);
+              instance.setLong(2, se);
+              instance.setString(3, getSopInstanceUID(i));
+              instance.setString(4, String.valueOf(i % instancesPerSeries + 1));
+              instance.addBatch();
+              if (++batch == BATCH_SIZE) {
+                executeBatches(patient, study, series, instance);
+                batch = 0;
+              }
+            }
+          }
+        }
+      }
+      executeBatches(patient, study, series, instance);
+    } finally {
+      connection.setAutoCommit(true);
+    }
+  }
+
+  private void executeBatches(PreparedStatement... statements) throws SQLException {
+    // Parents first
+    for (PreparedStatement statement : statements) {
+      statement.executeBatch();
+    }
+    connection.commit();
+  }
+
+  /**
+   * @param archiveID the ID of the archive
+   * @return the properties of db-dcm4chee.properties connected to this database
+   */
+  public Properties getProperties(String archiveID) throws IOException {
+    Properties properties = new Properties();
+    try (InputStream in = DbTestDatabase.class.getResourceAsStream("/db-dcm4chee.properties")) {
+      if (in == null) {
+        throw new IllegalStateException("Cannot find db-dcm4chee.properties");
+      }
+      properties.load(in);
+    }
+    properties.setProperty("arc.id", archiveID);
+    properties.setProperty("arc.db.driver", "org.h2.Driver");
+    properties.setProperty("arc.db.uri", uri);
+    properties.setProperty("arc.db.user", "sa");
+    properties.setProperty("arc.db.password", "");
+    return properties;
+  }
+
+  public int getStudies() {
+    return studies;
+  }
+
+  public int getSeries() {
+    return studies * seriesPerStudy;
+  }
+
+  public long getInstances() {
+    return (long) getSeries() * instancesPerSeries;
+  }
+
+  public int getStudiesPerPatient() {
+    return studiesPerPatient;
+  }
+
+  public int getSeriesPerStudy() {
+    return seriesPerStudy;
+  }
+
+  public int getInstancesPerSeries() {
+    return instancesPerSeries;
+  }
+
+  /**
+   * @return false for the studies without date
+   */
+  public static boolean isDated(int study) {
+    return study % 10 != 9;
+  }
+
+  public static String getModality(int study) {
+    return MODALITIES[study % MODALITIES.length];
+  }
+
+  public static String getPatientID(int patient) {
+    return "PAT" + patient;
+  }
+
+  public static String getStudyUID(int study) {
+    return ROOT + ".1." + study;
+  }
+
+  public static String getAccessionNumber(int study) {
+    return "A" + study;
+  }
+
+  public static String getSeriesUID(int series) {
+    return ROOT + ".2." + series;
+  }
+
+  public static String getSopInstanceUID(long instance) {
+    return ROOT + ".3." + instance;
+  }
+
+  @Override
+  public void close() throws SQLException {
+    try (Statement stmt = connection.createStatement()) {
+      stmt.execute("shutdown");
+    } finally {
+      connection.close();
+    }
+  }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2026 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.query.dicom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.Properties;
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.net.service.QueryRetrieveLevel;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.weasis.dicom.op.CFind;
+import org.weasis.dicom.param.DicomNode;
+import org.weasis.dicom.param.DicomParam;
+import org.weasis.query.Deadline;
+
+public class DicomAssociationPoolTest {
+
+  private static DicomTestArchive archive;
+
+  @BeforeAll
+  public static void setup() throws Exception {
+    archive = DicomTestArchive.start(3, 2, 3);
+  }
+
+  @AfterAll
+  public static void tearDown() {
+    archive.close();
+  }
+
+  /**
+   * @param callingAet the calling AE title, another one for each test to get a new pool
+   * @param options the pool properties
+   */
+  private static DicomAssociationPool newPool(String callingAet, String... options) {
+    Properties properties = archive.getProperties("pool-test");
+    for (int i = 0; i < options.length; i += 2) {
+      properties.setProperty(options[i], options[i + 1]);
+    }
+    DicomAssociationPool pool =
+        DicomAssociationPool.getPool(
+            new DicomQueryConfiguration(properties, new DicomNode(callingAet)));
+    assertNotNull(pool);
+    return pool;
+  }
+
+  private static List<Attributes> findStudy(DicomAssociationPool pool, int study) {
+    return pool.find(
+        QueryRetrieveLevel.STUDY,
+        Deadline.after(10000),
+        new DicomParam(Tag.StudyInstanceUID, DicomTestArchive.getStudyUID(study)),
+        CFind.PatientID);
+  }
+
+  private static Properties newProperties(String keystore, String maxTotal) {
+    Properties properties = new Properties();
+    properties.setProperty("arc.id", "1000");
+    properties.setProperty("arc.aet", "DCM4CHEE");
+    properties.setProperty("arc.tls.mode", "true");
+    properties.setProperty("arc.keystoreURL", keystore);
+    properties.setProperty("arc.keystorePass", "secret");
+    properties.setProperty("arc.pool.max.total", maxTotal);
+    return properties;
+  }
+
+  @Test
+  public void testOptions() {
+    Properties properties = newProperties("/conf/keystore1.jks", "8");
+    assertEquals(
+        DicomAssociationPool.getOptions(properties),
+        DicomAssociationPool.getOptions(newProperties("/conf/keystore1.jks", "8")));
+    // Another client certificate or other limits require another pool
+    assertNotEquals(
+        DicomAssociationPool.getOptions(properties),
+        DicomAssociationPool.getOptions(newProperties("/conf/keystore2.jks", "8")));
+    assertNotEquals(
+        DicomAssociationPool.getOptions(properties),
+        DicomAssociationPool.getOptions(newProperties("/conf/keystore1.jks", "4")));
+    // The passwords are not kept in the key of the pool
+    assertFalse(DicomAssociationPool.getOptions(properties).containsKey("arc.keystorePass"));
+    assertFalse(DicomAssociationPool.getOptions(properties).containsKey("arc.id"));
+  }
+
+  @Test
+  public void testBorrowAndRelease() {
+    DicomAssociationPool pool = newPool("POOL-REUSE");
+    try {
+      int associations = archive.getAssociationCount();
+      for (int study = 0; study < archive.getStudies(); study++) {
+        List<Attributes> matches = findStudy(pool, study);
+        assertEquals(1, matches.size());
+        assertEquals(DicomTestArchive.getPatientID(study), matches.get(0).getString(Tag.PatientID));
+      }
+      // The association is reused by the next requests
+      assertEquals(associations + 1, archive.getAssociationCount());
+      assertEquals(1, pool.getOpenCount());
+      assertEquals(1, pool.getIdleCount());
+
+      PooledAssociation as = pool.borrow();
+      assertTrue(as.isReady());
+      assertEquals(0, pool.getIdleCount());
+      pool.release(as, true);
+      assertSame(as, pool.borrow());
+      // After an error, the association is closed
+      pool.release(as, false);
+      assertEquals(0, pool.getOpenCount());
+      assertEquals(0, pool.getIdleCount());
+    } finally {
+      pool.close();
+    }
+  }
+
+  @Test
+  public void testMaxIdle() {
+    DicomAssociationPool pool = newPool("POOL-IDLE", "arc.pool.max.idle", "1");
+    try {
+      PooledAssociation as1 = pool.borrow();
+      PooledAssociation as2 = pool.borrow();
+      assertNotSame(as1, as2);
+      assertEquals(2, pool.getOpenCount());
+      pool.release(as1, true);
+      // Closed instead of exceeding arc.pool.max.idle
+      pool.release(as2, true);
+      assertEquals(1, pool.getOpenCount());
+      assertEquals(1, pool.getIdleCount());
+      assertSame(as1, pool.borrow());
+      pool.release(as1, true);
+    } finally {
+      pool.close();
+    }
+  }
+
+  @Test
+  public void testValidation() throws InterruptedException {
+    DicomAssociationPool pool = newPool("POOL-ECHO", "arc.pool.validation.interval", "0");
+    try {
+      PooledAssociation as = pool.borrow();
+      pool.release(as, true);
+      Thread.sleep(5);
+      int echoes = archive.getEchoCount();
+      // Checked with C-ECHO before being borrowed
+      assertSame(as, pool.borrow());
+      assertEquals(echoes + 1, archive.getEchoCount());
+      pool.release(as, true);
+
+      // Checked with C-ECHO by the eviction, then kept
+      Thread.sleep(5);
+      pool.evict();
+      assertEquals(echoes + 2, archive.getEchoCount());
+      assertEquals(1, pool.getIdleCount());
+      assertEquals(1, findStudy(pool, 0).size());
+    } finally {
+      pool.close();
+    }
+  }
+
+  @Test
+  public void testEviction() throws InterruptedException {
+    DicomAssociationPool pool = newPool("POOL-EVICT", "arc.pool.idle.timeout", "0");
+    try {
+      PooledAssociation as1 = pool.borrow();
+      PooledAssociation as2 = pool.borrow();
+      pool.release(as1, true);
+      pool.release(as2, true);
+      assertEquals(2, pool.getIdleCount());
+      Thread.sleep(5);
+      pool.evict();
+      assertEquals(0, pool.getIdleCount());
+      assertEquals(0, pool.getOpenCount());
+    } finally {
+      pool.close();
+    }
+
+    DicomAssociationPool minIdlePool = newPool("POOL-MIN-IDLE", "arc.pool.min.idle", "1");
+    try {
+      // The eviction opens the associations up to arc.pool.min.idle
+      minIdlePool.evict();
+      assertEquals(1, minIdlePool.getIdleCount());
+      assertEquals(1, findStudy(minIdlePool, 1).size());
+      assertEquals(1, minIdlePool.getOpenCount());
+    } finally {
+      minIdlePool.close();
+    }
+  }
+}
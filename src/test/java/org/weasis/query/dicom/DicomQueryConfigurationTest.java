@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2026 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.query.dicom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.util.Properties;
+import org.dcm4che3.net.Status;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.weasis.dicom.mf.Patient;
+import org.weasis.dicom.mf.Series;
+import org.weasis.dicom.mf.Study;
+import org.weasis.dicom.param.DicomNode;
+import org.weasis.query.QueryTimeoutException;
+
+public class DicomQueryConfigurationTest {
+
+  private static DicomTestArchive archive;
+
+  @BeforeAll
+  public static void setup() throws Exception {
+    archive = DicomTestArchive.start(4, 3, 4);
+  }
+
+  @AfterAll
+  public static void tearDown() {
+    archive.close();
+  }
+
+  private static DicomQueryConfiguration newConfiguration(String callingAet, String mode) {
+    Properties properties = archive.getProperties("dicom-query-test");
+    properties.setProperty("arc.query.mode", mode);
+    return new DicomQueryConfiguration(properties, new DicomNode(callingAet));
+  }
+
+  /** Check that the study contains all its series and their instances. */
+  private static void assertStudy(DicomQueryConfiguration config, int study) {
+    Patient patient = config.getPatient(DicomTestArchive.getPatientID(study), null);
+    assertNotNull(patient, "patient of the study " + study);
+    Study s = patient.getStudy(DicomTestArchive.getStudyUID(study));
+    assertNotNull(s, "study " + study);
+    int seriesPerStudy = archive.getSeriesPerStudy();
+    int instances = archive.getInstancesPerSeries();
+    for (int series = study * seriesPerStudy; series < (study + 1) * seriesPerStudy; series++) {
+      Series se = s.getSeries(DicomTestArchive.getSeriesUID(series));
+      assertNotNull(se, "series " + series);
+      for (long i = (long) series * instances; i < (long) (series + 1) * instances; i++) {
+        assertNotNull(
+            se.getSopInstance(DicomTestArchive.getSopInstanceUID(i), null), "instance " + i);
+      }
+    }
+  }
+
+  @Test
+  public void testFlatQuery() {
+    DicomQueryConfiguration flat = newConfiguration("FLAT-TEST", "flat");
+    int finds = archive.getFindCount();
+    flat.buildFromStudyInstanceUID(null, DicomTestArchive.getStudyUID(1));
+    assertStudy(flat, 1);
+    // The study, then all its series and instances with a single relational query
+    assertEquals(finds + 2, archive.getFindCount());
+    assertNull(flat.getPatient(DicomTestArchive.getPatientID(2), null));
+
+    // Same tree as the hierarchical queries: the study, its series, then the instances of each
+    // series
+    DicomQueryConfiguration hierarchical = newConfiguration("HIERARCHICAL-TEST", "hierarchical");
+    finds = archive.getFindCount();
+    hierarchical.buildFromStudyInstanceUID(null, DicomTestArchive.getStudyUID(1));
+    assertStudy(hierarchical, 1);
+    assertEquals(finds + 2 + archive.getSeriesPerStudy(), archive.getFindCount());
+  }
+
+  @Test
+  public void testUIDListRejected() {
+    // Rejected by the archive, wrapped as by the association pool
+    assertTrue(
+        DicomQueryConfiguration.isUIDListRejected(
+            new IllegalStateException(
+                "C-FIND failed",
+                new CFindException(Status.IdentifierDoesNotMatchSOPClass, "list"))));
+    assertTrue(
+        DicomQueryConfiguration.isUIDListRejected(
+            new CFindException(Status.UnableToProcess, "list")));
+
+    // Transient failures, the List of UID matching is kept
+    assertFalse(
+        DicomQueryConfiguration.isUIDListRejected(
+            new IllegalStateException("Cannot send C-FIND request", new IOException("reset"))));
+    assertFalse(
+        DicomQueryConfiguration.isUIDListRejected(
+            new QueryTimeoutException("No C-FIND response before the time limit")));
+    assertFalse(
+        DicomQueryConfiguration.isUIDListRejected(
+            new CFindException(Status.OutOfResources, "busy")));
+    assertFalse(
+        DicomQueryConfiguration.isUIDListRejected(
+            new IllegalStateException("The archive is temporarily skipped")));
+  }
+}
@@ -0,0 +1,361 @@
+/*
+ * Copyright (c) 2026 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.query.dicom;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.data.UID;
+import org.dcm4che3.data.VR;
+import org.dcm4che3.net.ApplicationEntity;
+import org.dcm4che3.net.Association;
+import org.dcm4che3.net.Connection;
+import org.dcm4che3.net.Device;
+import org.dcm4che3.net.Dimse;
+import org.dcm4che3.net.QueryOption;
+import org.dcm4che3.net.TransferCapability;
+import org.dcm4che3.net.pdu.PresentationContext;
+import org.dcm4che3.net.service.BasicCEchoSCP;
+import org.dcm4che3.net.service.BasicCFindSCP;
+import org.dcm4che3.net.service.BasicQueryTask;
+import org.dcm4che3.net.service.DicomServiceException;
+import org.dcm4che3.net.service.DicomServiceRegistry;
+import org.dcm4che3.net.service.QueryTask;
+
+/**
+ * DICOM archive on a free port of localhost: a C-ECHO and a Study Root C-FIND SCP matching
+ * synthetic studies, series and instances.
+ *
+ * <p>As in DbTestDatabase, the UIDs and the patient IDs are derived from the global index of the
+ * study, the series or the instance. The archive accepts the relational queries and an unlimited
+ * asynchronous operations window. It counts the associations, the C-ECHO, the C-FIND and the
+ * C-CANCEL requests, and the C-FIND requests in progress at the same time. Each C-FIND response can
+ * be delayed to keep the requests in progress.
+ */
+public class DicomTestArchive implements AutoCloseable {
+  public static final String AET = "TEST-SCP";
+  private static final String ROOT = "1.2.826.0.1.3680043.2.2";
+
+  private final int studies;
+  private final int seriesPerStudy;
+  private final int instancesPerSeries;
+  private final int port;
+
+  private final Device device = new Device("test-scp");
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+  private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+  private final Set<Association> associations =
+      Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+  private final AtomicInteger echoes = new AtomicInteger();
+  private final AtomicInteger finds = new AtomicInteger();
+  private final AtomicInteger cancels = new AtomicInteger();
+  private final AtomicInteger running = new AtomicInteger();
+  private final AtomicInteger maxRunning = new AtomicInteger();
+  private volatile long responseDelay;
+
+  private DicomTestArchive(int studies, int seriesPerStudy, int instancesPerSeries, int port) {
+    this.studies = studies;
+    this.seriesPerStudy = seriesPerStudy;
+    this.instancesPerSeries = instancesPerSeries;
+    this.port = port;
+  }
+
+  /**
+   * Start the archive, it contains studies * seriesPerStudy * instancesPerSeries instances.
+   *
+   * @param studies the number of studies, each one of another patient
+   * @param seriesPerStudy the number of series of each study
+   * @param instancesPerSeries the number of instances of each series
+   * @return the archive accepting associations
+   */
+  public static DicomTestArchive start(int studies, int seriesPerStudy, int instancesPerSeries)
+      throws IOException, GeneralSecurityException {
+    int port;
+    try (ServerSocket socket = new ServerSocket(0)) {
+      port = socket.getLocalPort();
+    }
+    DicomTestArchive archive =
+        new DicomTestArchive(studies, seriesPerStudy, instancesPerSeries, port);
+    archive.bind();
+    return archive;
+  }
+
+  private void bind() throws IOException, GeneralSecurityException {
+    Connection conn = new Connection();
+    conn.setHostname("localhost");
+    conn.setPort(port);
+    // Unlimited asynchronous operations window
+    conn.setMaxOpsInvoked(0);
+    conn.setMaxOpsPerformed(0);
+    ApplicationEntity ae = new ApplicationEntity(AET);
+    ae.setAssociationAcceptor(true);
+    ae.addConnection(conn);
+    ae.addTransferCapability(
+        new TransferCapability(
+            null, UID.Verification, TransferCapability.Role.SCP, UID.ImplicitVRLittleEndian));
+    TransferCapability find =
+        new TransferCapability(
+            null,
+            PooledAssociation.FIND_CUID,
+            TransferCapability.Role.SCP,
+            UID.ImplicitVRLittleEndian,
+            UID.ExplicitVRLittleEndian);
+    find.setQueryOptions(EnumSet.of(QueryOption.RELATIONAL));
+    ae.addTransferCapability(find);
+
+    DicomServiceRegistry registry = new DicomServiceRegistry();
+    registry.addDicomService(new EchoSCP());
+    registry.addDicomService(new FindSCP());
+    device.addConnection(conn);
+    device.addApplicationEntity(ae);
+    device.setDimseRQHandler(registry);
+    device.setExecutor(executor);
+    device.setScheduledExecutor(scheduler);
+    device.bindConnections();
+  }
+
+  /**
+   * @param archiveID the ID of the archive configuration
+   * @return the properties of an archive configuration querying this archive
+   */
+  public Properties getProperties(String archiveID) {
+    Properties properties = new Properties();
+    properties.setProperty("arc.id", archiveID);
+    properties.setProperty("arc.aet", AET);
+    properties.setProperty("arc.host", "localhost");
+    properties.setProperty("arc.port", String.valueOf(port));
+    return properties;
+  }
+
+  public static String getPatientID(int study) {
+    return "PAT" + study;
+  }
+
+  public static String getStudyUID(int study) {
+    return ROOT + ".1." + study;
+  }
+
+  public static String getSeriesUID(int series) {
+    return ROOT + ".2." + series;
+  }
+
+  public static String getSopInstanceUID(long instance) {
+    return ROOT + ".3." + instance;
+  }
+
+  public int getStudies() {
+    return studies;
+  }
+
+  public int getSeriesPerStudy() {
+    return seriesPerStudy;
+  }
+
+  public int getInstancesPerSeries() {
+    return instancesPerSeries;
+  }
+
+  /**
+   * @param responseDelay the time in milliseconds before each C-FIND response
+   */
+  public void setResponseDelay(long responseDelay) {
+    this.responseDelay = responseDelay;
+  }
+
+  public int getAssociationCount() {
+    return associations.size();
+  }
+
+  public int getEchoCount() {
+    return echoes.get();
+  }
+
+  public int getFindCount() {
+    return finds.get();
+  }
+
+  public int getCancelCount() {
+    return cancels.get();
+  }
+
+  /**
+   * @return the maximum number of C-FIND requests in progress at the same time since the last reset
+   */
+  public int getMaxRunningFinds() {
+    return maxRunning.get();
+  }
+
+  public void resetMaxRunningFinds() {
+    maxRunning.set(0);
+  }
+
+  private List<Attributes> match(Attributes keys) {
+    String level = keys.getString(Tag.QueryRetrieveLevel);
+    String[] studyUIDs = keys.getStrings(Tag.StudyInstanceUID);
+    String[] seriesUIDs = keys.getStrings(Tag.SeriesInstanceUID);
+    String[] sopUIDs = keys.getStrings(Tag.SOPInstanceUID);
+    List<Attributes> matches = new ArrayList<>();
+    for (int st = 0; st < studies; st++) {
+      if (!matches(studyUIDs, getStudyUID(st))) {
+        continue;
+      }
+      Attributes study = newStudy(st);
+      if ("STUDY".equals(level)) {
+        matches.add(study);
+        continue;
+      }
+      for (int se = st * seriesPerStudy; se < (st + 1) * seriesPerStudy; se++) {
+        if (!matches(seriesUIDs, getSeriesUID(se))) {
+          continue;
+        }
+        Attributes series = newSeries(study, se);
+        if ("SERIES".equals(level)) {
+          matches.add(series);
+          continue;
+        }
+        for (long i = (long) se * instancesPerSeries;
+            i < (long) (se + 1) * instancesPerSeries;
+            i++) {
+          if (matches(sopUIDs, getSopInstanceUID(i))) {
+            Attributes instance = new Attributes(series);
+            instance.setString(Tag.SOPInstanceUID, VR.UI, getSopInstanceUID(i));
+            instance.setString(
+                Tag.InstanceNumber, VR.IS, String.valueOf(i % instancesPerSeries + 1));
+            matches.add(instance);
+          }
+        }
+      }
+    }
+    return matches;
+  }
+
+  // Universal matching without value, otherwise List of UID matching
+  private static boolean matches(String[] values, String uid) {
+    return values == null
+        || Arrays.stream(values).allMatch(v -> v == null || v.isEmpty())
+        || Arrays.asList(values).contains(uid);
+  }
+
+  private static Attributes newStudy(int st) {
+    Attributes study = new Attributes();
+    study.setString(Tag.PatientID, VR.LO, getPatientID(st));
+    study.setString(Tag.PatientName, VR.PN, "Doe^John" + st);
+    study.setString(Tag.StudyInstanceUID, VR.UI, getStudyUID(st));
+    study.setString(Tag.StudyDate, VR.DA, "20000101");
+    study.setString(Tag.AccessionNumber, VR.SH, "ACC" + st);
+    study.setString(Tag.StudyID, VR.SH, String.valueOf(st));
+    return study;
+  }
+
+  private Attributes newSeries(Attributes study, int se) {
+    Attributes series = new Attributes(study);
+    series.setString(Tag.SeriesInstanceUID, VR.UI, getSeriesUID(se));
+    series.setString(Tag.SeriesNumber, VR.IS, String.valueOf(se % seriesPerStudy + 1));
+    series.setString(Tag.Modality, VR.CS, "CT");
+    return series;
+  }
+
+  @Override
+  public void close() {
+    device.unbindConnections();
+    executor.shutdownNow();
+    scheduler.shutdownNow();
+  }
+
+  private final class EchoSCP extends BasicCEchoSCP {
+    @Override
+    public void onDimseRQ(
+        Association as, PresentationContext pc, Dimse dimse, Attributes cmd, Attributes data)
+        throws IOException {
+      associations.add(as);
+      echoes.incrementAndGet();
+      super.onDimseRQ(as, pc, dimse, cmd, data);
+    }
+  }
+
+  private final class FindSCP extends BasicCFindSCP {
+    FindSCP() {
+      super(PooledAssociation.FIND_CUID);
+    }
+
+    @Override
+    protected QueryTask calculateMatches(
+        Association as, PresentationContext pc, Attributes rq, Attributes keys) {
+      associations.add(as);
+      finds.incrementAndGet();
+      return new MatchTask(as, pc, rq, keys, match(keys));
+    }
+  }
+
+  private final class MatchTask extends BasicQueryTask {
+    private final Iterator<Attributes> matches;
+
+    MatchTask(
+        Association as,
+        PresentationContext pc,
+        Attributes rq,
+        Attributes keys,
+        List<Attributes> matches) {
+      super(as, pc, rq, keys);
+      this.matches = matches.iterator();
+    }
+
+    @Override
+    public void run() {
+      maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+      try {
+        super.run();
+      } finally {
+        running.decrementAndGet();
+      }
+    }
+
+    @Override
+    public void onCancelRQ(Association as) {
+      cancels.incrementAndGet();
+      super.onCancelRQ(as);
+    }
+
+    @Override
+    protected boolean hasMoreMatches() throws DicomServiceException {
+      long delay = responseDelay;
+      if (delay > 0) {
+        try {
+          Thread.sleep(delay);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return false;
+        }
+      }
+      return matches.hasNext();
+    }
+
+    @Override
+    protected Attributes nextMatch() {
+      return matches.next();
+    }
+  }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2026 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.query.dicom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.net.service.QueryRetrieveLevel;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.weasis.dicom.op.CFind;
+import org.weasis.dicom.param.DicomNode;
+import org.weasis.dicom.param.DicomParam;
+import org.weasis.query.Deadline;
+import org.weasis.query.HedgePolicy;
+import org.weasis.query.QueryTimeoutException;
+
+public class PooledAssociationTest {
+
+  private static DicomTestArchive archive;
+
+  @BeforeAll
+  public static void setup() throws Exception {
+    archive = DicomTestArchive.start(1, 4, 5);
+  }
+
+  @AfterAll
+  public static void tearDown() {
+    archive.close();
+  }
+
+  @AfterEach
+  public void resetArchive() {
+    archive.setResponseDelay(0);
+    archive.resetMaxRunningFinds();
+  }
+
+  private static DicomAssociationPool newPool(String callingAet, int asyncOps) {
+    Properties properties = archive.getProperties("pooled-association-test");
+    properties.setProperty("arc.query.async.ops", String.valueOf(asyncOps));
+    return DicomAssociationPool.getPool(
+        new DicomQueryConfiguration(properties, new DicomNode(callingAet)));
+  }
+
+  /**
+   * @return the keys of the instance queries of each series of the first study
+   */
+  private static List<DicomParam[]> getInstanceKeys() {
+    List<DicomParam[]> keysList = new ArrayList<>();
+    for (int series = 0; series < archive.getSeriesPerStudy(); series++) {
+      keysList.add(
+          new DicomParam[] {
+            new DicomParam(Tag.StudyInstanceUID, DicomTestArchive.getStudyUID(0)),
+            new DicomParam(Tag.SeriesInstanceUID, DicomTestArchive.getSeriesUID(series)),
+            CFind.SOPInstanceUID,
+            CFind.InstanceNumber
+          });
+    }
+    return keysList;
+  }
+
+  private static void assertInstances(List<List<Attributes>> results) {
+    assertEquals(archive.getSeriesPerStudy(), results.size());
+    for (int series = 0; series < results.size(); series++) {
+      // In the order of the requests
+      List<Attributes> instances = results.get(series);
+      assertEquals(archive.getInstancesPerSeries(), instances.size());
+      for (Attributes instance : instances) {
+        assertEquals(
+            DicomTestArchive.getSeriesUID(series), instance.getString(Tag.SeriesInstanceUID));
+      }
+    }
+  }
+
+  @Test
+  public void testAwait() {
+    CompletableFuture<Void> done = CompletableFuture.completedFuture(null);
+    PooledAssociation.await(done, Deadline.NONE, () -> true);
+
+    // No response before the time limit of the request
+    assertThrows(
+        QueryTimeoutException.class,
+        () -> PooledAssociation.await(new CompletableFuture<>(), Deadline.after(50), () -> false));
+
+    CompletableFuture<Void> failed = new CompletableFuture<>();
+    failed.completeExceptionally(new CFindException(0xC000, "failed"));
+    IllegalStateException e =
+        assertThrows(
+            IllegalStateException.class,
+            () -> PooledAssociation.await(failed, Deadline.NONE, () -> false));
+    assertEquals(0xC000, CFindException.getStatus(e));
+  }
+
+  @Test
+  public void testFindAllPipelined() {
+    DicomAssociationPool pool = newPool("ASYNC-WINDOW", 4);
+    try {
+      archive.setResponseDelay(20);
+      int associations = archive.getAssociationCount();
+      List<List<Attributes>> results =
+          pool.findAll(
+              QueryRetrieveLevel.IMAGE, getInstanceKeys(), Deadline.after(10000), () -> false);
+      assertInstances(results);
+      // The requests are sent without waiting for the previous responses, on one association
+      assertTrue(archive.getMaxRunningFinds() > 1, "Not pipelined");
+      assertEquals(associations + 1, archive.getAssociationCount());
+    } finally {
+      pool.close();
+    }
+  }
+
+  @Test
+  public void testFindAllSynchronous() {
+    DicomAssociationPool pool = newPool("SYNC-WINDOW", 1);
+    try {
+      archive.setResponseDelay(5);
+      List<List<Attributes>> results =
+          pool.findAll(
+              QueryRetrieveLevel.IMAGE, getInstanceKeys(), Deadline.after(10000), () -> false);
+      assertInstances(results);
+      assertEquals(1, archive.getMaxRunningFinds());
+    } finally {
+      pool.close();
+    }
+  }
+
+  @Test
+  public void testFindAllCanceled() throws InterruptedException {
+    DicomAssociationPool pool = newPool("CANCEL-WINDOW", 4);
+    try {
+      // Each request lasts more than one second
+      archive.setResponseDelay(200);
+      int cancels = archive.getCancelCount();
+      long end = System.currentTimeMillis() + 300;
+      long start = System.currentTimeMillis();
+      assertThrows(
+          CancellationException.class,
+          () ->
+              pool.findAll(
+                  QueryRetrieveLevel.IMAGE,
+                  getInstanceKeys(),
+                  Deadline.after(10000),
+                  () -> System.currentTimeMillis() > end));
+      assertTrue(System.currentTimeMillis() - start < 1000);
+
+      // C-CANCEL of the requests in progress
+      long timeout = System.currentTimeMillis() + 5000;
+      while (archive.getCancelCount() == cancels && System.currentTimeMillis() < timeout) {
+        Thread.sleep(10);
+      }
+      assertTrue(archive.getCancelCount() > cancels, "No C-CANCEL");
+      // The association in an unknown state is not reused
+      assertEquals(0, pool.getIdleCount());
+    } finally {
+      pool.close();
+    }
+  }
+
+  @Test
+  public void testLosingFindAllCanceled() throws InterruptedException {
+    Properties properties = new Properties();
+    properties.setProperty("arc.hedge.percentile", "90");
+    properties.setProperty("arc.hedge.min.delay", "5");
+    HedgePolicy policy = HedgePolicy.getInstance("pooled-association-test", properties);
+    for (int i = 0; i < 10; i++) {
+      policy.record(10);
+    }
+
+    CountDownLatch canceled = new CountDownLatch(1);
+    List<Function<BooleanSupplier, String>> attempts =
+        List.of(
+            c -> {
+              // The responses of the slow node never arrive
+              try {
+                PooledAssociation.await(new CompletableFuture<>(), Deadline.after(10000), c);
+              } catch (CancellationException e) {
+                canceled.countDown();
+                throw e;
+              }
+              return "slow";
+            },
+            c -> "fast");
+
+    long start = System.currentTimeMillis();
+    assertEquals("fast", policy.call(attempts, Deadline.after(10000)));
+    // The waiting of the slow node stops as soon as the other node has answered
+    assertTrue(canceled.await(2, TimeUnit.SECONDS));
+    assertTrue(System.currentTimeMillis() - start < 2000);
+  }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2026 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.query.qido;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Tag;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.weasis.query.Deadline;
+
+public class QidoClientTest {
+  private static final int STUDIES = 5;
+
+  private HttpServer server;
+  private final List<String> queries = new CopyOnWriteArrayList<>();
+
+  @BeforeEach
+  public void startServer() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext(
+        "/rs/studies",
+        exchange -> {
+          String query = exchange.getRequestURI().getQuery();
+          queries.add(query);
+          int offset = Integer.parseInt(getParam(query, "offset"));
+          int limit = Integer.parseInt(getParam(query, "limit"));
+          StringBuilder json = new StringBuilder("[");
+          for (int i = offset; i < Math.min(STUDIES, offset + limit); i++) {
+            if (i > offset) {
+              json.append(',');
+            }
+            json.append("{\"00100010\":{\"vr\":\"PN\",\"Value\":[{\"Alphabetic\":\"Doe^John\"}]},")
+                .append("\"00100020\":{\"vr\":\"LO\",\"Value\":[\"P\\u00e9")
+                .append(i)
+                .append("\"]},\"0020000D\":{\"vr\":\"UI\",\"Value\":[\"1.2.")
+                .append(i)
+                .append("\"]},\"00201208\":{\"vr\":\"IS\",\"Value\":[12]},")
+                .append("\"00081030\":{\"vr\":\"LO\"}}");
+          }
+          json.append(']');
+          byte[] body = json.toString().getBytes(StandardCharsets.UTF_8);
+          if (offset >= STUDIES) {
+            exchange.sendResponseHeaders(204, -1);
+          } else {
+            exchange.getResponseHeaders().add("Content-Type", QidoClient.DICOM_JSON);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+              out.write(body);
+            }
+          }
+          exchange.close();
+        });
+    server.start();
+  }
+
+  @AfterEach
+  public void stopServer() {
+    server.stop(0);
+  }
+
+  private static String getParam(String query, String name) {
+    for (String param : query.split("&")) {
+      if (param.startsWith(name + "=")) {
+        return param.substring(name.length() + 1);
+      }
+    }
+    return null;
+  }
+
+  private QidoClient newClient(int pageSize) {
+    Properties p = new Properties();
+    p.setProperty("arc.qido.page.size", String.valueOf(pageSize));
+    return new QidoClient("http://localhost:" + server.getAddress().getPort() + "/rs", p);
+  }
+
+  @Test
+  public void testPaging() {
+    List<Attributes> studies = new ArrayList<>();
+    int count =
+        newClient(2)
+            .search("/studies", Map.of("PatientID", "P1"), Map.of(), Deadline.NONE, studies::add);
+
+    assertEquals(STUDIES, count);
+    assertEquals(STUDIES, studies.size());
+    assertEquals(3, queries.size());
+    assertEquals("2", getParam(queries.get(1), "offset"));
+    assertEquals("P1", getParam(queries.get(0), "PatientID"));
+
+    Attributes study = studies.get(3);
+    assertEquals("Pé3", study.getString(Tag.PatientID));
+    assertEquals("Doe^John", study.getString(Tag.PatientName));
+    assertEquals("1.2.3", study.getString(Tag.StudyInstanceUID));
+    assertEquals("12", study.getString(Tag.NumberOfStudyRelatedInstances));
+    assertTrue(study.contains(Tag.StudyDescription));
+  }
+
+  @Test
+  public void testStopReading() {
+    List<Attributes> studies = new ArrayList<>();
+    newClient(2)
+        .search(
+            "/studies",
+            Map.of(),
+            Map.of(),
+            Deadline.NONE,
+            ds -> {
+              studies.add(ds);
+              return studies.size() < 3;
+            });
+
+    assertEquals(3, studies.size());
+    assertEquals(2, queries.size());
+  }
+
+  @Test
+  public void testNoContent() {
+    // The last page is full, the next one is empty (HTTP 204)
+    int count =
+        newClient(STUDIES).search("/studies", Map.of(), Map.of(), Deadline.NONE, ds -> true);
+    assertEquals(STUDIES, count);
+    assertEquals(2, queries.size());
+  }
+}